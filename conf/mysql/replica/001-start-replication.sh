@@ -0,0 +1,25 @@
+#!/bin/bash
+# 読み取りレプリカ(db-replica)の初回起動時に実行し、プライマリ(db)の複製を開始します。
+# プライマリのstudents_databaseを取得した時点のGTIDとともに読み込み、その続きからGTIDで自動的に複製します。
+
+until MYSQL_PWD="$MYSQL_ROOT_PASSWORD" mysql -h db -uroot -e 'SELECT 1' > /dev/null 2>&1; do
+  echo 'Waiting for the primary (db) to accept connections...'
+  sleep 2
+done
+
+MYSQL_PWD="$MYSQL_ROOT_PASSWORD" mysqldump -h db -uroot --databases "$MYSQL_DATABASE" \
+  --single-transaction --triggers --routines --set-gtid-purged=ON \
+  | docker_process_sql --database=mysql
+
+docker_process_sql --database=mysql <<-EOSQL
+	CHANGE REPLICATION SOURCE TO
+	  SOURCE_HOST = 'db',
+	  SOURCE_PORT = 3306,
+	  SOURCE_USER = 'root',
+	  SOURCE_PASSWORD = '${MYSQL_ROOT_PASSWORD}',
+	  SOURCE_AUTO_POSITION = 1,
+	  GET_SOURCE_PUBLIC_KEY = 1;
+	START REPLICA;
+	-- アプリケーションがレプリカの検証で複製の遅延(SHOW REPLICA STATUS)を確認するための権限です。
+	GRANT REPLICATION CLIENT ON *.* TO '${MYSQL_USER}'@'%';
+EOSQL
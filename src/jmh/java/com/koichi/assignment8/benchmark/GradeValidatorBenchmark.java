@@ -0,0 +1,37 @@
+package com.koichi.assignment8.benchmark;
+
+import com.koichi.assignment8.controller.request.StudentPostRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 学生登録リクエストの@ValidGradeのバリデータを、有効な学年と無効な学年で計測します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GradeValidatorBenchmark {
+
+    @Param({"一年生", "卒業生", "あ"})
+    public String grade;
+
+    private StudentPostRequest.GradeValidator gradeValidator;
+
+    @Setup
+    public void setUp() {
+        gradeValidator = new StudentPostRequest.GradeValidator();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return gradeValidator.isValid(grade, null);
+    }
+}
@@ -0,0 +1,70 @@
+package com.koichi.assignment8.benchmark;
+
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.mapper.StudentMapper;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * ベンチマーク用に、メモリ上の学生データを検索するStudentMapperのスタブを作成します。
+ * データベースの応答時間を含めずに、Service層の処理だけを計測するために使用します。
+ * 参照系のメソッドのみ対応し、更新系のメソッドはUnsupportedOperationExceptionになります。
+ */
+public final class InMemoryStudentMapper {
+
+    private InMemoryStudentMapper() {
+    }
+
+    public static StudentMapper create(List<Student> students) {
+        return (StudentMapper) Proxy.newProxyInstance(
+                StudentMapper.class.getClassLoader(),
+                new Class<?>[]{StudentMapper.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> students.stream()
+                            .filter(student -> student.getId().equals(args[0]))
+                            .findFirst();
+                    case "findStudents" -> page(students, matches((Grade) args[1], (String) args[2], (String) args[3]), (int) args[4], (int) args[5]);
+                    case "toString" -> "InMemoryStudentMapper";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Predicate<Student> matches(Grade grade, String startsWith, String birthPlace) {
+        return student -> (grade == null || student.getGrade() == grade)
+                && (startsWith == null || student.getName().startsWith(startsWith))
+                && (birthPlace == null || student.getBirthPlace().equals(birthPlace));
+    }
+
+    private static List<Student> page(List<Student> students, Predicate<Student> condition, int after, int limit) {
+        List<Student> page = new ArrayList<>();
+        for (Student student : students) {
+            if (student.getId() > after && condition.test(student)) {
+                page.add(student);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * id順に並んだ学生のデータを指定した人数分作成します。
+     */
+    public static List<Student> students(int count) {
+        Grade[] grades = Grade.values();
+        String[] birthPlaces = {"大分県", "福岡県", "熊本県", "東京都"};
+        String[] familyNames = {"溝口", "田中", "岡崎", "安藤"};
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            students.add(new Student(i, familyNames[i % familyNames.length] + i, grades[i % grades.length], birthPlaces[i % birthPlaces.length]));
+        }
+        return students;
+    }
+}
@@ -0,0 +1,76 @@
+package com.koichi.assignment8.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.koichi.assignment8.controller.StudentChangeStreamer;
+import com.koichi.assignment8.controller.StudentController;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.excption.MethodArgumentTypeMismatchException;
+import com.koichi.assignment8.excption.StudentControllerAdvice;
+import com.koichi.assignment8.excption.StudentNotFoundException;
+import com.koichi.assignment8.service.RecentStudentWrites;
+import com.koichi.assignment8.service.StudentService;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ControllerのIDの変換と、StudentControllerAdviceでのエラーレスポンスの作成を計測します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StudentControllerBenchmark {
+
+    private StudentController studentController;
+
+    private StudentControllerAdvice studentControllerAdvice;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        // キャッシュにない学生はSUPPORTSの読み取り専用のスコープで読み出しますが、コネクションは取得しないため、接続先のないDataSourceを使用します。
+        StudentService studentService = new StudentService(InMemoryStudentMapper.create(InMemoryStudentMapper.students(100)), null, new NoOpCacheManager(),
+                new JdbcTransactionManager(new SimpleDriverDataSource()), new RecentStudentWrites(5, 5000, 1));
+        studentController = new StudentController(studentService, null, null, new StudentChangeStreamer(studentService), null, null, new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator());
+        studentControllerAdvice = new StudentControllerAdvice();
+        request = new MockHttpServletRequest("GET", "/students/999");
+    }
+
+    @Benchmark
+    public ResponseEntity<Student> findByValidId() {
+        return studentController.findById("50", null, new ServletWebRequest(new MockHttpServletRequest("GET", "/students/50")));
+    }
+
+    @Benchmark
+    public Object findByInvalidId() {
+        try {
+            return studentController.findById("あ", null, new ServletWebRequest(request));
+        } catch (MethodArgumentTypeMismatchException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> buildNotFoundResponse() {
+        return studentControllerAdvice.handleStudentNotFoundException(new StudentNotFoundException("student not found"), request);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> buildTypeMismatchResponse() {
+        return studentControllerAdvice.handleMethodArgumentTypeMismatchException(new MethodArgumentTypeMismatchException("IDは数字で入力してください"), request);
+    }
+}
@@ -0,0 +1,46 @@
+package com.koichi.assignment8.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.koichi.assignment8.entity.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 学生のエンティティの生成と、学生の一覧をJacksonでJSONに変換する処理を、一覧の件数ごとに計測します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StudentSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private List<Student> students;
+
+    @Setup
+    public void setUp() {
+        students = InMemoryStudentMapper.students(size);
+    }
+
+    @Benchmark
+    public List<Student> createStudents() {
+        return InMemoryStudentMapper.students(size);
+    }
+
+    @Benchmark
+    public byte[] serializeStudents() throws Exception {
+        return objectMapper.writeValueAsBytes(students);
+    }
+}
@@ -0,0 +1,46 @@
+package com.koichi.assignment8.benchmark;
+
+import com.koichi.assignment8.service.StudentPage;
+import com.koichi.assignment8.service.StudentService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StudentService.findStudentsの検索条件の変換とページ分割を計測します。
+ * Mapperはメモリ上のスタブを使用するため、データベースの応答時間は含みません。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StudentServiceBenchmark {
+
+    @Param({"none", "grade", "startsWith", "birthPlace", "combined"})
+    public String filter;
+
+    private StudentService studentService;
+
+    @Setup
+    public void setUp() {
+        studentService = new StudentService(InMemoryStudentMapper.create(InMemoryStudentMapper.students(1_000)), null, new NoOpCacheManager(), null, null);
+    }
+
+    @Benchmark
+    public StudentPage findStudents() {
+        return switch (filter) {
+            case "grade" -> studentService.findStudents(1, null, null, null, null, null);
+            case "startsWith" -> studentService.findStudents(null, "溝口", null, null, null, null);
+            case "birthPlace" -> studentService.findStudents(null, null, "大分県", null, null, null);
+            case "combined" -> studentService.findStudents(1, "溝口", "大分県", null, null, null);
+            default -> studentService.findStudents(null, null, null, null, null, null);
+        };
+    }
+}
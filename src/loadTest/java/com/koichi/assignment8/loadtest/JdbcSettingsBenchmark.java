@@ -0,0 +1,221 @@
+package com.koichi.assignment8.loadtest;
+
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.entity.StudentField;
+import com.koichi.assignment8.mapper.StudentMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * StudentMapperのクエリを、Connector/Jの既定の設定とproductionプロファイル(application-production.properties)の設定で実行し、応答時間を比較します。
+ * 負荷試験と同じ環境に学生を登録し、MyBatisのStudentMapperを設定ごとのコネクションプールで直接実行するため、HTTPとアプリケーションの処理時間は含みません。
+ * 1つのコネクションで順に実行し、設定ごとにMySQLが受け取った文の数(SHOW SESSION STATUS)も出力するため、往復の回数の違いを確認できます。
+ *
+ * <pre>
+ * ./gradlew jdbcSettingsBenchmark -Dloadtest.students=100000 -Dloadtest.iterations=2000
+ * ./gradlew jdbcSettingsBenchmark -Dloadtest.baseUrl=http://localhost:8080 -Dloadtest.jdbcUrl=jdbc:mysql://localhost:3307/students_database -Dloadtest.maxId=8
+ * </pre>
+ */
+public class JdbcSettingsBenchmark {
+
+    private static final String PRODUCTION_PROFILE = "/application-production.properties";
+
+    private static final String DRIVER_PROPERTY_PREFIX = "spring.datasource.hikari.data-source-properties.";
+
+    private static final String ALL_COLUMNS = StudentField.columns(null);
+
+    private static final int LOOKUP_SIZE = 20;
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final String[] STATUS_VARIABLES = {"Questions", "Com_stmt_prepare", "Com_stmt_execute", "Com_stmt_close", "Com_set_option"};
+
+    public static void main(String[] args) throws Exception {
+        int warmup = Integer.getInteger("loadtest.warmupIterations", 200);
+        int iterations = Integer.getInteger("loadtest.iterations", 2000);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        try (LoadTestEnvironment environment = LoadTestEnvironment.start(httpClient);
+             HikariDataSource defaults = dataSource(environment, "defaults", new Properties());
+             HikariDataSource production = dataSource(environment, "production", productionDriverProperties())) {
+
+            Map<String, SqlSessionFactory> factories = new LinkedHashMap<>();
+            factories.put("defaults", sqlSessionFactory(defaults));
+            factories.put("production", sqlSessionFactory(production));
+            Map<String, Operation> operations = operations(environment.getMaxId());
+
+            Map<String, Map<String, LatencyRecorder>> results = new LinkedHashMap<>();
+            for (String settings : factories.keySet()) {
+                Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+                operations.keySet().forEach(operation -> recorders.put(operation, new LatencyRecorder()));
+                results.put(settings, recorders);
+            }
+
+            List<String> settingsOrder = new ArrayList<>(factories.keySet());
+            for (int i = 0; i < warmup + iterations; i++) {
+                for (Map.Entry<String, Operation> operation : operations.entrySet()) {
+                    // 実行順による偏りが出ないよう、設定ごとに交互に先に実行します。
+                    for (int j = 0; j < settingsOrder.size(); j++) {
+                        String settings = settingsOrder.get((i + j) % settingsOrder.size());
+                        long start = System.nanoTime();
+                        operation.getValue().run(factories.get(settings));
+                        long elapsed = System.nanoTime() - start;
+                        if (i >= warmup) {
+                            results.get(settings).get(operation.getKey()).record(elapsed);
+                        }
+                    }
+                }
+            }
+
+            System.out.printf("target       : %s (students=%d, iterations=%d)%n", environment.getBaseUrl(), environment.getMaxId(), iterations);
+            System.out.printf("production   : %s%n", production.getDataSourceProperties());
+            System.out.printf("%-12s %-12s %9s %9s %9s%n", "operation", "settings", "p50(ms)", "p95(ms)", "p99(ms)");
+            for (String operation : operations.keySet()) {
+                for (String settings : factories.keySet()) {
+                    LatencyRecorder recorder = results.get(settings).get(operation);
+                    System.out.printf("%-12s %-12s %9.3f %9.3f %9.3f%n", operation, settings,
+                            recorder.percentileMillis(50), recorder.percentileMillis(95), recorder.percentileMillis(99));
+                }
+            }
+            System.out.printf("server status per connection (warmup included)%n");
+            printStatus("defaults", defaults);
+            printStatus("production", production);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * productionプロファイルのspring.datasource.hikari.data-source-properties.*を、Connector/Jの設定として読み込みます。
+     */
+    private static Properties productionDriverProperties() throws Exception {
+        Properties profile = new Properties();
+        try (InputStream inputStream = JdbcSettingsBenchmark.class.getResourceAsStream(PRODUCTION_PROFILE)) {
+            if (inputStream == null) {
+                throw new IllegalStateException(PRODUCTION_PROFILE + " is not on the classpath");
+            }
+            profile.load(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        }
+        Properties driverProperties = new Properties();
+        for (String name : profile.stringPropertyNames()) {
+            if (name.startsWith(DRIVER_PROPERTY_PREFIX)) {
+                driverProperties.setProperty(name.substring(DRIVER_PROPERTY_PREFIX.length()), profile.getProperty(name));
+            }
+        }
+        return driverProperties;
+    }
+
+    /**
+     * 設定の違いのみを比べるため、URLのクエリパラメータを除き、1つのコネクションを使い回すプールを作成します。
+     */
+    private static HikariDataSource dataSource(LoadTestEnvironment environment, String poolName, Properties driverProperties) {
+        String jdbcUrl = environment.getJdbcUrl();
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(jdbcUrl.contains("?") ? jdbcUrl.substring(0, jdbcUrl.indexOf('?')) : jdbcUrl);
+        config.setUsername(System.getProperty("loadtest.jdbcUser", "user"));
+        config.setPassword(System.getProperty("loadtest.jdbcPassword", "password"));
+        config.setMaximumPoolSize(1);
+        config.setMinimumIdle(1);
+        config.setDataSourceProperties(driverProperties);
+        return new HikariDataSource(config);
+    }
+
+    private static SqlSessionFactory sqlSessionFactory(HikariDataSource dataSource) {
+        Configuration configuration = new Configuration(new Environment(dataSource.getPoolName(), new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.getTypeHandlerRegistry().register("com.koichi.assignment8.mapper");
+        configuration.addMapper(StudentMapper.class);
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    /**
+     * アプリケーションと同じく、Mapperの呼び出しごとにセッションを開いて閉じます。
+     * 一括更新はStudentBulkServiceと同じくバッチで送信し、データを変えないよう最後に取り消します。
+     */
+    private static Map<String, Operation> operations(int maxId) {
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("findById", factory -> {
+            try (SqlSession session = factory.openSession(true)) {
+                session.getMapper(StudentMapper.class).findById(randomId(maxId));
+            }
+        });
+        operations.put("findStudents", factory -> {
+            Grade grade = Grade.fromCode(ThreadLocalRandom.current().nextInt(1, 4));
+            try (SqlSession session = factory.openSession(true)) {
+                session.getMapper(StudentMapper.class).findStudents(ALL_COLUMNS, grade, null, null, randomId(maxId), 101);
+            }
+        });
+        operations.put("findByIds", factory -> {
+            List<Integer> ids = new ArrayList<>(LOOKUP_SIZE);
+            for (int i = 0; i < LOOKUP_SIZE; i++) {
+                ids.add(randomId(maxId));
+            }
+            try (SqlSession session = factory.openSession(true)) {
+                session.getMapper(StudentMapper.class).findByIds(ids);
+            }
+        });
+        operations.put("bulkUpdate", factory -> {
+            try (SqlSession session = factory.openSession(ExecutorType.BATCH, false)) {
+                StudentMapper studentMapper = session.getMapper(StudentMapper.class);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    int id = randomId(maxId);
+                    studentMapper.updateStudent(new Student(id, "溝口" + id, Grade.FIRST, "大分県"), null);
+                }
+                session.flushStatements();
+                session.rollback(true);
+            }
+        });
+        return operations;
+    }
+
+    private static int randomId(int maxId) {
+        return ThreadLocalRandom.current().nextInt(1, maxId + 1);
+    }
+
+    /**
+     * プールのコネクションでMySQLが受け取った文の数を出力します。プールのコネクションは1つのため、設定ごとの累計になります。
+     */
+    private static void printStatus(String settings, HikariDataSource dataSource) throws SQLException {
+        StringBuilder status = new StringBuilder();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SHOW SESSION STATUS WHERE Variable_name IN ('" + String.join("','", STATUS_VARIABLES) + "')")) {
+            while (resultSet.next()) {
+                status.append(String.format(" %s=%s", resultSet.getString(1), resultSet.getString(2)));
+            }
+        }
+        System.out.printf("%-12s:%s%n", settings, status);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(SqlSessionFactory factory);
+    }
+}
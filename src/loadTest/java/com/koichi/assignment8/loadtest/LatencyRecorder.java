@@ -0,0 +1,66 @@
+package com.koichi.assignment8.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 1リクエストごとの応答時間(ナノ秒)を記録し、パーセンタイルを計算します。
+ * 応答時間は成功したリクエストのみを記録し、5xxと接続の失敗はエラー、4xxはクライアントエラーとして件数のみを数えます。
+ * 1つのスレッドから使用し、集計時にmergeでまとめます。
+ */
+public class LatencyRecorder {
+    private long[] latencies = new long[1024];
+
+    private int size;
+
+    private long errors;
+
+    private long clientErrors;
+
+    public void record(long latencyNanos) {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size++] = latencyNanos;
+    }
+
+    public void recordError() {
+        errors++;
+    }
+
+    public void recordClientError() {
+        clientErrors++;
+    }
+
+    public int getCount() {
+        return size;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getClientErrors() {
+        return clientErrors;
+    }
+
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.size; i++) {
+            record(other.latencies[i]);
+        }
+        errors += other.errors;
+        clientErrors += other.clientErrors;
+    }
+
+    /**
+     * 指定したパーセンタイル(0〜100)の応答時間をミリ秒で返します。
+     */
+    public double percentileMillis(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.koichi.assignment8.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 負荷試験でシードやリクエストに使用する学生データの値です。
+ */
+final class LoadTestData {
+    static final String[] GRADES = {"一年生", "二年生", "三年生"};
+
+    static final String[] BIRTH_PLACES = {"大分県", "福岡県", "熊本県", "東京都", "大阪府", "北海道"};
+
+    static final String[] FAMILY_NAMES = {"溝口", "田中", "岡崎", "安藤", "清水", "中田", "森本", "山田"};
+
+    private LoadTestData() {
+    }
+
+    /**
+     * 名前の途中に含まれる文字列の検索に使用する語を作成します。
+     * 登録する名前は苗字と通し番号のため、苗字の2文字目と通し番号の先頭2桁を組み合わせます(例: 口12)。
+     */
+    static String searchTerm() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)].substring(1) + random.nextInt(10, 100);
+    }
+
+    /**
+     * 登録・更新のリクエストに使用する学生のJSONを作成します。
+     */
+    static String studentJson(int seed, String grade) {
+        return "{\"name\":\"" + FAMILY_NAMES[seed % FAMILY_NAMES.length] + seed
+                + "\",\"grade\":\"" + grade
+                + "\",\"birthPlace\":\"" + BIRTH_PLACES[seed % BIRTH_PLACES.length] + "\"}";
+    }
+}
@@ -0,0 +1,139 @@
+package com.koichi.assignment8.loadtest;
+
+import com.koichi.assignment8.Assignment8Application;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 負荷試験の対象となるアプリケーションです。
+ * loadtest.baseUrlを指定した場合は起動済みのアプリケーションを使用します。
+ * 指定しない場合はMySQLのコンテナとアプリケーションを起動し、loadtest.students人の学生を登録します。
+ * データベースに直接クエリを送る計測のため、接続先のJDBCのURLも保持します(起動済みの場合はloadtest.jdbcUrlで指定します)。
+ */
+final class LoadTestEnvironment implements AutoCloseable {
+    private static final int SEED_CHUNK_SIZE = 5000;
+
+    private final String baseUrl;
+
+    private final int maxId;
+
+    private final String jdbcUrl;
+
+    private final MySQLContainer<?> mysql;
+
+    private final ConfigurableApplicationContext context;
+
+    private LoadTestEnvironment(String baseUrl, int maxId, String jdbcUrl, MySQLContainer<?> mysql, ConfigurableApplicationContext context) {
+        this.baseUrl = baseUrl;
+        this.maxId = maxId;
+        this.jdbcUrl = jdbcUrl;
+        this.mysql = mysql;
+        this.context = context;
+    }
+
+    static LoadTestEnvironment start(HttpClient httpClient) throws Exception {
+        String externalBaseUrl = System.getProperty("loadtest.baseUrl");
+        if (externalBaseUrl != null) {
+            return new LoadTestEnvironment(externalBaseUrl, Integer.getInteger("loadtest.maxId", 8), System.getProperty("loadtest.jdbcUrl"), null, null);
+        }
+
+        MySQLContainer<?> mysql = new MySQLContainer<>(DockerImageName.parse(System.getProperty("loadtest.mysqlImage", "mysql:8.0")))
+                .withDatabaseName("students_database")
+                .withUsername("user")
+                .withPassword("password")
+                .withUrlParam("rewriteBatchedStatements", "true")
+                .withCommand("--character-set-server=utf8mb4", "--collation-server=utf8mb4_general_ci", "--log-bin-trust-function-creators=1");
+        mysql.start();
+
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + mysql.getJdbcUrl(),
+                "--spring.datasource.username=" + mysql.getUsername(),
+                "--spring.datasource.password=" + mysql.getPassword(),
+                "--server.port=0"));
+        String profiles = System.getProperty("loadtest.profiles");
+        if (profiles != null) {
+            args.add("--spring.profiles.active=" + profiles);
+        }
+        ConfigurableApplicationContext context = SpringApplication.run(Assignment8Application.class, args.toArray(String[]::new));
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        String baseUrl = "http://localhost:" + port;
+
+        int students = Integer.getInteger("loadtest.students", 100_000);
+        seed(httpClient, baseUrl, students);
+        return new LoadTestEnvironment(baseUrl, students, mysql.getJdbcUrl(), mysql, context);
+    }
+
+    /**
+     * 一括登録APIを使用して、指定した人数の学生を登録します。
+     */
+    private static void seed(HttpClient httpClient, String baseUrl, int students) throws Exception {
+        for (int from = 1; from <= students; from += SEED_CHUNK_SIZE) {
+            int to = Math.min(from + SEED_CHUNK_SIZE - 1, students);
+            StringBuilder body = new StringBuilder("[");
+            for (int i = from; i <= to; i++) {
+                if (i > from) {
+                    body.append(',');
+                }
+                body.append(LoadTestData.studentJson(i, LoadTestData.GRADES[i % LoadTestData.GRADES.length]));
+            }
+            body.append(']');
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/students/_bulk"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("seed failed: " + response.statusCode() + " " + response.body());
+            }
+        }
+        System.out.printf("seeded       : %d students%n", students);
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    int getMaxId() {
+        return maxId;
+    }
+
+    String getJdbcUrl() {
+        if (jdbcUrl == null) {
+            throw new IllegalStateException("loadtest.jdbcUrl is required when loadtest.baseUrl is specified");
+        }
+        return jdbcUrl;
+    }
+
+    /**
+     * 学生のデータベースに接続します。ユーザーとパスワードはアプリケーションの既定値(loadtest.jdbcUser・loadtest.jdbcPassword)を使用します。
+     */
+    Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(getJdbcUrl(),
+                System.getProperty("loadtest.jdbcUser", "user"),
+                System.getProperty("loadtest.jdbcPassword", "password"));
+    }
+
+    @Override
+    public void close() {
+        if (context != null) {
+            context.close();
+        }
+        if (mysql != null) {
+            mysql.stop();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.koichi.assignment8.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 学生APIに複数の種類のリクエストを混ぜて並列に送り、種類ごとのスループットと応答時間のパーセンタイルを出力します。
+ * 5xxと接続の失敗はエラー、4xx(削除済みの学生の404など)はクライアントエラーとして種類ごとに別々に数え、応答時間には含めません。
+ * batchUpdateGradeは進級ジョブの受付(202)までの応答時間で、ジョブの完了までの時間は含みません。
+ * 結果はloadtest.outputDirにJSONでも保存するため、変更前後の結果を比較できます。
+ *
+ * <pre>
+ * ./gradlew loadTest -Dloadtest.students=100000 -Dloadtest.concurrency=100 -Dloadtest.duration=60
+ * ./gradlew loadTest -Dloadtest.profiles=virtual
+ * ./gradlew loadTest -Dloadtest.baseUrl=http://localhost:8080 -Dloadtest.maxId=8
+ * ./gradlew loadTest -Dloadtest.mix=findById:80,listByGrade:20
+ * </pre>
+ */
+public class LoadTestRunner {
+
+    private static final String DEFAULT_MIX = "findById:50,listAll:5,listByGrade:10,listByStartsWith:10,listByBirthPlace:10,"
+            + "create:5,update:5,delete:4,batchUpdateGrade:1";
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 100);
+        int warmupSeconds = Integer.getInteger("loadtest.warmup", 10);
+        int durationSeconds = Integer.getInteger("loadtest.duration", 30);
+        Map<Workload, Integer> mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, concurrency / 10)))
+                .build();
+
+        try (LoadTestEnvironment environment = LoadTestEnvironment.start(httpClient)) {
+            Map<Workload, LatencyRecorder> results = run(httpClient, environment, mix, concurrency, warmupSeconds, durationSeconds);
+            report(environment, mix, concurrency, durationSeconds, results);
+        }
+        System.exit(0);
+    }
+
+    private static Map<Workload, LatencyRecorder> run(HttpClient httpClient, LoadTestEnvironment environment, Map<Workload, Integer> mix,
+                                                      int concurrency, int warmupSeconds, int durationSeconds) throws Exception {
+        Workload[] workloads = mix.keySet().toArray(Workload[]::new);
+        int[] cumulativeWeights = new int[workloads.length];
+        int totalWeight = 0;
+        for (int i = 0; i < workloads.length; i++) {
+            totalWeight += mix.get(workloads[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+        int weightSum = totalWeight;
+
+        long measureFrom = System.nanoTime() + Duration.ofSeconds(warmupSeconds).toNanos();
+        long deadline = measureFrom + Duration.ofSeconds(durationSeconds).toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<Map<Workload, LatencyRecorder>>> futures = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(workers.submit(() -> {
+                Map<Workload, LatencyRecorder> recorders = new EnumMap<>(Workload.class);
+                for (Workload workload : workloads) {
+                    recorders.put(workload, new LatencyRecorder());
+                }
+                while (System.nanoTime() < deadline) {
+                    Workload workload = pick(workloads, cumulativeWeights, weightSum);
+                    HttpRequest request = workload.request(environment.getBaseUrl(), environment.getMaxId())
+                            .timeout(Duration.ofSeconds(60))
+                            .build();
+                    long start = System.nanoTime();
+                    int statusCode;
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        statusCode = response.statusCode();
+                    } catch (IOException e) {
+                        statusCode = -1;
+                    }
+                    long end = System.nanoTime();
+                    if (start < measureFrom) {
+                        continue;
+                    }
+                    if (statusCode < 0 || statusCode >= 500) {
+                        recorders.get(workload).recordError();
+                    } else if (statusCode >= 400) {
+                        recorders.get(workload).recordClientError();
+                    } else {
+                        recorders.get(workload).record(end - start);
+                    }
+                }
+                return recorders;
+            }));
+        }
+
+        Map<Workload, LatencyRecorder> results = new EnumMap<>(Workload.class);
+        for (Workload workload : workloads) {
+            results.put(workload, new LatencyRecorder());
+        }
+        for (Future<Map<Workload, LatencyRecorder>> future : futures) {
+            future.get().forEach((workload, recorder) -> results.get(workload).merge(recorder));
+        }
+        workers.shutdown();
+        return results;
+    }
+
+    private static Workload pick(Workload[] workloads, int[] cumulativeWeights, int totalWeight) {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return workloads[i];
+            }
+        }
+        return workloads[workloads.length - 1];
+    }
+
+    private static Map<Workload, Integer> parseMix(String mix) {
+        Map<Workload, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split(":");
+            int weight = Integer.parseInt(keyAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Workload.from(keyAndWeight[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no workload: " + mix);
+        }
+        return weights;
+    }
+
+    private static void report(LoadTestEnvironment environment, Map<Workload, Integer> mix, int concurrency, int durationSeconds,
+                               Map<Workload, LatencyRecorder> results) throws IOException {
+        LatencyRecorder total = new LatencyRecorder();
+        results.values().forEach(total::merge);
+
+        System.out.printf("target       : %s (concurrency=%d, duration=%ds, profiles=%s)%n",
+                environment.getBaseUrl(), concurrency, durationSeconds, System.getProperty("loadtest.profiles", "default"));
+        System.out.printf("%-18s %9s %7s %7s %10s %9s %9s %9s%n", "workload", "requests", "errors", "4xx", "req/s", "p50(ms)", "p95(ms)", "p99(ms)");
+        StringBuilder json = new StringBuilder();
+        json.append("{\"timestamp\":\"").append(LocalDateTime.now()).append('"')
+                .append(",\"profiles\":\"").append(System.getProperty("loadtest.profiles", "default")).append('"')
+                .append(",\"students\":").append(environment.getMaxId())
+                .append(",\"concurrency\":").append(concurrency)
+                .append(",\"durationSeconds\":").append(durationSeconds)
+                .append(",\"results\":{");
+        boolean first = true;
+        for (Map.Entry<Workload, LatencyRecorder> entry : results.entrySet()) {
+            printRow(entry.getKey().getKey(), entry.getValue(), durationSeconds);
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendJson(json, entry.getKey().getKey(), mix.get(entry.getKey()), entry.getValue(), durationSeconds);
+        }
+        printRow("total", total, durationSeconds);
+        json.append("},\"total\":{");
+        appendJsonFields(json, total, durationSeconds);
+        json.append("}}");
+
+        Path outputDir = Path.of(System.getProperty("loadtest.outputDir", "build/loadtest"));
+        Files.createDirectories(outputDir);
+        Path output = outputDir.resolve("loadtest-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        Files.writeString(output, json, StandardCharsets.UTF_8);
+        System.out.printf("result       : %s%n", output.toAbsolutePath());
+    }
+
+    private static void printRow(String name, LatencyRecorder recorder, int durationSeconds) {
+        System.out.printf("%-18s %9d %7d %7d %10.1f %9.2f %9.2f %9.2f%n", name, recorder.getCount(), recorder.getErrors(), recorder.getClientErrors(),
+                (double) recorder.getCount() / durationSeconds,
+                recorder.percentileMillis(50), recorder.percentileMillis(95), recorder.percentileMillis(99));
+    }
+
+    private static void appendJson(StringBuilder json, String name, int weight, LatencyRecorder recorder, int durationSeconds) {
+        json.append('"').append(name).append("\":{\"weight\":").append(weight).append(',');
+        appendJsonFields(json, recorder, durationSeconds);
+        json.append('}');
+    }
+
+    private static void appendJsonFields(StringBuilder json, LatencyRecorder recorder, int durationSeconds) {
+        json.append("\"requests\":").append(recorder.getCount())
+                .append(",\"errors\":").append(recorder.getErrors())
+                .append(",\"clientErrors\":").append(recorder.getClientErrors())
+                .append(",\"throughput\":").append(String.format("%.1f", (double) recorder.getCount() / durationSeconds))
+                .append(",\"p50\":").append(String.format("%.2f", recorder.percentileMillis(50)))
+                .append(",\"p95\":").append(String.format("%.2f", recorder.percentileMillis(95)))
+                .append(",\"p99\":").append(String.format("%.2f", recorder.percentileMillis(99)));
+    }
+}
@@ -0,0 +1,109 @@
+package com.koichi.assignment8.loadtest;
+
+import java.net.http.HttpClient;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * 名前・出身地の部分一致検索について、LIKE '%x%'と全文検索インデックス(ngramパーサー)のクエリの応答時間を比較します。
+ * 負荷試験と同じ環境に学生を登録し、同じ検索語を両方のクエリにJDBCで直接送るため、アプリケーションの処理時間は含みません。
+ * 取得件数は/students/_searchの既定のページと同じく101件までです。
+ *
+ * <pre>
+ * ./gradlew searchBenchmark -Dloadtest.students=100000 -Dloadtest.iterations=500
+ * ./gradlew searchBenchmark -Dloadtest.baseUrl=http://localhost:8080 -Dloadtest.jdbcUrl=jdbc:mysql://localhost:3307/students_database
+ * </pre>
+ */
+public class SearchBenchmark {
+
+    private static final String LIKE_QUERY = "SELECT id, name, grade, birth_place FROM students"
+            + " WHERE name LIKE CONCAT('%', ?, '%') OR birth_place LIKE CONCAT('%', ?, '%') ORDER BY id LIMIT 101";
+
+    private static final String FULLTEXT_QUERY = "SELECT id, name, grade, birth_place FROM students"
+            + " WHERE MATCH (name, birth_place) AGAINST (? IN BOOLEAN MODE)"
+            + " ORDER BY MATCH (name, birth_place) AGAINST (? IN BOOLEAN MODE) DESC, id LIMIT 101";
+
+    public static void main(String[] args) throws Exception {
+        int warmup = Integer.getInteger("loadtest.warmupIterations", 50);
+        int iterations = Integer.getInteger("loadtest.iterations", 500);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        try (LoadTestEnvironment environment = LoadTestEnvironment.start(httpClient);
+             Connection connection = environment.getConnection();
+             PreparedStatement like = connection.prepareStatement(LIKE_QUERY);
+             PreparedStatement fulltext = connection.prepareStatement(FULLTEXT_QUERY)) {
+
+            LatencyRecorder likeRecorder = new LatencyRecorder();
+            LatencyRecorder fulltextRecorder = new LatencyRecorder();
+            long likeRows = 0;
+            long fulltextRows = 0;
+            for (int i = 0; i < warmup + iterations; i++) {
+                String term = LoadTestData.searchTerm();
+                String booleanQuery = "+\"" + term + "\"";
+                // 実行順による偏りが出ないよう、交互に先に実行します。
+                long[] likeResult;
+                long[] fulltextResult;
+                if (i % 2 == 0) {
+                    likeResult = execute(like, term, term);
+                    fulltextResult = execute(fulltext, booleanQuery, booleanQuery);
+                } else {
+                    fulltextResult = execute(fulltext, booleanQuery, booleanQuery);
+                    likeResult = execute(like, term, term);
+                }
+                if (i < warmup) {
+                    continue;
+                }
+                likeRecorder.record(likeResult[0]);
+                likeRows += likeResult[1];
+                fulltextRecorder.record(fulltextResult[0]);
+                fulltextRows += fulltextResult[1];
+            }
+
+            System.out.printf("target       : %s (students=%d, iterations=%d)%n", environment.getBaseUrl(), environment.getMaxId(), iterations);
+            System.out.printf("%-10s %9s %9s %9s %9s%n", "query", "avg rows", "p50(ms)", "p95(ms)", "p99(ms)");
+            printRow("like", likeRecorder, (double) likeRows / iterations);
+            printRow("fulltext", fulltextRecorder, (double) fulltextRows / iterations);
+            System.out.printf("explain like     : %s%n", explain(connection, LIKE_QUERY, "口12"));
+            System.out.printf("explain fulltext : %s%n", explain(connection, FULLTEXT_QUERY, "+\"口12\""));
+        }
+        System.exit(0);
+    }
+
+    /**
+     * クエリを実行して全ての行を読み出し、応答時間(ナノ秒)と行数を返します。
+     */
+    private static long[] execute(PreparedStatement statement, String first, String second) throws SQLException {
+        statement.setString(1, first);
+        statement.setString(2, second);
+        long start = System.nanoTime();
+        long rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return new long[]{System.nanoTime() - start, rows};
+    }
+
+    private static String explain(Connection connection, String query, String parameter) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + query)) {
+            statement.setString(1, parameter);
+            statement.setString(2, parameter);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return "type=" + resultSet.getString("type") + ", key=" + resultSet.getString("key") + ", rows=" + resultSet.getString("rows");
+            }
+        }
+    }
+
+    private static void printRow(String name, LatencyRecorder recorder, double averageRows) {
+        System.out.printf("%-10s %9.1f %9.2f %9.2f %9.2f%n", name, averageRows,
+                recorder.percentileMillis(50), recorder.percentileMillis(95), recorder.percentileMillis(99));
+    }
+}
@@ -0,0 +1,115 @@
+package com.koichi.assignment8.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 負荷試験で送信するリクエストの種類です。
+ * 対象のidはシード時に登録した1〜maxIdからランダムに選びます。
+ */
+public enum Workload {
+    FIND_BY_ID("findById") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students/" + randomId(maxId))).GET();
+        }
+    },
+    LIST_ALL("listAll") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students?after=" + randomId(maxId))).GET();
+        }
+    },
+    LIST_BY_GRADE("listByGrade") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students?grade=" + ThreadLocalRandom.current().nextInt(1, 5))).GET();
+        }
+    },
+    LIST_BY_STARTS_WITH("listByStartsWith") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students?startsWith=" + encode(pick(LoadTestData.FAMILY_NAMES)))).GET();
+        }
+    },
+    LIST_BY_BIRTH_PLACE("listByBirthPlace") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students?birthPlace=" + encode(pick(LoadTestData.BIRTH_PLACES)))).GET();
+        }
+    },
+    SEARCH("search") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students/_search?q=" + encode(LoadTestData.searchTerm()))).GET();
+        }
+    },
+    CREATE("create") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(LoadTestData.studentJson(randomId(maxId), "一年生"), StandardCharsets.UTF_8));
+        }
+    },
+    UPDATE("update") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students/" + randomId(maxId)))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(LoadTestData.studentJson(randomId(maxId), pick(LoadTestData.GRADES)), StandardCharsets.UTF_8));
+        }
+    },
+    DELETE("delete") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students/" + randomId(maxId))).DELETE();
+        }
+    },
+    /**
+     * 進級ジョブを開始します。APIはジョブを受け付けると202を返すため、測定するのは受付までの応答時間のみです。
+     */
+    BATCH_UPDATE_GRADE("batchUpdateGrade") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, int maxId) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/students/grade/_batchUpdate"))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody());
+        }
+    };
+
+    private final String key;
+
+    Workload(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    abstract HttpRequest.Builder request(String baseUrl, int maxId);
+
+    public static Workload from(String key) {
+        for (Workload workload : values()) {
+            if (workload.key.equals(key)) {
+                return workload;
+            }
+        }
+        throw new IllegalArgumentException("unknown workload: " + key);
+    }
+
+    private static int randomId(int maxId) {
+        return ThreadLocalRandom.current().nextInt(1, maxId + 1);
+    }
+
+    private static String pick(String[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
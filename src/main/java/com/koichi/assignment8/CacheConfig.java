@@ -0,0 +1,45 @@
+package com.koichi.assignment8;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * 学生データのキャッシュの設定です。
+ * キャッシュの件数・有効期限はspring.cache.caffeine.specで指定します。
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    /**
+     * 学生データのキャッシュ名です。
+     */
+    public static final String STUDENTS_CACHE = "students";
+
+    /**
+     * 存在しないidもnullとしてキャッシュし、同じidへの問い合わせがデータベースに届かないようにします。
+     * 更新・削除によるキャッシュの破棄はトランザクションのコミット後に行い、
+     * コミット前の古いデータが読み直されてキャッシュに残らないようにします。
+     */
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager();
+        caffeineCacheManager.setAllowNullValues(true);
+        String specification = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(specification)) {
+            caffeineCacheManager.setCacheSpecification(specification);
+        }
+        if (!cacheProperties.getCacheNames().isEmpty()) {
+            caffeineCacheManager.setCacheNames(cacheProperties.getCacheNames());
+        }
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
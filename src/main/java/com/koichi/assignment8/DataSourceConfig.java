@@ -0,0 +1,83 @@
+package com.koichi.assignment8;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * データベースのコネクションの設定です。
+ * 書き込みと通常の参照はspring.datasource.urlのプライマリへ、読み取り専用のトランザクションは
+ * students.datasource.replica-urlsで指定した読み取りレプリカへ送ります。レプリカを指定しない場合は全てプライマリへ送ります。
+ *
+ * <p>参照のメソッドは@Transactional(readOnly = true, propagation = Propagation.SUPPORTS)とし、
+ * 読み取り専用であることだけを伝えて、BEGIN・COMMITなどのトランザクションの文は送りません。
+ * 一括出力のように一貫した読み取りが必要な場合のみ、実際のトランザクションを開始します。
+ * 結果をキャッシュする参照(StudentService.findStudent・lookupStudents)も、キャッシュにない学生をレプリカから読み出します。
+ * ただし、このノードで直前に変更した学生(RecentStudentWrites)は、複製の遅れた結果をキャッシュに残さないようプライマリから読み出します。
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${students.datasource.replica-urls:}")
+    private List<String> replicaUrls = List.of();
+
+    @Value("${students.datasource.replica-health-check-interval-millis:5000}")
+    private long replicaHealthCheckIntervalMillis = 5000;
+
+    @Value("${students.datasource.replica-health-check-timeout-seconds:1}")
+    private int replicaHealthCheckTimeoutSeconds = 1;
+
+    @Value("${students.datasource.replica-max-lag-seconds:5}")
+    private long replicaMaxLagSeconds = 5;
+
+    /**
+     * プライマリのコネクションプールです。spring.datasource.hikari.*の設定を使用します。
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * レプリカごとのコネクションプールは、URL・プール名以外をプライマリと同じ設定にします。
+     * レプリカのコネクションは読み取り専用にし、誤って書き込んだ場合はエラーにします。
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        String poolName = primaryDataSource.getPoolName() == null ? "HikariPool" : primaryDataSource.getPoolName();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setJdbcUrl(replicaUrls.get(i).trim());
+            replica.setPoolName(poolName + "-replica-" + (i + 1));
+            replica.setReadOnly(true);
+            replicas.put("replica-" + (i + 1), replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                Duration.ofMillis(replicaHealthCheckIntervalMillis), replicaHealthCheckTimeoutSeconds, replicaMaxLagSeconds);
+    }
+
+    /**
+     * MyBatis・Flyway・トランザクションで使用するDataSourceです。
+     * トランザクションの開始時にはコネクションを取得せず、最初のSQLの実行時に読み取り専用かどうかで取得先を決めます。
+     * SQLを実行しなかったトランザクション(キャッシュから返した参照など)では、コネクションを取得しません。
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
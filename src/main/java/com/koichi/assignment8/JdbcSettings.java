@@ -0,0 +1,212 @@
+package com.koichi.assignment8;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * コネクションプール(HikariCP)とJDBCドライバー(Connector/J)の実際に使用される設定です。
+ * ドライバーの設定はJDBCのURLのクエリパラメータとspring.datasource.hikari.data-source-properties.*を合わせ、
+ * どちらにも指定がない項目はConnector/Jの既定値とします。
+ *
+ * <p>HikariCPは範囲外の値を警告のみで既定値に置き換えるため、validateで起動時にエラーとして検出します。
+ */
+public class JdbcSettings {
+
+    /**
+     * 性能に関係するConnector/Jの設定と、その既定値です。
+     */
+    static final Map<String, String> DRIVER_DEFAULTS = driverDefaults();
+
+    /**
+     * maximum-pool-sizeを指定しない場合にHikariCPが使用するコネクション数です。
+     */
+    private static final int DEFAULT_MAXIMUM_POOL_SIZE = 10;
+
+    private static final Set<String> INTEGER_DRIVER_PROPERTIES = Set.of("prepStmtCacheSize", "prepStmtCacheSqlLimit", "connectTimeout", "socketTimeout");
+
+    private final HikariConfig config;
+
+    private final Map<String, String> urlProperties;
+
+    private final Properties dataSourceProperties;
+
+    public JdbcSettings(HikariConfig config) {
+        this.config = config;
+        this.urlProperties = parseUrlProperties(config.getJdbcUrl());
+        this.dataSourceProperties = config.getDataSourceProperties();
+    }
+
+    private static Map<String, String> driverDefaults() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("cachePrepStmts", "false");
+        defaults.put("prepStmtCacheSize", "25");
+        defaults.put("prepStmtCacheSqlLimit", "256");
+        defaults.put("useServerPrepStmts", "false");
+        defaults.put("rewriteBatchedStatements", "false");
+        defaults.put("useLocalSessionState", "false");
+        defaults.put("useLocalTransactionState", "false");
+        defaults.put("cacheResultSetMetadata", "false");
+        defaults.put("cacheServerConfiguration", "false");
+        defaults.put("elideSetAutoCommits", "false");
+        defaults.put("maintainTimeStats", "true");
+        defaults.put("connectTimeout", "0");
+        defaults.put("socketTimeout", "0");
+        return Collections.unmodifiableMap(defaults);
+    }
+
+    private static Map<String, String> parseUrlProperties(String jdbcUrl) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (jdbcUrl == null || jdbcUrl.indexOf('?') < 0) {
+            return properties;
+        }
+        for (String parameter : jdbcUrl.substring(jdbcUrl.indexOf('?') + 1).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int separator = parameter.indexOf('=');
+            String key = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            properties.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return properties;
+    }
+
+    /**
+     * 指定したConnector/Jの設定の値を返します。URLとdata-source-propertiesのどちらにもない場合は既定値を返します。
+     */
+    public String getDriverProperty(String name) {
+        String value = urlProperties.get(name);
+        if (value == null) {
+            value = dataSourceProperties.getProperty(name);
+        }
+        return value == null ? DRIVER_DEFAULTS.get(name) : value;
+    }
+
+    public boolean isServerPreparedStatementCacheEnabled() {
+        return Boolean.parseBoolean(getDriverProperty("useServerPrepStmts")) && Boolean.parseBoolean(getDriverProperty("cachePrepStmts"));
+    }
+
+    public int getPreparedStatementCacheSize() {
+        return Integer.parseInt(getDriverProperty("prepStmtCacheSize"));
+    }
+
+    /**
+     * 未指定(-1)の場合はHikariCPの既定値を返します。
+     */
+    public int getMaximumPoolSize() {
+        return config.getMaximumPoolSize() < 1 ? DEFAULT_MAXIMUM_POOL_SIZE : config.getMaximumPoolSize();
+    }
+
+    /**
+     * 未指定(-1)の場合はmaximum-pool-sizeと同じ数を返します。
+     */
+    public int getMinimumIdle() {
+        return config.getMinimumIdle() < 0 ? getMaximumPoolSize() : config.getMinimumIdle();
+    }
+
+    public long getMaxLifetime() {
+        return config.getMaxLifetime();
+    }
+
+    /**
+     * 設定の誤りを全て返します。誤りがない場合は空のリストを返します。
+     */
+    public List<String> validate() {
+        List<String> errors = new ArrayList<>();
+        int maximumPoolSize = getMaximumPoolSize();
+        int minimumIdle = getMinimumIdle();
+        long connectionTimeout = config.getConnectionTimeout();
+        long validationTimeout = config.getValidationTimeout();
+        long idleTimeout = config.getIdleTimeout();
+        long maxLifetime = config.getMaxLifetime();
+        long keepaliveTime = config.getKeepaliveTime();
+        long leakDetectionThreshold = config.getLeakDetectionThreshold();
+
+        // 1未満のコネクション数や250ms未満のタイムアウトはHikariCPが設定時に拒否するため、組み合わせのみを検証します。
+        if (minimumIdle > maximumPoolSize) {
+            errors.add("minimum-idle must not exceed maximum-pool-size: " + minimumIdle + " > " + maximumPoolSize);
+        }
+        if (validationTimeout >= connectionTimeout) {
+            errors.add("validation-timeout must be shorter than connection-timeout: " + validationTimeout + " >= " + connectionTimeout);
+        }
+        if (maxLifetime != 0 && maxLifetime < 30000) {
+            errors.add("max-lifetime must be 0 or at least 30000ms: " + maxLifetime);
+        }
+        if (idleTimeout != 0 && (idleTimeout < 10000 || (maxLifetime != 0 && idleTimeout >= maxLifetime))) {
+            errors.add("idle-timeout must be 0 or between 10000ms and max-lifetime: " + idleTimeout);
+        }
+        if (keepaliveTime != 0 && (keepaliveTime < 30000 || (maxLifetime != 0 && keepaliveTime >= maxLifetime))) {
+            errors.add("keepalive-time must be 0 or between 30000ms and max-lifetime: " + keepaliveTime);
+        }
+        if (leakDetectionThreshold != 0 && (leakDetectionThreshold < 2000 || (maxLifetime != 0 && leakDetectionThreshold > maxLifetime))) {
+            errors.add("leak-detection-threshold must be 0 or between 2000ms and max-lifetime: " + leakDetectionThreshold);
+        }
+
+        for (String name : DRIVER_DEFAULTS.keySet()) {
+            String urlValue = urlProperties.get(name);
+            String propertyValue = dataSourceProperties.getProperty(name);
+            if (urlValue != null && propertyValue != null && !urlValue.equals(propertyValue)) {
+                errors.add(name + " is set to different values in the JDBC URL and data-source-properties: " + urlValue + " / " + propertyValue);
+            }
+            String value = getDriverProperty(name);
+            if (INTEGER_DRIVER_PROPERTIES.contains(name)) {
+                if (!value.matches("\\d+")) {
+                    errors.add(name + " must be a non-negative integer: " + value);
+                }
+            } else if (!value.equals("true") && !value.equals("false")) {
+                errors.add(name + " must be true or false: " + value);
+            }
+        }
+        if (!errors.isEmpty()) {
+            return errors;
+        }
+
+        boolean cachePrepStmts = Boolean.parseBoolean(getDriverProperty("cachePrepStmts"));
+        if (Boolean.parseBoolean(getDriverProperty("useServerPrepStmts")) && !cachePrepStmts) {
+            // キャッシュしないサーバー側のプリペアドステートメントは、実行のたびにPREPAREとCLOSEの往復が増えます。
+            errors.add("useServerPrepStmts requires cachePrepStmts=true");
+        }
+        if (!cachePrepStmts && (isSpecified("prepStmtCacheSize") || isSpecified("prepStmtCacheSqlLimit"))) {
+            errors.add("prepStmtCacheSize and prepStmtCacheSqlLimit have no effect without cachePrepStmts=true");
+        }
+        return errors;
+    }
+
+    private boolean isSpecified(String name) {
+        return urlProperties.containsKey(name) || dataSourceProperties.containsKey(name);
+    }
+
+    /**
+     * actuatorのinfoに出力する設定です。パスワードなどの認証情報は含めません。
+     */
+    public Map<String, Object> toInfo() {
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("maximumPoolSize", getMaximumPoolSize());
+        pool.put("minimumIdle", getMinimumIdle());
+        pool.put("connectionTimeout", config.getConnectionTimeout());
+        pool.put("validationTimeout", config.getValidationTimeout());
+        pool.put("idleTimeout", config.getIdleTimeout());
+        pool.put("maxLifetime", config.getMaxLifetime());
+        pool.put("keepaliveTime", config.getKeepaliveTime());
+        pool.put("leakDetectionThreshold", config.getLeakDetectionThreshold());
+
+        Map<String, Object> driver = new LinkedHashMap<>();
+        for (String name : DRIVER_DEFAULTS.keySet()) {
+            driver.put(name, getDriverProperty(name));
+        }
+
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("pool", pool);
+        info.put("driver", driver);
+        return info;
+    }
+}
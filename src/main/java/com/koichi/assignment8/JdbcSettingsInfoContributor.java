@@ -0,0 +1,35 @@
+package com.koichi.assignment8;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 実際に使用しているコネクションプールとJDBCドライバーの設定、読み取りレプリカの状態を/actuator/infoのdatasourceに出力します。
+ */
+@Component
+public class JdbcSettingsInfoContributor implements InfoContributor {
+
+    private final HikariDataSource primaryDataSource;
+
+    private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    public JdbcSettingsInfoContributor(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaRoutingDataSource) {
+        this.primaryDataSource = primaryDataSource;
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Map<String, Object> datasource = new LinkedHashMap<>(new JdbcSettings(primaryDataSource).toInfo());
+        Map<String, Object> replicas = new LinkedHashMap<>();
+        replicas.put("configured", replicaRoutingDataSource.getReplicas());
+        replicas.put("healthy", replicaRoutingDataSource.getHealthyReplicas());
+        datasource.put("replicas", replicas);
+        builder.withDetail("datasource", datasource);
+    }
+}
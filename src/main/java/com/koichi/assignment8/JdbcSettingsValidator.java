@@ -0,0 +1,84 @@
+package com.koichi.assignment8;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 起動時にコネクションプールとJDBCドライバーの設定を検証し、誤りがある場合は起動を中止します。
+ * 設定同士の組み合わせに加えて、接続先のMySQLの設定(wait_timeout・max_prepared_stmt_count・max_connections)とも照合します。
+ * 読み取りレプリカのコネクションプールはプライマリと同じ設定のため、プライマリのみを検証します。
+ *
+ * <p>起動時にデータベースへ接続するため、students.datasource.validate=true(productionプロファイル)を指定した場合のみ検証します。
+ * max-lifetime=0(入れ替えなし)はコネクションの入れ替えを無効にしただけで動作はするため、wait_timeoutが有限でも警告に留めます。
+ */
+@Component
+@ConditionalOnProperty(name = "students.datasource.validate", havingValue = "true")
+public class JdbcSettingsValidator {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSettingsValidator.class);
+
+    private final HikariDataSource primaryDataSource;
+
+    public JdbcSettingsValidator(HikariDataSource primaryDataSource) {
+        this.primaryDataSource = primaryDataSource;
+    }
+
+    @PostConstruct
+    public void validate() throws SQLException {
+        JdbcSettings settings = new JdbcSettings(primaryDataSource);
+        List<String> errors = new ArrayList<>(settings.validate());
+        if (errors.isEmpty()) {
+            errors.addAll(validateAgainstServer(settings));
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalStateException("Invalid JDBC settings: " + String.join("; ", errors));
+        }
+    }
+
+    private List<String> validateAgainstServer(JdbcSettings settings) throws SQLException {
+        try (Connection connection = primaryDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT @@wait_timeout, @@max_prepared_stmt_count, @@max_connections")) {
+            resultSet.next();
+            List<String> warnings = new ArrayList<>();
+            List<String> errors = validateAgainstServer(settings, resultSet.getLong(1) * 1000, resultSet.getLong(2), resultSet.getLong(3), warnings);
+            warnings.forEach(warning -> log.warn("JDBC settings: {}", warning));
+            return errors;
+        }
+    }
+
+    /**
+     * 接続先のMySQLの設定と照合し、起動を中止する誤りを返します。入れ替えを無効にしたmax-lifetimeのように、動作はする設定はwarningsに加えます。
+     */
+    static List<String> validateAgainstServer(JdbcSettings settings, long waitTimeoutMillis, long maxPreparedStatements, long maxConnections,
+                                              List<String> warnings) {
+        List<String> errors = new ArrayList<>();
+        // MySQLが先に切断したコネクションをプールから渡さないよう、コネクションはwait_timeoutより前に入れ替えます。
+        if (settings.getMaxLifetime() == 0) {
+            warnings.add("max-lifetime is 0, so connections idle longer than the server's wait_timeout (" + waitTimeoutMillis
+                    + "ms) are only detected by validation on checkout");
+        } else if (settings.getMaxLifetime() >= waitTimeoutMillis) {
+            errors.add("max-lifetime must be shorter than the server's wait_timeout: " + settings.getMaxLifetime() + " >= " + waitTimeoutMillis);
+        }
+        if (settings.getMaximumPoolSize() > maxConnections) {
+            errors.add("maximum-pool-size exceeds the server's max_connections: " + settings.getMaximumPoolSize() + " > " + maxConnections);
+        }
+        // サーバー側のプリペアドステートメントはコネクションごとに最大prepStmtCacheSize件をサーバーに残します。
+        long cachedStatements = (long) settings.getMaximumPoolSize() * settings.getPreparedStatementCacheSize();
+        if (settings.isServerPreparedStatementCacheEnabled() && cachedStatements > maxPreparedStatements) {
+            errors.add("maximum-pool-size * prepStmtCacheSize exceeds the server's max_prepared_stmt_count: " + cachedStatements + " > " + maxPreparedStatements);
+        }
+        return errors;
+    }
+}
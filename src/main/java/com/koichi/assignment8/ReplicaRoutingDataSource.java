@@ -0,0 +1,214 @@
+package com.koichi.assignment8;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 読み取り専用のトランザクション(@Transactional(readOnly = true))のコネクションを読み取りレプリカから、
+ * それ以外のコネクションをプライマリから取得します。
+ * レプリカが複数ある場合は、正常なレプリカから順番に取得します。
+ *
+ * <p>レプリカは一定間隔でコネクションと複製の遅延(SHOW REPLICA STATUSのSeconds_Behind_Source)を検証し、
+ * 検証に失敗したレプリカは次に成功するまで使用しません。複製が止まっているレプリカや、遅延がmaxLagSecondsを超えたレプリカも失敗とします。
+ * 遅延を確認するため、レプリカのユーザーにはREPLICATION CLIENT権限が必要です。
+ * 正常なレプリカがない場合や、レプリカからコネクションを取得できなかった場合はプライマリから取得します。
+ * 起動直後は最初の検証が終わるまでプライマリを使用します。
+ *
+ * <p>読み取り専用かどうかはコネクションを取得する時点で判定するため、
+ * LazyConnectionDataSourceProxyで包み、最初のSQLの実行までコネクションの取得を遅らせて使用します。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+
+    private final Map<String, DataSource> replicas;
+
+    private final List<String> replicaKeys;
+
+    private final Map<String, Boolean> healthyReplicas = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final Duration healthCheckInterval;
+
+    private final int healthCheckTimeoutSeconds;
+
+    private final long maxLagSeconds;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration healthCheckInterval, int healthCheckTimeoutSeconds,
+                                    long maxLagSeconds) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.replicaKeys = new ArrayList<>(replicas.keySet());
+        this.healthCheckInterval = healthCheckInterval;
+        this.healthCheckTimeoutSeconds = healthCheckTimeoutSeconds;
+        this.maxLagSeconds = maxLagSeconds;
+
+        Map<Object, Object> targetDataSources = new HashMap<>(replicas);
+        targetDataSources.put(PRIMARY, primary);
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        // 取得先が見つからない場合に黙ってプライマリへ書き込まないよう、未知のキーはエラーにします。
+        setLenientFallback(false);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (replicaKeys.isEmpty()) {
+            return;
+        }
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("replica-health-");
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::checkReplicas, healthCheckInterval);
+    }
+
+    @Override
+    public void close() {
+        if (taskScheduler != null) {
+            taskScheduler.destroy();
+        }
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close replica data source", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 読み取り専用のトランザクション内であれば正常なレプリカのキーを、それ以外はプライマリのキーを返します。
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaKeys.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int size = replicaKeys.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            String key = replicaKeys.get((start + i) % size);
+            if (healthyReplicas.getOrDefault(key, false)) {
+                return key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * レプリカからコネクションを取得できなかった場合は、そのレプリカを検証に成功するまで除外し、プライマリから取得します。
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        try {
+            return replicas.get(key).getConnection();
+        } catch (SQLException | RuntimeException e) {
+            markUnhealthy((String) key, "failed to get a connection", e);
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * 全てのレプリカのコネクションと複製の遅延を検証し、正常かどうかを更新します。
+     */
+    void checkReplicas() {
+        for (String key : replicaKeys) {
+            try (Connection connection = replicas.get(key).getConnection()) {
+                if (!connection.isValid(healthCheckTimeoutSeconds)) {
+                    markUnhealthy(key, "invalid connection", null);
+                    continue;
+                }
+                Long lagSeconds = replicationLagSeconds(connection);
+                if (lagSeconds == null) {
+                    markUnhealthy(key, "replication is not running", null);
+                } else if (lagSeconds > maxLagSeconds) {
+                    markUnhealthy(key, "replication lag " + lagSeconds + "s exceeds " + maxLagSeconds + "s", null);
+                } else {
+                    markHealthy(key);
+                }
+            } catch (SQLException | RuntimeException e) {
+                markUnhealthy(key, "health check failed", e);
+            }
+        }
+    }
+
+    /**
+     * 複製の遅延を秒で返します。複製を設定していない場合や、複製のスレッドが止まっている場合はnullを返します。
+     * 複数の複製元から複製している場合は、最も大きい遅延を返します。
+     */
+    private Long replicationLagSeconds(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(healthCheckTimeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery("SHOW REPLICA STATUS")) {
+                Long maxLag = null;
+                while (resultSet.next()) {
+                    long lag = resultSet.getLong("Seconds_Behind_Source");
+                    if (resultSet.wasNull()) {
+                        return null;
+                    }
+                    maxLag = maxLag == null ? lag : Math.max(maxLag, lag);
+                }
+                return maxLag;
+            }
+        }
+    }
+
+    /**
+     * 設定した全てのレプリカのキーを返します。
+     */
+    List<String> getReplicas() {
+        return List.copyOf(replicaKeys);
+    }
+
+    /**
+     * 現在使用できるレプリカのキーを返します。
+     */
+    List<String> getHealthyReplicas() {
+        return replicaKeys.stream()
+                .filter(key -> healthyReplicas.getOrDefault(key, false))
+                .toList();
+    }
+
+    private void markHealthy(String key) {
+        if (!Boolean.TRUE.equals(healthyReplicas.put(key, true))) {
+            log.info("Replica {} is available for read-only transactions", key);
+        }
+    }
+
+    private void markUnhealthy(String key, String reason, Exception cause) {
+        if (!Boolean.FALSE.equals(healthyReplicas.put(key, false))) {
+            log.warn("Replica {} is unavailable ({}), read-only transactions use the primary until it recovers", key, reason, cause);
+        }
+    }
+}
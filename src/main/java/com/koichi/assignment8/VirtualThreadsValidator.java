@@ -0,0 +1,28 @@
+package com.koichi.assignment8;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 仮想スレッド(spring.threads.virtual.enabled=true、virtualプロファイル)を指定した場合に、実行中のJavaが21以上かを起動時に検証します。
+ * Spring Bootは21未満では警告なしに通常のスレッドで起動するため、仮想スレッドを前提にしたコネクション数のまま動かないよう、起動を中止します。
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsValidator {
+
+    static final int REQUIRED_JAVA_VERSION = 21;
+
+    @PostConstruct
+    public void validate() {
+        validate(Runtime.version().feature());
+    }
+
+    static void validate(int javaVersion) {
+        if (javaVersion < REQUIRED_JAVA_VERSION) {
+            throw new IllegalStateException("spring.threads.virtual.enabled=true (virtual profile) requires Java "
+                    + REQUIRED_JAVA_VERSION + " or later, but the application is running on Java " + javaVersion);
+        }
+    }
+}
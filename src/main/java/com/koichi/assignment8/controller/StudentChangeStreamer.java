@@ -0,0 +1,268 @@
+package com.koichi.assignment8.controller;
+
+import com.koichi.assignment8.entity.StudentChange;
+import com.koichi.assignment8.service.StudentService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 学生の変更履歴をServer-Sent Eventsで配信します。
+ * 変更履歴の取得はノードごとに1つのスレッドが一定間隔で行い、取得した変更を全ての購読に配ります。
+ * 取得はstudents.changes.batch-size件ずつ行い、追いつくまで続けて取得します。購読がない間は最後の通し番号のみを確認します。
+ *
+ * <p>購読への送信は、取得とは別のstudents.changes.send-threads個のスレッドで購読ごとに順に行うため、
+ * 送信の遅いクライアントが取得や他の購読の送信を止めることはありません。
+ * 送信待ちの変更がstudents.changes.max-pending-changes件を超えた購読は終了し、クライアントにはLast-Event-IDを指定した再接続で続きから受け取らせます。
+ *
+ * <p>購読の開始時や取得した変更より前の変更が送信済みでない場合は、購読ごとに変更履歴から続きを取得して追いついてから、配られた変更を送信します。
+ * 通し番号はコミットした順に振るため(StudentChangeSequencer)、最後に送信した通し番号より後ろのみを取得しても取りこぼしません。
+ */
+@Component
+public class StudentChangeStreamer {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentChangeStreamer.class);
+
+    private final StudentService studentService;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    @Value("${students.changes.poll-interval-millis:1000}")
+    private long pollIntervalMillis = 1000;
+
+    @Value("${students.changes.heartbeat-interval-millis:15000}")
+    private long heartbeatIntervalMillis = 15000;
+
+    @Value("${students.changes.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${students.changes.send-threads:4}")
+    private int sendThreads = 4;
+
+    @Value("${students.changes.max-pending-changes:10000}")
+    private int maxPendingChanges = 10000;
+
+    private ThreadPoolTaskScheduler pollScheduler;
+
+    private ThreadPoolTaskExecutor sendExecutor;
+
+    /**
+     * 取得済みの最後の通し番号です。これより後ろの変更は、取得した時点の全ての購読に配ります。
+     * 最初の取得で最後の通し番号に合わせるまでは-1です。
+     */
+    private volatile long polledSequence = -1;
+
+    public StudentChangeStreamer(StudentService studentService) {
+        this.studentService = studentService;
+    }
+
+    @PostConstruct
+    public void start() {
+        sendExecutor = new ThreadPoolTaskExecutor();
+        sendExecutor.setCorePoolSize(sendThreads);
+        sendExecutor.setMaxPoolSize(sendThreads);
+        sendExecutor.setThreadNamePrefix("student-changes-send-");
+        sendExecutor.initialize();
+        pollScheduler = new ThreadPoolTaskScheduler();
+        pollScheduler.setPoolSize(1);
+        pollScheduler.setThreadNamePrefix("student-changes-poll-");
+        pollScheduler.initialize();
+        pollScheduler.scheduleWithFixedDelay(this::poll, Duration.ofMillis(pollIntervalMillis));
+    }
+
+    @PreDestroy
+    public void stop() {
+        pollScheduler.destroy();
+        sendExecutor.destroy();
+    }
+
+    /**
+     * 前回取得した通し番号より後ろの変更を取得し、全ての購読に配ります。
+     * 購読がない間は変更を取得せず、最後の通し番号のみを記録します。その間の変更は、購読の開始時に購読ごとに取得します。
+     */
+    void poll() {
+        if (polledSequence < 0 || subscriptions.isEmpty()) {
+            polledSequence = studentService.findLatestChangeSequence();
+            subscriptions.forEach(Subscription::schedule);
+            return;
+        }
+        List<StudentChange> changes;
+        do {
+            long from = polledSequence;
+            changes = studentService.findChanges(from, batchSize);
+            if (!changes.isEmpty()) {
+                polledSequence = changes.get(changes.size() - 1).getSequence();
+            }
+            for (Subscription subscription : subscriptions) {
+                subscription.publish(from, changes);
+            }
+        } while (changes.size() == batchSize);
+    }
+
+    /**
+     * 指定した通し番号より後ろの変更を送信するSseEmitterを作成します。
+     * クライアントが切断するか、spring.mvc.async.request-timeoutを過ぎるまで配信を続けます。
+     */
+    public SseEmitter subscribe(long after) {
+        SseEmitter emitter = new SseEmitter();
+        Subscription subscription = new Subscription(emitter, after);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        subscriptions.add(subscription);
+        subscription.schedule();
+        return emitter;
+    }
+
+    /**
+     * 取得した変更と、その取得の起点にした通し番号です。fromより後ろの変更は全てchangesに含まれます。
+     */
+    private static class Batch {
+        private final long from;
+
+        private final List<StudentChange> changes;
+
+        Batch(long from, List<StudentChange> changes) {
+            this.from = from;
+            this.changes = changes;
+        }
+    }
+
+    private class Subscription {
+        private final SseEmitter emitter;
+
+        private final Queue<Batch> pending = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pendingChanges = new AtomicInteger();
+
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        // 以下は送信中のスレッドのみが読み書きします。送信は購読ごとに1つずつ行います。
+        private long lastSequence;
+
+        private long lastSentAt = System.nanoTime();
+
+        private volatile boolean cancelled;
+
+        Subscription(SseEmitter emitter, long after) {
+            this.emitter = emitter;
+            this.lastSequence = after;
+        }
+
+        void publish(long from, List<StudentChange> changes) {
+            if (!changes.isEmpty()) {
+                if (pendingChanges.addAndGet(changes.size()) > maxPendingChanges) {
+                    cancel();
+                    emitter.complete();
+                    return;
+                }
+                pending.add(new Batch(from, changes));
+            }
+            schedule();
+        }
+
+        /**
+         * 送信中でなければ、送信用のスレッドで送信を開始します。
+         */
+        void schedule() {
+            if (cancelled || !sending.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sendExecutor.execute(this::send);
+            } catch (TaskRejectedException e) {
+                sending.set(false);
+                cancel();
+                emitter.complete();
+            }
+        }
+
+        private void send() {
+            try {
+                Batch batch;
+                while (!cancelled && (batch = pending.peek()) != null) {
+                    // 配られた変更より前の変更が送信済みでない場合は、先に変更履歴から追いつきます。
+                    // レプリカの遅延で追いつけない場合は、送信の順を保つため次の取得の後に再試行します。
+                    if (!catchUp(batch.from)) {
+                        break;
+                    }
+                    pending.poll();
+                    pendingChanges.addAndGet(-batch.changes.size());
+                    send(batch.changes);
+                }
+                if (!cancelled && pending.isEmpty()) {
+                    catchUp(polledSequence);
+                }
+
+                // 変更がない間もコメントを送信し、切断したクライアントの購読を終了させます。
+                if (!cancelled && System.nanoTime() - lastSentAt >= Duration.ofMillis(heartbeatIntervalMillis).toNanos()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    lastSentAt = System.nanoTime();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // クライアントが切断済みか、SseEmitterが完了しています。
+                cancel();
+            } catch (RuntimeException e) {
+                // クライアントはLast-Event-IDを指定して再接続することで、送信済みの変更の続きから再開できます。
+                log.warn("Failed to send student changes", e);
+                cancel();
+                emitter.completeWithError(e);
+            } finally {
+                sending.set(false);
+            }
+        }
+
+        /**
+         * 最後に送信した通し番号がtargetに届くまで、変更履歴から続きを取得して送信します。
+         * 届いた場合はtrueを、取得できる変更がなくなっても届かなかった場合はfalseを返します。
+         */
+        private boolean catchUp(long target) throws IOException {
+            while (lastSequence < target && !cancelled) {
+                List<StudentChange> changes = studentService.findChanges(lastSequence, batchSize);
+                send(changes);
+                if (changes.size() < batchSize) {
+                    break;
+                }
+            }
+            return lastSequence >= target;
+        }
+
+        private void send(List<StudentChange> changes) throws IOException {
+            for (StudentChange change : changes) {
+                if (change.getSequence() <= lastSequence) {
+                    // 追いつく間に取得した変更と、配られた変更が重なった分です。
+                    continue;
+                }
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.getSequence()))
+                        .name(change.getType().name())
+                        .data(change, MediaType.APPLICATION_JSON));
+                lastSequence = change.getSequence();
+                lastSentAt = System.nanoTime();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+    }
+}
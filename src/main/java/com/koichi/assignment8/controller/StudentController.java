@@ -1,20 +1,46 @@
 package com.koichi.assignment8.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.koichi.assignment8.controller.request.StudentBulkUpdateRequest;
 import com.koichi.assignment8.controller.request.StudentPostRequest;
 import com.koichi.assignment8.controller.request.StudentUpdateRequest;
+import com.koichi.assignment8.controller.response.StudentBulkChangeResponse;
+import com.koichi.assignment8.controller.response.StudentBulkResponse;
+import com.koichi.assignment8.controller.response.StudentLookupResponse;
 import com.koichi.assignment8.controller.response.StudentResponse;
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.GradeAdvancementJob;
 import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.entity.StudentChange;
+import com.koichi.assignment8.entity.StudentField;
+import com.koichi.assignment8.excption.BulkSizeExceededException;
 import com.koichi.assignment8.excption.MethodArgumentTypeMismatchException;
 import com.koichi.assignment8.excption.StudentControllerAdvice;
+import com.koichi.assignment8.excption.StudentVersionConflictException;
+import com.koichi.assignment8.service.BulkItemStatus;
+import com.koichi.assignment8.service.BulkMode;
+import com.koichi.assignment8.service.GradeAdvancementJobRunner;
+import com.koichi.assignment8.service.GradeAdvancementService;
+import com.koichi.assignment8.service.StudentBulkService;
+import com.koichi.assignment8.service.StudentBulkUpdate;
+import com.koichi.assignment8.service.StudentLookup;
+import com.koichi.assignment8.service.StudentPage;
 import com.koichi.assignment8.service.StudentService;
+import com.koichi.assignment8.service.StudentStats;
+import com.koichi.assignment8.service.StudentStatsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,13 +48,32 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @ApiResponse(
         responseCode = "500",
@@ -38,17 +83,64 @@ import java.util.Objects;
                 schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
 @RestController
 public class StudentController {
+    /**
+     * 一覧取得で次のページのカーソルを返すレスポンスヘッダーです。
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * 一括出力で、出力開始時点の変更履歴の通し番号を返すレスポンスヘッダーです。
+     */
+    public static final String CHANGE_SEQUENCE_HEADER = "X-Change-Sequence";
+
+    /**
+     * Server-Sent Eventsの再接続時に、最後に受信したイベントのidが指定されるリクエストヘッダーです。
+     */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
     private final StudentService studentService;
 
-    public StudentController(StudentService studentService) {
+    private final StudentBulkService studentBulkService;
+
+    private final StudentStatsService studentStatsService;
+
+    private final StudentChangeStreamer studentChangeStreamer;
+
+    private final GradeAdvancementService gradeAdvancementService;
+
+    private final GradeAdvancementJobRunner gradeAdvancementJobRunner;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    @Value("${students.bulk.max-size:5000}")
+    private int bulkMaxSize = 5000;
+
+    @Value("${students.lookup.max-size:1000}")
+    private int lookupMaxSize = 1000;
+
+    public StudentController(StudentService studentService, StudentBulkService studentBulkService, StudentStatsService studentStatsService,
+                             StudentChangeStreamer studentChangeStreamer, GradeAdvancementService gradeAdvancementService,
+                             GradeAdvancementJobRunner gradeAdvancementJobRunner, ObjectMapper objectMapper, Validator validator) {
         this.studentService = studentService;
+        this.studentBulkService = studentBulkService;
+        this.studentStatsService = studentStatsService;
+        this.studentChangeStreamer = studentChangeStreamer;
+        this.gradeAdvancementService = gradeAdvancementService;
+        this.gradeAdvancementJobRunner = gradeAdvancementJobRunner;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
     }
 
     /**
-     * 指定したidの学生のデータを全て取得します。
+     * 指定したidの学生のデータを取得します。
+     * fieldsを指定した場合は、指定した項目とidのみを返します。
+     * ETagとLast-Modifiedを返し、If-None-Matchが一致する場合はバージョンのみを確認して304を返します。
      */
     @Operation(summary = "学生取得API",
-            description = "指定したidの学生のデータを取得できます。"
+            description = "指定したidの学生のデータを取得できます。fieldsにid・name・grade・birthPlaceをカンマ区切りで指定すると、指定した項目とidのみを返します。"
+                    + "レスポンスのETagをIf-None-Matchに指定すると、変更がない場合は304を返します。"
     )
     @ApiResponses(
             value = {
@@ -58,6 +150,10 @@ public class StudentController {
                             content = @Content(
                                     mediaType = "application/json",
                                     schema = @Schema(implementation = Student.class))),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Not Modified",
+                            content = @Content),
                     @ApiResponse(
                             responseCode = "400",
                             description = "Bad Request",
@@ -73,23 +169,42 @@ public class StudentController {
             }
     )
     @GetMapping("/students/{id}")
-    public Student findById(@PathVariable("id") String id) {
+    public ResponseEntity<Student> findById(@PathVariable("id") String id, @RequestParam(required = false) String fields, WebRequest webRequest) {
         int intTypeConvertedId;
         try {
             intTypeConvertedId = Integer.parseInt(id);
         } catch (NumberFormatException e) {
             throw new MethodArgumentTypeMismatchException("IDは数字で入力してください");
         }
-        return studentService.findStudent(intTypeConvertedId);
+        Set<StudentField> studentFields = parseFields(fields);
+
+        // キャッシュにある学生はデータベースに問い合わせずに返せるため、バージョンのみを別に取得せず、取得した学生で変更の有無を判定します。
+        Student student = studentService.findStudent(intTypeConvertedId, studentFields);
+        String etag = etag(student.getId(), student.getVersion(), studentFields);
+        if (webRequest.checkNotModified(etag, toEpochMilli(student.getUpdatedAt()))) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+        if (student.getUpdatedAt() != null) {
+            response.lastModified(student.getUpdatedAt());
+        }
+        return response.body(student);
     }
 
     /**
-     * 特定のカラムを指定して学生のデータを取得します。
-     * ただし、検索に使用できるカラムは一度に1つのみです。
+     * 学年・名前の接頭辞・出身地を組み合わせて学生のデータを取得します。
+     * 複数のカラムを指定した場合は、全ての条件を満たす学生を取得します。
      * 指定するカラムがない場合は、全ての学生のデータを取得します。
+     * 結果はid順にlimit件ずつ返し、続きがある場合は次のページのカーソルをX-Next-CursorヘッダーとLinkヘッダーで返します。
+     * fieldsを指定した場合は、指定した項目とidのカラムのみを取得して返します。
+     * ページに含まれる学生のidとバージョンからETagを作成し、If-None-Matchが一致する場合はレスポンスを書き出さずに304を返します。
      */
     @Operation(summary = "詳細検索API",
-            description = "このエンドポイントでは全ての学生のデータを取得できます。また、特定のカラムを指定して学生を取得することも可能です。ただし、検索に使用できるカラムは一度に1つのみです。"
+            description = "このエンドポイントでは全ての学生のデータを取得できます。また、grade・startsWith・birthPlaceを組み合わせて、全ての条件を満たす学生を取得することも可能です。"
+                    + "結果はid順にlimit件ずつ返します。続きがある場合はX-Next-Cursorヘッダーの値をafterに指定すると次のページを取得できます。"
+                    + "fieldsにid・name・grade・birthPlaceをカンマ区切りで指定すると、指定した項目とidのみを返します。"
+                    + "レスポンスのETagをIf-None-Matchに指定すると、変更がない場合は304を返します。"
     )
     @ApiResponses(
             value = {
@@ -108,7 +223,9 @@ public class StudentController {
             }
     )
     @GetMapping("/students")
-    public List<Student> getStudents(@RequestParam(required = false) String grade, @RequestParam(required = false) String startsWith, @RequestParam(required = false) String birthPlace) {
+    public ResponseEntity<List<Student>> getStudents(@RequestParam(required = false) String grade, @RequestParam(required = false) String startsWith, @RequestParam(required = false) String birthPlace,
+                                                     @RequestParam(required = false) String after, @RequestParam(required = false) String limit,
+                                                     @RequestParam(required = false) String fields) {
         Integer integerTypeConvertedId = null;
         if (Objects.nonNull(grade)) {
             try {
@@ -117,7 +234,266 @@ public class StudentController {
                 throw new MethodArgumentTypeMismatchException("学年は半角数字で入力してください");
             }
         }
-        return studentService.findStudents(integerTypeConvertedId, startsWith, birthPlace);
+        Integer integerTypeConvertedAfter = null;
+        if (Objects.nonNull(after)) {
+            try {
+                integerTypeConvertedAfter = Integer.valueOf(after);
+            } catch (NumberFormatException e) {
+                throw new MethodArgumentTypeMismatchException("afterは半角数字で入力してください");
+            }
+        }
+        Integer integerTypeConvertedLimit = null;
+        if (Objects.nonNull(limit)) {
+            try {
+                integerTypeConvertedLimit = Integer.valueOf(limit);
+            } catch (NumberFormatException e) {
+                throw new MethodArgumentTypeMismatchException("limitは1以上の半角数字で入力してください");
+            }
+            if (integerTypeConvertedLimit < 1) {
+                throw new MethodArgumentTypeMismatchException("limitは1以上の半角数字で入力してください");
+            }
+        }
+
+        Set<StudentField> studentFields = parseFields(fields);
+        StudentPage studentPage = studentService.findStudents(integerTypeConvertedId, startsWith, birthPlace, integerTypeConvertedAfter, integerTypeConvertedLimit,
+                studentFields);
+        List<Student> students = studentPage.getStudents();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag(studentPage, studentFields));
+        students.stream()
+                .map(Student::getUpdatedAt)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .ifPresent(response::lastModified);
+        if (studentPage.getNextCursor() == null) {
+            return response.body(students);
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", studentPage.getNextCursor())
+                .build(true)
+                .toUriString();
+        return response
+                .header(NEXT_CURSOR_HEADER, String.valueOf(studentPage.getNextCursor()))
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(students);
+    }
+
+    /**
+     * 名前・出身地に指定した語を含む学生のデータを、関連度の高い順に取得します。
+     * 名前の途中に含まれる文字列も、全文検索インデックスを使用してテーブル全体を走査せずに検索します。
+     * 結果はoffset件目からlimit件ずつ返し、続きがある場合は次のページのoffsetをX-Next-CursorヘッダーとLinkヘッダーで返します。
+     */
+    @Operation(summary = "学生全文検索API",
+            description = "名前・出身地にqを含む学生のデータを、関連度の高い順に取得できます。空白で区切って複数の語を指定すると、全ての語を含む学生を取得します。"
+                    + "結果はoffset件目からlimit件ずつ返します。続きがある場合はX-Next-Cursorヘッダーの値をoffsetに指定すると次のページを取得できます。"
+                    + "fieldsにid・name・grade・birthPlaceをカンマ区切りで指定すると、指定した項目とidのみを返します。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = Student.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
+            }
+    )
+    @GetMapping("/students/_search")
+    public ResponseEntity<List<Student>> searchStudents(@RequestParam(required = false) String q, @RequestParam(required = false) String offset,
+                                                        @RequestParam(required = false) String limit, @RequestParam(required = false) String fields) {
+        if (Objects.isNull(q) || q.isBlank()) {
+            throw new MethodArgumentTypeMismatchException("qに検索する語を入力してください");
+        }
+        Integer integerTypeConvertedOffset = null;
+        if (Objects.nonNull(offset)) {
+            try {
+                integerTypeConvertedOffset = Integer.valueOf(offset);
+            } catch (NumberFormatException e) {
+                throw new MethodArgumentTypeMismatchException("offsetは0以上の半角数字で入力してください");
+            }
+            if (integerTypeConvertedOffset < 0) {
+                throw new MethodArgumentTypeMismatchException("offsetは0以上の半角数字で入力してください");
+            }
+        }
+        Integer integerTypeConvertedLimit = null;
+        if (Objects.nonNull(limit)) {
+            try {
+                integerTypeConvertedLimit = Integer.valueOf(limit);
+            } catch (NumberFormatException e) {
+                throw new MethodArgumentTypeMismatchException("limitは1以上の半角数字で入力してください");
+            }
+            if (integerTypeConvertedLimit < 1) {
+                throw new MethodArgumentTypeMismatchException("limitは1以上の半角数字で入力してください");
+            }
+        }
+
+        StudentPage studentPage = studentService.searchStudents(q, integerTypeConvertedOffset, integerTypeConvertedLimit, parseFields(fields));
+        if (studentPage.getNextCursor() == null) {
+            return ResponseEntity.ok(studentPage.getStudents());
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("offset", studentPage.getNextCursor())
+                .build(true)
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(studentPage.getNextCursor()))
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(studentPage.getStudents());
+    }
+
+    /**
+     * 学年ごと・出身地ごと・学年と出身地の組み合わせごとの学生の人数を取得します。
+     * 学生の登録・更新・削除と同時に更新される集計テーブルから返すため、学生の数に関係なく組み合わせの数だけの行を読み出します。
+     */
+    @Operation(summary = "学生集計API",
+            description = "学生の総数と、学年ごと・出身地ごと・学年と出身地の組み合わせごとの学生の人数を取得できます。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentStats.class)))
+            }
+    )
+    @GetMapping("/students/_stats")
+    public ResponseEntity<StudentStats> findStats() {
+        return ResponseEntity.ok(studentStatsService.findStats());
+    }
+
+    /**
+     * 指定した複数のidの学生のデータをまとめて取得します。
+     * 学生ID参照APIを1件ずつ呼び出す代わりに、1回のリクエストとキャッシュにないidのみの1回のクエリで取得します。
+     * 結果は指定したidの順に返し、該当する学生がいないidはmissingIdsで返します。
+     */
+    @Operation(summary = "学生一括取得API",
+            description = "学生のIDの配列を入力してリクエストすると、指定したidの学生のデータを指定した順にまとめて取得できます。"
+                    + "該当する学生がいないIDはmissingIdsで返します。"
+                    + "fieldsにid・name・grade・birthPlaceをカンマ区切りで指定すると、指定した項目とidのみを返します。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentLookupResponse.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
+            }
+    )
+    @PostMapping("/students/_lookup")
+    public ResponseEntity<StudentLookupResponse> lookupStudents(@RequestBody List<Integer> ids, @RequestParam(required = false) String fields) {
+        if (ids.isEmpty() || ids.contains(null)) {
+            throw new MethodArgumentTypeMismatchException("学生のIDを数字の配列で入力してください");
+        }
+        if (ids.size() > lookupMaxSize) {
+            throw new BulkSizeExceededException("一度に取得できる学生は" + lookupMaxSize + "人までです");
+        }
+        StudentLookup studentLookup = studentService.lookupStudents(ids, parseFields(fields));
+        return ResponseEntity.ok(new StudentLookupResponse(studentLookup.getStudents(), studentLookup.getMissingIds()));
+    }
+
+    /**
+     * 全ての学生のデータをNDJSONまたはCSVで一括出力します。
+     * データベースから1件ずつ読み出してそのままレスポンスに書き出すため、学生の数に関係なく一定のメモリで出力できます。
+     * 出力開始時点の変更履歴の通し番号をX-Change-Sequenceヘッダーで返すため、続きの変更は変更配信APIで取得できます。
+     */
+    @Operation(summary = "学生一括出力API",
+            description = "全ての学生のデータをid順に出力できます。formatにndjson(既定)またはcsvを指定できます。"
+                    + "X-Change-Sequenceヘッダーの値を変更配信APIのafterに指定すると、出力以降の変更を取得できます。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = {
+                                    @Content(mediaType = "application/x-ndjson"),
+                                    @Content(mediaType = "text/csv")
+                            }),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
+            }
+    )
+    @GetMapping("/students/_export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(required = false, defaultValue = "ndjson") String format) {
+        StudentExportFormat exportFormat = StudentExportFormat.from(format);
+        // 出力より前に取得するため、出力と重なった変更は変更配信APIでも重複して配信されます。
+        long changeSequence = studentService.findLatestChangeSequence();
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            exportFormat.writeHeader(writer);
+            studentService.exportStudents(student -> exportFormat.writeRow(writer, student, objectMapper));
+            writer.flush();
+        };
+        ContentDisposition contentDisposition = ContentDisposition.attachment()
+                .filename("students." + exportFormat.getExtension())
+                .build();
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString())
+                .header(CHANGE_SEQUENCE_HEADER, String.valueOf(changeSequence))
+                .body(body);
+    }
+
+    /**
+     * 学生の登録・更新・削除を、変更履歴からServer-Sent Eventsで配信します。
+     * afterで指定した通し番号より後ろの変更を記録した順に送信し、その後に記録された変更も続けて送信します。
+     * 各イベントのidは通し番号のため、再接続時に指定されるLast-Event-IDはafterより優先して使用します。
+     */
+    @Operation(summary = "学生変更配信API",
+            description = "学生の登録・更新・削除をServer-Sent Eventsで配信します。afterに指定した通し番号より後ろの変更から順に配信し、省略した場合は記録されている全ての変更を配信します。"
+                    + "イベントのidは通し番号のため、Last-Event-IDを指定して再接続すると続きから受信できます。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "text/event-stream",
+                                    schema = @Schema(implementation = StudentChange.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
+            }
+    )
+    @GetMapping("/students/_changes")
+    public SseEmitter streamChanges(@RequestParam(required = false) String after,
+                                    @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        String sequence = lastEventId != null ? lastEventId : after;
+        long afterSequence = 0;
+        if (Objects.nonNull(sequence)) {
+            try {
+                afterSequence = Long.parseLong(sequence.trim());
+            } catch (NumberFormatException e) {
+                throw new MethodArgumentTypeMismatchException("afterとLast-Event-IDは0以上の半角数字で入力してください");
+            }
+            if (afterSequence < 0) {
+                throw new MethodArgumentTypeMismatchException("afterとLast-Event-IDは0以上の半角数字で入力してください");
+            }
+        }
+        return studentChangeStreamer.subscribe(afterSequence);
     }
 
     /**
@@ -179,17 +555,324 @@ public class StudentController {
     )
     @PostMapping("/students")
     public ResponseEntity<StudentResponse> insertStudent(@RequestBody @Validated StudentPostRequest studentPostRequest, UriComponentsBuilder uriBuilder) {
-        Student student = studentService.insertStudent(studentPostRequest.getName(), studentPostRequest.getGrade(), studentPostRequest.getBirthPlace());
+        Student student = studentService.insertStudent(studentPostRequest.getName(), Grade.fromLabel(studentPostRequest.getGrade()), studentPostRequest.getBirthPlace());
         URI location = uriBuilder.path("/students/{id}").buildAndExpand(student.getId()).toUri();
         StudentResponse body = new StudentResponse("student created");
         return ResponseEntity.created(location).body(body);
     }
 
+    /**
+     * 複数の学生をまとめて登録します。
+     * リクエストの要素ごとにバリデーションを行い、問題のない学生のみを登録します。
+     * 各要素の処理結果として、登録した学生のIDまたはバリデーションエラーを返します。
+     */
+    @Operation(summary = "学生一括登録API",
+            description = "名前、学年、出身地の配列を入力してリクエストすると、複数の学生をまとめて登録できます。バリデーションエラーの要素は登録せず、要素ごとのエラーを返します。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentBulkResponse.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
+            }
+    )
+    @PostMapping("/students/_bulk")
+    public ResponseEntity<StudentBulkResponse> insertStudents(@RequestBody List<StudentPostRequest> studentPostRequests) {
+        if (studentPostRequests.size() > bulkMaxSize) {
+            throw new BulkSizeExceededException("一度に処理できる学生は" + bulkMaxSize + "人までです");
+        }
+
+        List<StudentBulkResponse.Result> results = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < studentPostRequests.size(); i++) {
+            StudentPostRequest studentPostRequest = studentPostRequests.get(i);
+            List<Map<String, String>> errors = validate(studentPostRequest);
+            if (errors.isEmpty()) {
+                validIndexes.add(i);
+                students.add(new Student(studentPostRequest.getName(), Grade.fromLabel(studentPostRequest.getGrade()), studentPostRequest.getBirthPlace()));
+            } else {
+                results.add(new StudentBulkResponse.Result(i, null, errors));
+            }
+        }
+
+        List<Student> insertedStudents = studentService.insertStudents(students);
+        for (int i = 0; i < insertedStudents.size(); i++) {
+            results.add(new StudentBulkResponse.Result(validIndexes.get(i), insertedStudents.get(i).getId(), null));
+        }
+        results.sort(Comparator.comparingInt(StudentBulkResponse.Result::getIndex));
+        return ResponseEntity.ok(new StudentBulkResponse(insertedStudents.size(), results));
+    }
+
+    /**
+     * 複数の学生の名前、学年、出身地をまとめて更新します。
+     * リクエストの要素ごとにバリデーションを行い、問題のない要素をJDBCのバッチで更新します。
+     * modeがallOrNothingの場合は1件でも更新できない要素があれば全てを取り消して409を返し、bestEffort(既定)の場合は更新できる要素のみを更新します。
+     */
+    @Operation(summary = "学生一括更新API",
+            description = "id、名前、学年、出身地の配列を入力してリクエストすると、複数の学生をまとめて更新できます。versionを指定した要素は、そのバージョンから変更されていない場合のみ更新します。"
+                    + "modeにallOrNothingを指定すると、1件でも更新できない要素があれば全ての更新を取り消して409を返します。bestEffort(既定)の場合は更新できる要素のみを更新します。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentBulkChangeResponse.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class))),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Conflict",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentBulkChangeResponse.class)))
+            }
+    )
+    @PatchMapping("/students/_bulkUpdate")
+    public ResponseEntity<StudentBulkChangeResponse> updateStudents(@RequestBody List<StudentBulkUpdateRequest> studentBulkUpdateRequests,
+                                                                    @RequestParam(required = false) String mode) {
+        BulkMode bulkMode = BulkMode.from(mode);
+        if (studentBulkUpdateRequests.size() > bulkMaxSize) {
+            throw new BulkSizeExceededException("一度に処理できる学生は" + bulkMaxSize + "人までです");
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        List<List<Map<String, String>>> errors = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        List<StudentBulkUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < studentBulkUpdateRequests.size(); i++) {
+            StudentBulkUpdateRequest request = studentBulkUpdateRequests.get(i);
+            List<Map<String, String>> requestErrors = validate(request);
+            ids.add(request == null ? null : request.getId());
+            errors.add(requestErrors.isEmpty() ? null : requestErrors);
+            if (requestErrors.isEmpty()) {
+                validIndexes.add(i);
+                updates.add(new StudentBulkUpdate(
+                        new Student(request.getId(), request.getName(), Grade.fromLabel(request.getGrade()), request.getBirthPlace()), request.getVersion()));
+            }
+        }
+
+        List<BulkItemStatus> statuses = validIndexes.size() < ids.size() && bulkMode == BulkMode.ALL_OR_NOTHING
+                ? Collections.nCopies(updates.size(), BulkItemStatus.ABORTED)
+                : studentBulkService.updateStudents(updates, bulkMode);
+        return bulkChangeResponse(bulkMode, ids, errors, validIndexes, statuses);
+    }
+
+    /**
+     * 複数の学生をまとめて削除します。
+     * 指定したidの学生をJDBCのバッチで削除し、要素ごとの処理結果を返します。
+     * modeがallOrNothingの場合は1件でも削除できない要素があれば全てを取り消して409を返し、bestEffort(既定)の場合は削除できる要素のみを削除します。
+     */
+    @Operation(summary = "学生一括削除API",
+            description = "学生のIDの配列を入力してリクエストすると、複数の学生をまとめて削除できます。"
+                    + "modeにallOrNothingを指定すると、1件でも削除できない要素があれば全ての削除を取り消して409を返します。bestEffort(既定)の場合は削除できる要素のみを削除します。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentBulkChangeResponse.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class))),
+                    @ApiResponse(
+                            responseCode = "409",
+                            description = "Conflict",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentBulkChangeResponse.class)))
+            }
+    )
+    @PostMapping("/students/_bulkDelete")
+    public ResponseEntity<StudentBulkChangeResponse> deleteStudents(@RequestBody List<Integer> ids, @RequestParam(required = false) String mode) {
+        BulkMode bulkMode = BulkMode.from(mode);
+        if (ids.size() > bulkMaxSize) {
+            throw new BulkSizeExceededException("一度に処理できる学生は" + bulkMaxSize + "人までです");
+        }
+
+        List<List<Map<String, String>>> errors = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        List<Integer> validIds = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            List<Map<String, String>> requestErrors = validate(ids.get(i));
+            errors.add(requestErrors.isEmpty() ? null : requestErrors);
+            if (requestErrors.isEmpty()) {
+                validIndexes.add(i);
+                validIds.add(ids.get(i));
+            }
+        }
+
+        List<BulkItemStatus> statuses = validIndexes.size() < ids.size() && bulkMode == BulkMode.ALL_OR_NOTHING
+                ? Collections.nCopies(validIds.size(), BulkItemStatus.ABORTED)
+                : studentBulkService.deleteStudents(validIds, bulkMode);
+        return bulkChangeResponse(bulkMode, ids, errors, validIndexes, statuses);
+    }
+
+    /**
+     * 一括更新・一括削除の要素ごとの処理結果をリクエストの順に並べたレスポンスを作成します。
+     * バリデーションエラーの要素はINVALIDになります。allOrNothingで処理できない要素があった場合は409を返します。
+     */
+    private ResponseEntity<StudentBulkChangeResponse> bulkChangeResponse(BulkMode bulkMode, List<Integer> ids, List<List<Map<String, String>>> errors,
+                                                                         List<Integer> validIndexes, List<BulkItemStatus> validStatuses) {
+        BulkItemStatus[] statuses = new BulkItemStatus[ids.size()];
+        Arrays.fill(statuses, BulkItemStatus.INVALID);
+        for (int i = 0; i < validIndexes.size(); i++) {
+            statuses[validIndexes.get(i)] = validStatuses.get(i);
+        }
+
+        List<StudentBulkChangeResponse.Result> results = new ArrayList<>(ids.size());
+        int succeeded = 0;
+        boolean failed = false;
+        for (int i = 0; i < ids.size(); i++) {
+            results.add(new StudentBulkChangeResponse.Result(i, ids.get(i), statuses[i], errors.get(i)));
+            if (statuses[i] == BulkItemStatus.UPDATED || statuses[i] == BulkItemStatus.DELETED) {
+                succeeded++;
+            }
+            failed |= statuses[i].isFailure();
+        }
+        HttpStatus status = failed && bulkMode == BulkMode.ALL_OR_NOTHING ? HttpStatus.CONFLICT : HttpStatus.OK;
+        return ResponseEntity.status(status).body(new StudentBulkChangeResponse(bulkMode.getValue(), succeeded, results));
+    }
+
+    /**
+     * 学生1人分のETagです。行のバージョンは更新のたびに増えるため、idとバージョンで内容を識別できます。
+     * fieldsで項目を絞り込んだ場合は同じバージョンでも内容が異なるため、返す項目の組を後ろに加えます。
+     */
+    private String etag(Integer id, Integer version, Set<StudentField> fields) {
+        return "\"" + id + "-" + version + fieldsTag(fields) + "\"";
+    }
+
+    /**
+     * 一覧の1ページ分のETagです。ページに含まれる学生のidとバージョン、次のページのカーソル、返す項目の組から作成します。
+     * 学生の更新・削除やページへの追加があると値が変わります。
+     */
+    private String etag(StudentPage studentPage, Set<StudentField> fields) {
+        StringBuilder versions = new StringBuilder();
+        for (Student student : studentPage.getStudents()) {
+            versions.append(student.getId()).append(':').append(student.getVersion()).append(',');
+        }
+        versions.append(studentPage.getNextCursor()).append(fieldsTag(fields));
+        return "\"" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * ETagに加える、返す項目の組です。
+     * fieldsの並びや重複に関係なく同じ値になるよう、必ず返すidを加えてStudentFieldの順に並べます。
+     * 全ての項目を返す場合は、fieldsを省略した場合と同じETagになるよう空文字列を返します。
+     */
+    private String fieldsTag(Set<StudentField> fields) {
+        if (fields == null) {
+            return "";
+        }
+        Set<StudentField> selected = EnumSet.noneOf(StudentField.class);
+        selected.addAll(fields);
+        selected.add(StudentField.ID);
+        if (selected.size() == StudentField.values().length) {
+            return "";
+        }
+        return selected.stream()
+                .map(StudentField::getProperty)
+                .collect(Collectors.joining(",", ";", ""));
+    }
+
+    /**
+     * If-Matchに指定されたETagから、更新時に一致を確認するバージョンを取り出します。
+     * If-Matchがない場合と*の場合は確認しないためnullを返します。
+     * 他の学生のETagや弱いETagなど、一致し得ない値の場合はStudentVersionConflictExceptionになります。
+     */
+    private Integer expectedVersion(int id, String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.trim();
+        String prefix = "\"" + id + "-";
+        if (etag.startsWith(prefix) && etag.endsWith("\"") && etag.length() > prefix.length() + 1) {
+            // fieldsで絞り込んだ参照のETagも、同じバージョンを指すため受け付けます。
+            String version = etag.substring(prefix.length(), etag.length() - 1);
+            int fieldsIndex = version.indexOf(';');
+            try {
+                return Integer.valueOf(fieldsIndex < 0 ? version : version.substring(0, fieldsIndex));
+            } catch (NumberFormatException e) {
+                // 一致し得ないETagとして扱います。
+            }
+        }
+        throw new StudentVersionConflictException("student has been modified");
+    }
+
+    private long toEpochMilli(Instant instant) {
+        return instant == null ? -1 : instant.toEpochMilli();
+    }
+
+    /**
+     * カンマ区切りのfieldsを項目の一覧にします。fieldsがnullの場合は全ての項目を対象とするためnullを返します。
+     */
+    private Set<StudentField> parseFields(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<StudentField> studentFields = EnumSet.noneOf(StudentField.class);
+        for (String property : fields.split(",")) {
+            if (property.isBlank()) {
+                continue;
+            }
+            StudentField field = StudentField.from(property.trim());
+            if (field == null) {
+                throw new MethodArgumentTypeMismatchException("fieldsはid・name・grade・birthPlaceをカンマ区切りで指定してください");
+            }
+            studentFields.add(field);
+        }
+        return studentFields;
+    }
+
+    /**
+     * 一括処理のリクエストの1要素をバリデーションし、エラーの一覧を返します。
+     */
+    private List<Map<String, String>> validate(Object request) {
+        List<Map<String, String>> errors = new ArrayList<>();
+        if (request == null) {
+            errors.add(Map.of("field", "", "message", "リクエストの要素を入力してください"));
+            return errors;
+        }
+        validator.validate(request).stream()
+                .sorted(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+                .forEach(violation -> {
+                    Map<String, String> error = new HashMap<>();
+                    error.put("field", violation.getPropertyPath().toString());
+                    error.put("message", violation.getMessage());
+                    errors.add(error);
+                });
+        return errors;
+    }
+
     /**
      * 指定したidの学生の名前、学年、出身地を更新します。
+     * If-Matchに学生取得APIのETagを指定した場合は、そのバージョンから変更されていない場合のみ更新し、変更されている場合は412を返します。
      */
     @Operation(summary = "学生更新API",
             description = "指定したidの生徒のデータを更新できます。"
+                    + "If-Matchに学生取得APIのETagを指定すると、取得後に他の更新が行われている場合は更新せずに412を返します。"
     )
     @ApiResponses(
             value = {
@@ -243,41 +926,92 @@ public class StudentController {
                     @ApiResponse(
                             responseCode = "404",
                             description = "student not found",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class))),
+                    @ApiResponse(
+                            responseCode = "412",
+                            description = "student has been modified",
                             content = @Content(
                                     mediaType = "application/json",
                                     schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
             }
     )
     @PatchMapping("/students/{id}")
-    public ResponseEntity<StudentResponse> updateStudent(@PathVariable("id") String id, @RequestBody @Validated StudentUpdateRequest studentUpdateRequest) {
+    public ResponseEntity<StudentResponse> updateStudent(@PathVariable("id") String id, @RequestBody @Validated StudentUpdateRequest studentUpdateRequest,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         int intTypeConvertedId;
         try {
             intTypeConvertedId = Integer.parseInt(id);
-            studentService.updateStudent(intTypeConvertedId, studentUpdateRequest.getName(), studentUpdateRequest.getGrade(), studentUpdateRequest.getBirthPlace());
         } catch (NumberFormatException e) {
             throw new MethodArgumentTypeMismatchException("IDは数字で入力してください");
         }
+        studentService.updateStudent(intTypeConvertedId, studentUpdateRequest.getName(), Grade.fromLabel(studentUpdateRequest.getGrade()), studentUpdateRequest.getBirthPlace(),
+                expectedVersion(intTypeConvertedId, ifMatch));
         StudentResponse body = new StudentResponse("Student updated");
         return ResponseEntity.status(HttpStatus.OK).body(body);
     }
 
     /**
-     * 全学生の学年を一斉に進級させます。
+     * 全学生の学年を一斉に進級させるジョブを開始します。
+     * 進級はバックグラウンドでidの範囲ごとに行うため、完了を待たずに202とジョブの状態を返します。
+     * 完了していないジョブがある場合は、新しいジョブを開始せずにそのジョブを返します。
      */
     @Operation(summary = "全学年更新API",
-            description = "全学生の学年を一斉に進級ができます。"
+            description = "全学生の学年を一斉に進級させるジョブを開始し、202とジョブの状態を返します。進捗はLocationヘッダーのURLで確認できます。"
+                    + "完了していないジョブがある場合は新しいジョブを開始せずにそのジョブを返し、中断している場合は続きから再開します。"
     )
     @ApiResponse(
-            responseCode = "200",
-            description = "Ok",
+            responseCode = "202",
+            description = "Accepted",
             content = @Content(
                     mediaType = "application/json",
-                    schema = @Schema(implementation = StudentResponse.class)))
+                    schema = @Schema(implementation = GradeAdvancementJob.class)))
     @PatchMapping("/students/grade/_batchUpdate")
-    public ResponseEntity<StudentResponse> updateGrade() {
-        studentService.updateGrade();
-        StudentResponse body = new StudentResponse("Grade updated");
-        return ResponseEntity.status(HttpStatus.OK).body(body);
+    public ResponseEntity<GradeAdvancementJob> updateGrade(UriComponentsBuilder uriBuilder) {
+        GradeAdvancementJob job = gradeAdvancementService.startJob();
+        gradeAdvancementJobRunner.submit(job.getId());
+        URI location = uriBuilder.path("/students/grade/_batchUpdate/{jobId}").buildAndExpand(job.getId()).toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    /**
+     * 全学生の進級ジョブの状態と進捗を取得します。
+     */
+    @Operation(summary = "全学年更新ジョブ取得API",
+            description = "指定したidの進級ジョブの状態と、進級前の学年ごとにこれまで進級した学生の人数を取得できます。"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Ok",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = GradeAdvancementJob.class))),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Bad Request",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class))),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "grade advancement job not found",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = StudentControllerAdvice.ErrorResponse.class)))
+            }
+    )
+    @GetMapping("/students/grade/_batchUpdate/{jobId}")
+    public ResponseEntity<GradeAdvancementJob> findGradeAdvancementJob(@PathVariable("jobId") String jobId) {
+        int intTypeConvertedJobId;
+        try {
+            intTypeConvertedJobId = Integer.parseInt(jobId);
+        } catch (NumberFormatException e) {
+            throw new MethodArgumentTypeMismatchException("ジョブIDは数字で入力してください");
+        }
+        return ResponseEntity.ok(gradeAdvancementService.findJob(intTypeConvertedJobId));
     }
 
     /**
@@ -0,0 +1,108 @@
+package com.koichi.assignment8.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.excption.MethodArgumentTypeMismatchException;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 学生データを一括出力する際の出力形式です。
+ * 1行に1人の学生を書き出すため、行単位でそのまま出力できます。
+ */
+public enum StudentExportFormat {
+    NDJSON("ndjson", new MediaType("application", "x-ndjson", StandardCharsets.UTF_8)) {
+        @Override
+        public void writeHeader(Writer writer) {
+        }
+
+        @Override
+        public void writeRow(Writer writer, Student student, ObjectMapper objectMapper) {
+            try {
+                writer.write(objectMapper.writeValueAsString(student));
+                writer.write('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+    CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8)) {
+        @Override
+        public void writeHeader(Writer writer) {
+            try {
+                writer.write("id,name,grade,birthPlace\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void writeRow(Writer writer, Student student, ObjectMapper objectMapper) {
+            try {
+                writer.write(String.valueOf(student.getId()));
+                writer.write(',');
+                writer.write(escape(student.getName()));
+                writer.write(',');
+                writer.write(escape(student.getGrade() == null ? null : student.getGrade().getLabel()));
+                writer.write(',');
+                writer.write(escape(student.getBirthPlace()));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    };
+
+    private final String extension;
+
+    private final MediaType mediaType;
+
+    StudentExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * 出力の先頭に1度だけ書き出す内容を書き出します。
+     */
+    public abstract void writeHeader(Writer writer);
+
+    /**
+     * 学生1人分のデータを1行で書き出します。
+     */
+    public abstract void writeRow(Writer writer, Student student, ObjectMapper objectMapper);
+
+    public static StudentExportFormat from(String value) {
+        for (StudentExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new MethodArgumentTypeMismatchException("formatはndjson・csvのいずれかを指定してください");
+    }
+}
@@ -0,0 +1,33 @@
+package com.koichi.assignment8.controller.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * 学生の一括更新で、1人分の更新内容を指定する際に使用するリクエストです。
+ * versionを指定した場合は、そのバージョンから変更されていない場合のみ更新します。
+ */
+@Schema(description = "生徒情報一括更新リクエスト")
+public class StudentBulkUpdateRequest extends StudentUpdateRequest {
+
+    @Schema(description = "生徒のID", example = "1", required = true)
+    @NotNull(message = "idを入力してください")
+    private Integer id;
+
+    @Schema(description = "更新前の生徒のバージョン。指定した場合は、このバージョンから変更されていない場合のみ更新します", example = "1")
+    private Integer version;
+
+    public StudentBulkUpdateRequest(Integer id, String name, String grade, String birthPlace, Integer version) {
+        super(name, grade, birthPlace);
+        this.id = id;
+        this.version = version;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,84 @@
+package com.koichi.assignment8.controller.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.koichi.assignment8.service.BulkItemStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 学生の一括更新・一括削除で、リクエストの各要素の処理結果を返すレスポンスです。
+ */
+@Schema(description = "学生一括更新・一括削除レスポンス")
+public class StudentBulkChangeResponse {
+    @Schema(description = "処理の扱い(allOrNothing・bestEffort)")
+    private final String mode;
+
+    @Schema(description = "更新・削除できた学生の数")
+    private final int succeeded;
+
+    @Schema(description = "リクエストの要素ごとの処理結果")
+    private final List<Result> results;
+
+    public StudentBulkChangeResponse(String mode, int succeeded, List<Result> results) {
+        this.mode = mode;
+        this.succeeded = succeeded;
+        this.results = results;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * リクエストの1要素分の処理結果です。
+     * バリデーションエラーの場合のみerrorsを返します。
+     */
+    @Schema(description = "リクエストの要素ごとの処理結果")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        @Schema(description = "リクエストの配列の添字")
+        private final int index;
+
+        @Schema(description = "学生のID")
+        private final Integer id;
+
+        @Schema(description = "処理結果(UPDATED・DELETED・NOT_FOUND・CONFLICT・INVALID・ABORTED・FAILED)")
+        private final BulkItemStatus status;
+
+        @Schema(description = "バリデーションエラーの詳細リスト")
+        private final List<Map<String, String>> errors;
+
+        public Result(int index, Integer id, BulkItemStatus status, List<Map<String, String>> errors) {
+            this.index = index;
+            this.id = id;
+            this.status = status;
+            this.errors = errors;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public BulkItemStatus getStatus() {
+            return status;
+        }
+
+        public List<Map<String, String>> getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.koichi.assignment8.controller.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 学生の一括登録で、リクエストの各要素の処理結果を返すレスポンスです。
+ */
+@Schema(description = "学生一括登録レスポンス")
+public class StudentBulkResponse {
+    @Schema(description = "登録できた学生の数")
+    private final int created;
+
+    @Schema(description = "リクエストの要素ごとの処理結果")
+    private final List<Result> results;
+
+    public StudentBulkResponse(int created, List<Result> results) {
+        this.created = created;
+        this.results = results;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * リクエストの1要素分の処理結果です。
+     * 登録できた場合はidを、バリデーションエラーの場合はerrorsを返します。
+     */
+    @Schema(description = "リクエストの要素ごとの処理結果")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        @Schema(description = "リクエストの配列の添字")
+        private final int index;
+
+        @Schema(description = "登録した学生のID")
+        private final Integer id;
+
+        @Schema(description = "バリデーションエラーの詳細リスト")
+        private final List<Map<String, String>> errors;
+
+        public Result(int index, Integer id, List<Map<String, String>> errors) {
+            this.index = index;
+            this.id = id;
+            this.errors = errors;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public List<Map<String, String>> getErrors() {
+            return errors;
+        }
+    }
+}
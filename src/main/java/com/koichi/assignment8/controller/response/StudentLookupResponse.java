@@ -0,0 +1,31 @@
+package com.koichi.assignment8.controller.response;
+
+import com.koichi.assignment8.entity.Student;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * idを指定した学生の一括取得で、取得できた学生と該当する学生がいなかったidを返すレスポンスです。
+ */
+@Schema(description = "学生一括取得レスポンス")
+public class StudentLookupResponse {
+    @Schema(description = "取得できた学生のデータ。リクエストで指定したidの順に並びます")
+    private final List<Student> students;
+
+    @Schema(description = "該当する学生がいなかったID")
+    private final List<Integer> missingIds;
+
+    public StudentLookupResponse(List<Student> students, List<Integer> missingIds) {
+        this.students = students;
+        this.missingIds = missingIds;
+    }
+
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    public List<Integer> getMissingIds() {
+        return missingIds;
+    }
+}
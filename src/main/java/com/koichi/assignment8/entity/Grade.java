@@ -0,0 +1,64 @@
+package com.koichi.assignment8.entity;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * 学生の学年です。
+ * データベースにはgradesテーブルと同じ学年コード(TINYINT)で保存し、APIでは学年名(一年生など)で入出力します。
+ * 学年コードは進級順に並んでいるため、進級は学年コードに1を足すだけで行えます。
+ */
+public enum Grade {
+    FIRST(1, "一年生"),
+    SECOND(2, "二年生"),
+    THIRD(3, "三年生"),
+    GRADUATE(4, "卒業生");
+
+    private final int code;
+
+    private final String label;
+
+    Grade(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * 進級の対象となる学年(卒業生以外)かを返します。
+     */
+    public boolean isAdvancing() {
+        return this != GRADUATE;
+    }
+
+    /**
+     * 学年コードに対応する学年を返します。該当しない場合はnullを返します。
+     */
+    public static Grade fromCode(int code) {
+        for (Grade grade : values()) {
+            if (grade.code == code) {
+                return grade;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 学年名に対応する学年を返します。該当しない場合はnullを返します。
+     */
+    public static Grade fromLabel(String label) {
+        for (Grade grade : values()) {
+            if (grade.label.equals(label)) {
+                return grade;
+            }
+        }
+        return null;
+    }
+}
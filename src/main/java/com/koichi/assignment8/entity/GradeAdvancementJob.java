@@ -0,0 +1,139 @@
+package com.koichi.assignment8.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 全学生の進級ジョブと、その進捗です。
+ * 開始時点の最大のid(maxId)までの学生を、id順に範囲を区切って進級させます。lastIdまでの学生は進級済みです。
+ */
+@Schema(description = "全学生の進級ジョブ")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GradeAdvancementJob {
+    @Schema(description = "ジョブID")
+    private final Integer id;
+
+    @Schema(description = "ジョブの状態")
+    private final GradeAdvancementJobStatus status;
+
+    @Schema(description = "進級の対象となる最大の学生ID(開始時点の最大の学生ID)")
+    private final Integer maxId;
+
+    @Schema(description = "進級が完了した最後の学生ID")
+    private final Integer lastId;
+
+    private final Long advancedFirst;
+
+    private final Long advancedSecond;
+
+    private final Long advancedThird;
+
+    @Schema(description = "進級を中断した原因")
+    private final String error;
+
+    @Schema(description = "開始日時")
+    private final Instant createdAt;
+
+    @Schema(description = "最終更新日時")
+    private final Instant updatedAt;
+
+    @Schema(description = "完了日時")
+    private final Instant completedAt;
+
+    public GradeAdvancementJob(Integer id, GradeAdvancementJobStatus status, Integer maxId, Integer lastId,
+                               Long advancedFirst, Long advancedSecond, Long advancedThird, String error,
+                               Instant createdAt, Instant updatedAt, Instant completedAt) {
+        this.id = id;
+        this.status = status;
+        this.maxId = maxId;
+        this.lastId = lastId;
+        this.advancedFirst = advancedFirst;
+        this.advancedSecond = advancedSecond;
+        this.advancedThird = advancedThird;
+        this.error = error;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.completedAt = completedAt;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public GradeAdvancementJobStatus getStatus() {
+        return status;
+    }
+
+    public Integer getMaxId() {
+        return maxId;
+    }
+
+    public Integer getLastId() {
+        return lastId;
+    }
+
+    @JsonIgnore
+    public Long getAdvancedFirst() {
+        return advancedFirst;
+    }
+
+    @JsonIgnore
+    public Long getAdvancedSecond() {
+        return advancedSecond;
+    }
+
+    @JsonIgnore
+    public Long getAdvancedThird() {
+        return advancedThird;
+    }
+
+    /**
+     * これまでに進級した学生の人数を、進級前の学年ごとに返します。
+     */
+    @Schema(description = "進級前の学年ごとの、進級した学生の人数", example = "{\"一年生\": 120, \"二年生\": 118, \"三年生\": 121}")
+    public Map<String, Long> getAdvanced() {
+        Map<String, Long> advanced = new LinkedHashMap<>();
+        advanced.put(Grade.FIRST.getLabel(), advancedFirst);
+        advanced.put(Grade.SECOND.getLabel(), advancedSecond);
+        advanced.put(Grade.THIRD.getLabel(), advancedThird);
+        return advanced;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GradeAdvancementJob that = (GradeAdvancementJob) o;
+        return Objects.equals(id, that.id) && status == that.status && Objects.equals(maxId, that.maxId) && Objects.equals(lastId, that.lastId)
+                && Objects.equals(advancedFirst, that.advancedFirst) && Objects.equals(advancedSecond, that.advancedSecond)
+                && Objects.equals(advancedThird, that.advancedThird) && Objects.equals(error, that.error)
+                && Objects.equals(createdAt, that.createdAt) && Objects.equals(updatedAt, that.updatedAt) && Objects.equals(completedAt, that.completedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, status, maxId, lastId, advancedFirst, advancedSecond, advancedThird, error, createdAt, updatedAt, completedAt);
+    }
+}
@@ -0,0 +1,19 @@
+package com.koichi.assignment8.entity;
+
+/**
+ * 全学生の進級ジョブの状態です。
+ */
+public enum GradeAdvancementJobStatus {
+    /**
+     * 進級を実行中です。アプリケーションを再起動した場合も、続きから再開します。
+     */
+    RUNNING,
+    /**
+     * 開始時点の全ての学生の進級が完了しました。
+     */
+    COMPLETED,
+    /**
+     * 再試行しても進級できなかったため中断しています。もう一度進級を要求すると続きから再開します。
+     */
+    FAILED
+}
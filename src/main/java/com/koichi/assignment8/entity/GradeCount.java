@@ -0,0 +1,38 @@
+package com.koichi.assignment8.entity;
+
+import java.util.Objects;
+
+/**
+ * 学年ごとの学生の人数です。
+ */
+public class GradeCount {
+    private final Grade grade;
+
+    private final Long count;
+
+    public GradeCount(Grade grade, Long count) {
+        this.grade = grade;
+        this.count = count;
+    }
+
+    public Grade getGrade() {
+        return grade;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GradeCount that = (GradeCount) o;
+        return Objects.equals(grade, that.grade) && Objects.equals(count, that.count);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(grade, count);
+    }
+}
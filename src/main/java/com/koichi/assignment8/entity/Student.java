@@ -1,14 +1,21 @@
 package com.koichi.assignment8.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotBlank;
 
+import java.time.Instant;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 学生データ用のエンティティクラスです。
+ * fieldsで項目を絞り込んだ場合、取得していない項目はnullになり、JSONには出力しません。
+ * versionとupdatedAtはETag・Last-Modifiedヘッダーで返すため、JSONには出力せず、equalsの比較にも含めません。
  */
 @Schema(description = "学生データ")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Student {
     @Schema(description = "学生ID")
     private Integer id;
@@ -17,22 +24,32 @@ public class Student {
     @NotBlank(message = "nameを入力してください")
     private String name;
 
-    @Schema(description = "学年")
-    private String grade;
+    @Schema(description = "学年", type = "string", example = "一年生")
+    private Grade grade;
 
     @Schema(description = "出身地")
     @NotBlank(message = "birthPlaceを入力してください")
     private String birthPlace;
 
+    @JsonIgnore
+    @Schema(hidden = true)
+    private Integer version;
 
-    public Student(Integer id, String name, String grade, String birthPlace) {
+    @JsonIgnore
+    @Schema(hidden = true)
+    private Instant updatedAt;
+
+    public Student() {
+    }
+
+    public Student(Integer id, String name, Grade grade, String birthPlace) {
         this.id = id;
         this.name = name;
         this.grade = grade;
         this.birthPlace = birthPlace;
     }
 
-    public Student(String name, String grade, String birthPlace) {
+    public Student(String name, Grade grade, String birthPlace) {
         this.id = null;
         this.name = name;
         this.grade = grade;
@@ -51,11 +68,11 @@ public class Student {
         this.name = name;
     }
 
-    public String getGrade() {
+    public Grade getGrade() {
         return grade;
     }
 
-    public void setGrade(String grade) {
+    public void setGrade(Grade grade) {
         this.grade = grade;
     }
 
@@ -67,6 +84,31 @@ public class Student {
         this.birthPlace = birthPlace;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * 指定した項目とid・バージョンのみを持つ学生のデータを作成します。
+     * fieldsがnullの場合はこの学生をそのまま返します。
+     */
+    public Student select(Set<StudentField> fields) {
+        if (fields == null) {
+            return this;
+        }
+        Student student = new Student(id,
+                fields.contains(StudentField.NAME) ? name : null,
+                fields.contains(StudentField.GRADE) ? grade : null,
+                fields.contains(StudentField.BIRTH_PLACE) ? birthPlace : null);
+        student.version = version;
+        student.updatedAt = updatedAt;
+        return student;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
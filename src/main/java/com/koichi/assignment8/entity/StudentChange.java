@@ -0,0 +1,97 @@
+package com.koichi.assignment8.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * 変更履歴に記録した学生の変更1件分です。
+ * 登録・更新の場合は変更後の学生のデータを持ち、削除の場合は学生のidのみを持ちます。
+ */
+@Schema(description = "学生の変更履歴")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StudentChange {
+    @Schema(description = "変更を記録した順に増える通し番号")
+    private final Long sequence;
+
+    @Schema(description = "変更した学生のID")
+    private final Integer studentId;
+
+    @Schema(description = "変更の種類")
+    private final StudentChangeType type;
+
+    @Schema(description = "変更後の名前")
+    private final String name;
+
+    @Schema(description = "変更後の学年", type = "string", example = "一年生")
+    private final Grade grade;
+
+    @Schema(description = "変更後の出身地")
+    private final String birthPlace;
+
+    @Schema(description = "変更後のバージョン")
+    private final Integer version;
+
+    @Schema(description = "変更日時")
+    private final Instant changedAt;
+
+    public StudentChange(Long sequence, Integer studentId, StudentChangeType type, String name, Grade grade, String birthPlace, Integer version, Instant changedAt) {
+        this.sequence = sequence;
+        this.studentId = studentId;
+        this.type = type;
+        this.name = name;
+        this.grade = grade;
+        this.birthPlace = birthPlace;
+        this.version = version;
+        this.changedAt = changedAt;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public Integer getStudentId() {
+        return studentId;
+    }
+
+    public StudentChangeType getType() {
+        return type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Grade getGrade() {
+        return grade;
+    }
+
+    public String getBirthPlace() {
+        return birthPlace;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentChange that = (StudentChange) o;
+        return Objects.equals(sequence, that.sequence) && Objects.equals(studentId, that.studentId) && type == that.type
+                && Objects.equals(name, that.name) && grade == that.grade && Objects.equals(birthPlace, that.birthPlace)
+                && Objects.equals(version, that.version) && Objects.equals(changedAt, that.changedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sequence, studentId, type, name, grade, birthPlace, version, changedAt);
+    }
+}
@@ -0,0 +1,10 @@
+package com.koichi.assignment8.entity;
+
+/**
+ * 変更履歴に記録する学生の変更の種類です。
+ */
+public enum StudentChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
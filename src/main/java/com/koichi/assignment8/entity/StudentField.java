@@ -0,0 +1,58 @@
+package com.koichi.assignment8.entity;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 学生の参照時にfieldsで指定できる項目と、対応するstudentsテーブルのカラムです。
+ * SQLのカラムはこの一覧からのみ組み立てるため、リクエストの値がそのままSQLに入ることはありません。
+ */
+public enum StudentField {
+    ID("id", "id"),
+    NAME("name", "name"),
+    GRADE("grade", "grade"),
+    BIRTH_PLACE("birthPlace", "birth_place");
+
+    private final String property;
+
+    private final String column;
+
+    StudentField(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * fieldsで指定された項目名に対応する項目を返します。該当しない場合はnullを返します。
+     */
+    public static StudentField from(String property) {
+        for (StudentField field : values()) {
+            if (field.property.equals(property)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 指定した項目をSELECT句のカラムの一覧にします。
+     * idはページ分割に、versionとupdated_atはETag・Last-Modifiedに必要なため、指定の有無に関係なく必ず含めます。
+     * fieldsがnullの場合は全てのカラムを返します。
+     */
+    public static String columns(Set<StudentField> fields) {
+        Set<StudentField> selected = fields == null ? EnumSet.allOf(StudentField.class) : EnumSet.copyOf(fields);
+        selected.add(ID);
+        return selected.stream()
+                .map(StudentField::getColumn)
+                .collect(Collectors.joining(", ", "", ", version, updated_at"));
+    }
+}
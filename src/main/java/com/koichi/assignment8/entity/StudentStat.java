@@ -0,0 +1,51 @@
+package com.koichi.assignment8.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Objects;
+
+/**
+ * 学年と出身地の組み合わせごとの学生の人数です。
+ */
+@Schema(description = "学年・出身地ごとの学生の人数")
+public class StudentStat {
+    @Schema(description = "学年", type = "string", example = "一年生")
+    private final Grade grade;
+
+    @Schema(description = "出身地")
+    private final String birthPlace;
+
+    @Schema(description = "学生の人数")
+    private final Long count;
+
+    public StudentStat(Grade grade, String birthPlace, Long count) {
+        this.grade = grade;
+        this.birthPlace = birthPlace;
+        this.count = count;
+    }
+
+    public Grade getGrade() {
+        return grade;
+    }
+
+    public String getBirthPlace() {
+        return birthPlace;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentStat that = (StudentStat) o;
+        return Objects.equals(grade, that.grade) && Objects.equals(birthPlace, that.birthPlace) && Objects.equals(count, that.count);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(grade, birthPlace, count);
+    }
+}
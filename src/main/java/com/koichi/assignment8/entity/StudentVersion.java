@@ -0,0 +1,47 @@
+package com.koichi.assignment8.entity;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * 学生のデータのバージョンと最終更新日時です。
+ * 条件付きGETで、学生のデータ全体を取得せずに変更の有無を判定するために使用します。
+ */
+public class StudentVersion {
+    private final Integer id;
+
+    private final Integer version;
+
+    private final Instant updatedAt;
+
+    public StudentVersion(Integer id, Integer version, Instant updatedAt) {
+        this.id = id;
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentVersion that = (StudentVersion) o;
+        return Objects.equals(id, that.id) && Objects.equals(version, that.version) && Objects.equals(updatedAt, that.updatedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, version, updatedAt);
+    }
+}
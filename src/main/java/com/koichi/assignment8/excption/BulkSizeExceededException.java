@@ -0,0 +1,11 @@
+package com.koichi.assignment8.excption;
+
+/**
+ * 一括処理のリクエストで、一度に処理できる件数を超えて指定された場合の例外処理です。
+ */
+public class BulkSizeExceededException extends RuntimeException {
+
+    public BulkSizeExceededException(String message) {
+        super(message);
+    }
+}
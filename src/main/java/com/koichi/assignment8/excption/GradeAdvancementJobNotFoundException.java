@@ -0,0 +1,11 @@
+package com.koichi.assignment8.excption;
+
+/**
+ * 進級ジョブの状態の取得で、指定したidのジョブが見つからない場合の例外処理です。
+ */
+public class GradeAdvancementJobNotFoundException extends RuntimeException {
+
+    public GradeAdvancementJobNotFoundException(String message) {
+        super(message);
+    }
+}
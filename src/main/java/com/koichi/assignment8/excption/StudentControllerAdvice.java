@@ -37,18 +37,18 @@ public class StudentControllerAdvice {
     }
 
     /**
-     * READ処理のクエリパラメータ検索で、2つ以上のカラムを同時に指定した場合の例外処理です。
+     * 進級ジョブの状態の取得で、指定したidのジョブが見つからない場合の例外処理です。
      */
-    @ExceptionHandler(value = MultipleMethodsException.class)
-    public ResponseEntity<Map<String, String>> handleMultipleMethodsException(
-            MultipleMethodsException e, HttpServletRequest request) {
+    @ExceptionHandler(value = GradeAdvancementJobNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleGradeAdvancementJobNotFoundException(
+            GradeAdvancementJobNotFoundException e, HttpServletRequest request) {
         ErrorResponse body = new ErrorResponse(
                 ZonedDateTime.now().format(formatter),
-                String.valueOf(HttpStatus.BAD_REQUEST.value()),
-                HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                String.valueOf(HttpStatus.NOT_FOUND.value()),
+                HttpStatus.NOT_FOUND.getReasonPhrase(),
                 e.getMessage(),
                 request.getRequestURI());
-        return new ResponseEntity(body, HttpStatus.BAD_REQUEST);
+        return new ResponseEntity(body, HttpStatus.NOT_FOUND);
     }
 
     /**
@@ -66,6 +66,36 @@ public class StudentControllerAdvice {
         return new ResponseEntity(body, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * 一括処理のリクエストで、一度に処理できる件数を超えて指定された場合の例外処理です。
+     */
+    @ExceptionHandler(value = BulkSizeExceededException.class)
+    public ResponseEntity<Map<String, String>> handleBulkSizeExceededException(
+            BulkSizeExceededException e, HttpServletRequest request) {
+        ErrorResponse body = new ErrorResponse(
+                ZonedDateTime.now().format(formatter),
+                String.valueOf(HttpStatus.BAD_REQUEST.value()),
+                HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                e.getMessage(),
+                request.getRequestURI());
+        return new ResponseEntity(body, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * 学生の更新で、If-Matchで指定したバージョンが現在のバージョンと一致しない場合の例外処理です。
+     */
+    @ExceptionHandler(value = StudentVersionConflictException.class)
+    public ResponseEntity<Map<String, String>> handleStudentVersionConflictException(
+            StudentVersionConflictException e, HttpServletRequest request) {
+        ErrorResponse body = new ErrorResponse(
+                ZonedDateTime.now().format(formatter),
+                String.valueOf(HttpStatus.PRECONDITION_FAILED.value()),
+                HttpStatus.PRECONDITION_FAILED.getReasonPhrase(),
+                e.getMessage(),
+                request.getRequestURI());
+        return new ResponseEntity(body, HttpStatus.PRECONDITION_FAILED);
+    }
+
     /**
      * 更新処理・削除処理の際に全学生がリクエストされた場合の例外処理です。
      */
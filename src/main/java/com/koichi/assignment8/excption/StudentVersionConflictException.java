@@ -0,0 +1,11 @@
+package com.koichi.assignment8.excption;
+
+/**
+ * 学生の更新で、If-Matchで指定したバージョンが現在のバージョンと一致しない場合の例外処理です。
+ */
+public class StudentVersionConflictException extends RuntimeException {
+
+    public StudentVersionConflictException(String message) {
+        super(message);
+    }
+}
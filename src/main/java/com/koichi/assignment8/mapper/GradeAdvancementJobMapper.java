@@ -0,0 +1,94 @@
+package com.koichi.assignment8.mapper;
+
+import com.koichi.assignment8.entity.GradeAdvancementJob;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Optional;
+
+/**
+ * 全学生の進級ジョブ(grade_advancement_jobs)のマッパーです。
+ */
+@Mapper
+public interface GradeAdvancementJobMapper {
+
+    /**
+     * 完了していないジョブがない場合のみ、現在の最大の学生IDまでを対象とする新しいジョブを登録します。
+     * 完了していないジョブがある場合は一意キー(active)が重複するため、何もしません。
+     */
+    @Insert("""
+            INSERT INTO grade_advancement_jobs (status, max_id)
+            SELECT 'RUNNING', COALESCE(MAX(id), 0) FROM students
+            ON DUPLICATE KEY UPDATE id = id
+            """)
+    int insertJobIfAbsent();
+
+    /**
+     * 完了していないジョブを、行をロックして取得します。
+     * ロックを伴う読み取りのため、他のトランザクションがコミットしたジョブも取得できます。
+     */
+    @Select("""
+            SELECT id, status, max_id, last_id, advanced_first, advanced_second, advanced_third, error, created_at, updated_at, completed_at
+            FROM grade_advancement_jobs WHERE active = 1 FOR UPDATE
+            """)
+    Optional<GradeAdvancementJob> findActiveJobForUpdate();
+
+    /**
+     * 完了していないジョブを取得します。
+     */
+    @Select("""
+            SELECT id, status, max_id, last_id, advanced_first, advanced_second, advanced_third, error, created_at, updated_at, completed_at
+            FROM grade_advancement_jobs WHERE active = 1
+            """)
+    Optional<GradeAdvancementJob> findActiveJob();
+
+    /**
+     * 指定したidのジョブを取得します。
+     */
+    @Select("""
+            SELECT id, status, max_id, last_id, advanced_first, advanced_second, advanced_third, error, created_at, updated_at, completed_at
+            FROM grade_advancement_jobs WHERE id = #{id}
+            """)
+    Optional<GradeAdvancementJob> findById(Integer id);
+
+    /**
+     * 指定したidのジョブを、行をロックして取得します。
+     * 進級の範囲ごとのトランザクションの最初に取得し、同じジョブの範囲が同時に処理されないようにします。
+     */
+    @Select("""
+            SELECT id, status, max_id, last_id, advanced_first, advanced_second, advanced_third, error, created_at, updated_at, completed_at
+            FROM grade_advancement_jobs WHERE id = #{id} FOR UPDATE
+            """)
+    Optional<GradeAdvancementJob> findByIdForUpdate(Integer id);
+
+    /**
+     * 進級が完了した最後の学生IDと、範囲内で進級した学生の人数を進捗に加えます。
+     * completedの場合はジョブを完了にし、次のジョブを開始できるようにします。
+     */
+    @Update("""
+            <script>
+            UPDATE grade_advancement_jobs SET last_id = #{lastId},
+                advanced_first = advanced_first + #{advancedFirst},
+                advanced_second = advanced_second + #{advancedSecond},
+                advanced_third = advanced_third + #{advancedThird},
+                error = NULL, updated_at = CURRENT_TIMESTAMP(3)
+            <if test="completed">, status = 'COMPLETED', active = NULL, completed_at = CURRENT_TIMESTAMP(3)</if>
+            WHERE id = #{id}
+            </script>
+            """)
+    int updateProgress(Integer id, int lastId, long advancedFirst, long advancedSecond, long advancedThird, boolean completed);
+
+    /**
+     * 実行中のジョブを中断し、原因を記録します。
+     */
+    @Update("UPDATE grade_advancement_jobs SET status = 'FAILED', error = #{error}, updated_at = CURRENT_TIMESTAMP(3) WHERE id = #{id} AND status = 'RUNNING'")
+    int failJob(Integer id, String error);
+
+    /**
+     * 中断したジョブを、続きから再開できるように実行中に戻します。
+     */
+    @Update("UPDATE grade_advancement_jobs SET status = 'RUNNING', error = NULL, updated_at = CURRENT_TIMESTAMP(3) WHERE id = #{id} AND status = 'FAILED'")
+    int resumeJob(Integer id);
+}
@@ -0,0 +1,52 @@
+package com.koichi.assignment8.mapper;
+
+import com.koichi.assignment8.entity.Grade;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Gradeとstudents.gradeの学年コード(TINYINT)を変換するTypeHandlerです。
+ * mybatis.type-handlers-packageで登録するため、Gradeのパラメータと結果には自動で使用されます。
+ */
+@MappedTypes(Grade.class)
+@MappedJdbcTypes(JdbcType.TINYINT)
+public class GradeTypeHandler extends BaseTypeHandler<Grade> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, Grade parameter, JdbcType jdbcType) throws SQLException {
+        ps.setInt(i, parameter.getCode());
+    }
+
+    @Override
+    public Grade getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        int code = rs.getInt(columnName);
+        return rs.wasNull() ? null : toGrade(code);
+    }
+
+    @Override
+    public Grade getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        int code = rs.getInt(columnIndex);
+        return rs.wasNull() ? null : toGrade(code);
+    }
+
+    @Override
+    public Grade getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        int code = cs.getInt(columnIndex);
+        return cs.wasNull() ? null : toGrade(code);
+    }
+
+    private Grade toGrade(int code) throws SQLException {
+        Grade grade = Grade.fromCode(code);
+        if (grade == null) {
+            throw new SQLException("unknown grade code: " + code);
+        }
+        return grade;
+    }
+}
@@ -0,0 +1,60 @@
+package com.koichi.assignment8.mapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mapperのメソッドごとに、SQLの実行時間をmybatis.mapperという名前のタイマーで記録するMyBatisのプラグインです。
+ * statementタグにはMapperのメソッド名(例: com.koichi.assignment8.mapper.StudentMapper.findById)を記録します。
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class MapperMetricsInterceptor implements Interceptor {
+
+    /**
+     * Mapperの実行時間を記録するタイマーの名前です。
+     */
+    public static final String METRIC_NAME = "mybatis.mapper";
+
+    private final MeterRegistry meterRegistry;
+
+    public MapperMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "SUCCESS";
+        try {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            outcome = "ERROR";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("Mapperのメソッドごとの実行時間")
+                    .tag("statement", mappedStatement.getId())
+                    .tag("command", mappedStatement.getSqlCommandType().name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.koichi.assignment8.mapper;
+
+import com.koichi.assignment8.entity.GradeCount;
+import com.koichi.assignment8.entity.StudentChange;
+import com.koichi.assignment8.entity.StudentChangeType;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 学生の変更履歴(student_changes)のマッパーです。
+ * 記録は学生を変更したトランザクション内で行うため、変更と変更履歴は必ず一緒に確定します。
+ * 記録した変更の通し番号(seq)はNULLのままとし、コミット後にassignSequencesで振るまで取得の対象になりません。
+ */
+@Mapper
+public interface StudentChangeMapper {
+
+    /**
+     * 指定したidの学生の現在のデータを、変更履歴に記録します。
+     * 同じトランザクション内で登録・更新した直後に呼び出し、変更後のデータとバージョンを記録します。
+     */
+    @Insert("""
+            INSERT INTO student_changes (student_id, type, name, grade, birth_place, version)
+            SELECT id, #{type}, name, grade, birth_place, version FROM students WHERE id = #{studentId}
+            """)
+    int insertChange(Integer studentId, StudentChangeType type);
+
+    /**
+     * 指定したidの学生の現在のデータを、id順に変更履歴へまとめて記録します。
+     */
+    @Insert("""
+            <script>
+            INSERT INTO student_changes (student_id, type, name, grade, birth_place, version)
+            SELECT id, #{type}, name, grade, birth_place, version FROM students
+            WHERE id IN
+            <foreach collection="studentIds" item="studentId" open="(" separator="," close=")">#{studentId}</foreach>
+            ORDER BY id
+            </script>
+            """)
+    int insertChanges(List<Integer> studentIds, StudentChangeType type);
+
+    /**
+     * idがfromIdより大きくtoId以下の範囲の進級対象の学生について、進級後の学年とバージョンを変更履歴に記録します。
+     * 進級後は進級した学生を特定できないため、StudentMapper.updateGradeの直前に同じトランザクション内で呼び出してください。
+     */
+    @Insert("""
+            INSERT INTO student_changes (student_id, type, name, grade, birth_place, version)
+            SELECT id, 'UPDATED', name, grade + 1, birth_place, version + 1 FROM students
+            WHERE id > #{fromId} AND id <= #{toId} AND grade < 4 ORDER BY id
+            """)
+    int insertGradeAdvancementChanges(int fromId, int toId);
+
+    /**
+     * 直前のinsertGradeAdvancementChangesで記録した変更を、進級前の学年ごとに数えます。
+     * 同じトランザクション内で、StudentMapper.updateGradeの前に呼び出してください。
+     * 記録した変更は、このコネクションのLAST_INSERT_ID()以降のidに、学生の現在のバージョンの次のバージョンで記録されています。
+     * 同時に記録された他の変更は学生の現在のバージョンで記録されるため、バージョンで区別します。
+     * 読み出すのは記録した変更と対象の学生の行のみで、ロックは取得しません。
+     */
+    @Select("""
+            SELECT s.grade, COUNT(*) AS count FROM student_changes c
+            INNER JOIN students s ON s.id = c.student_id AND c.version = s.version + 1
+            WHERE c.id >= LAST_INSERT_ID() AND c.type = 'UPDATED' AND c.student_id > #{fromId} AND c.student_id <= #{toId}
+            GROUP BY s.grade
+            """)
+    List<GradeCount> countGradeAdvancementChanges(int fromId, int toId);
+
+    /**
+     * 指定したidの学生を削除したことを変更履歴に記録します。
+     */
+    @Insert("INSERT INTO student_changes (student_id, type) VALUES (#{studentId}, 'DELETED')")
+    int insertDeletedChange(Integer studentId);
+
+    /**
+     * 指定したidの学生を削除したことを、指定した順に変更履歴へまとめて記録します。
+     */
+    @Insert("""
+            <script>
+            INSERT INTO student_changes (student_id, type) VALUES
+            <foreach collection="studentIds" item="studentId" separator=",">(#{studentId}, 'DELETED')</foreach>
+            </script>
+            """)
+    int insertDeletedChanges(List<Integer> studentIds);
+
+    /**
+     * 指定した通し番号より後ろの変更を、通し番号の順に最大limit件取得します。
+     */
+    @Select("""
+            SELECT seq, student_id, type, name, grade, birth_place, version, changed_at FROM student_changes
+            WHERE seq > #{after} ORDER BY seq LIMIT #{limit}
+            """)
+    List<StudentChange> findChanges(long after, int limit);
+
+    /**
+     * 通し番号を振る処理のロックを取得します。トランザクションの終了まで、他の処理は通し番号を振れません。
+     */
+    @Select("SELECT id FROM student_change_sequencer WHERE id = 1 FOR UPDATE")
+    Integer lockSequencer();
+
+    /**
+     * 通し番号をまだ振っていない変更のidを、記録した順に最大limit件取得します。
+     * ロックせずに読むため、コミットしていない変更は含まれません。
+     */
+    @Select("SELECT id FROM student_changes WHERE seq IS NULL ORDER BY id LIMIT #{limit}")
+    List<Long> findUnsequencedChangeIds(int limit);
+
+    /**
+     * 指定したidの変更に、指定した順にafterの次からの通し番号を振ります。
+     */
+    @Update("""
+            <script>
+            UPDATE student_changes SET seq = CASE id
+            <foreach collection="ids" item="id" index="index">WHEN #{id} THEN #{after} + #{index} + 1 </foreach>
+            END
+            WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int assignSequences(long after, List<Long> ids);
+
+    /**
+     * 最後に振った変更の通し番号を取得します。変更が1件もない場合は0を返します。
+     */
+    @Select("SELECT COALESCE(MAX(seq), 0) FROM student_changes")
+    long findLatestSequence();
+
+    /**
+     * 記録日時がbeforeより前で、通し番号がkeepSequenceより小さい変更を、記録日時の古い順に最大limit件削除します。
+     * 通し番号はfindLatestSequenceの続きから振るため、最後に振った変更はkeepSequenceに指定して残してください。
+     * 通し番号を振っていない変更は削除しません。
+     */
+    @Delete("DELETE FROM student_changes WHERE changed_at < #{before} AND seq < #{keepSequence} ORDER BY changed_at LIMIT #{limit}")
+    int deleteChangesBefore(Instant before, long keepSequence, int limit);
+}
@@ -1,12 +1,16 @@
 package com.koichi.assignment8.mapper;
 
+import com.koichi.assignment8.entity.Grade;
 import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.entity.StudentVersion;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
 import java.util.List;
 import java.util.Optional;
@@ -21,28 +25,65 @@ public interface StudentMapper {
     Optional<Student> findById(Integer id);
 
     /**
-     * 全ての学生のデータを取得します。
+     * 指定した複数のidの学生のデータを1回のクエリで取得します。
+     * 並び順は保証せず、存在しないidの学生は結果に含まれません。
+     * StudentServiceが学生のキャッシュに保存できるよう、全てのカラムを取得します。
      */
-    @Select("SELECT * FROM students")
-    List<Student> findAllStudents();
+    @Select("""
+            <script>
+            SELECT * FROM students WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    List<Student> findByIds(List<Integer> ids);
 
     /**
-     * 指定した学年の学生のデータを取得します。
+     * 指定したidの学生のバージョンと最終更新日時のみを取得します。
+     * 条件付きGETで変更の有無を判定するために使用し、主キーの検索のみで行全体は読み出しません。
      */
-    @Select("SELECT *  from students WHERE grade = #{grade} ")
-    List<Student> findByGrade(String grade);
+    @Select("SELECT id, version, updated_at FROM students WHERE id = #{id}")
+    Optional<StudentVersion> findVersionById(Integer id);
 
     /**
-     * 指定した接頭辞の学生のデータを取得します。
+     * 学年・名前の接頭辞・出身地のうち指定した条件を全て満たす学生のデータを、指定したidより後ろからid順に最大limit件取得します。
+     * nullの条件は検索に使用しないため、全てnullの場合は全ての学生が対象になります。
+     * columnsには取得するカラムをStudentField.columnsで組み立てて指定します。
      */
-    @Select("SELECT * FROM students WHERE name LIKE CONCAT(#{startsWith}, '%') ")
-    List<Student> findByStartWith(String startsWith);
+    @Select("""
+            <script>
+            SELECT ${columns} FROM students
+            <where>
+                <if test="grade != null">AND grade = #{grade}</if>
+                <if test="birthPlace != null">AND birth_place = #{birthPlace}</if>
+                <if test="startsWith != null">AND name LIKE CONCAT(#{startsWith}, '%')</if>
+                AND id &gt; #{after}
+            </where>
+            ORDER BY id LIMIT #{limit}
+            </script>
+            """)
+    List<Student> findStudents(String columns, Grade grade, String startsWith, String birthPlace, int after, int limit);
 
     /**
-     * 指定した出身地の学生のデータを取得します。
+     * 名前・出身地の全文検索インデックス(ngramパーサー)を使用して学生のデータを検索し、関連度の高い順に取得します。
+     * queryにはBOOLEAN MODEの検索式を指定します。関連度が同じ学生はid順に並べ、offset件目から最大limit件取得します。
+     * 全文検索インデックスはコミット時に更新されるため、同じトランザクション内で登録・更新した内容は検索できません。
      */
-    @Select("SELECT * FROM students WHERE birth_place = #{birthPlace}")
-    List<Student> findByBirthPlace(String birthPlace);
+    @Select("""
+            SELECT ${columns} FROM students
+            WHERE MATCH (name, birth_place) AGAINST (#{query} IN BOOLEAN MODE)
+            ORDER BY MATCH (name, birth_place) AGAINST (#{query} IN BOOLEAN MODE) DESC, id
+            LIMIT #{limit} OFFSET #{offset}
+            """)
+    List<Student> searchStudents(String columns, String query, int offset, int limit);
+
+    /**
+     * 全ての学生のデータをid順に1件ずつ読み出すカーソルを取得します。
+     * MySQLのストリーミング取得を使用するため、読み出し中にメモリへ全件を保持しません。
+     * カーソルはトランザクション内で使用し、読み終えたら閉じてください。
+     */
+    @Select("SELECT * FROM students ORDER BY id")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<Student> streamAllStudents();
 
     /**
      * 新しい学生を登録します。
@@ -52,20 +93,47 @@ public interface StudentMapper {
     void insertStudent(Student student);
 
     /**
-     * 指定したidの学生の名前、学年、出身地を更新します。
+     * 複数の学生を1つのINSERT文でまとめて登録します。
+     * 登録後、各学生に採番されたidが設定されます。
+     */
+    @Insert("""
+            <script>
+            INSERT INTO students (name,grade,birth_place) VALUES
+            <foreach collection="students" item="student" separator=",">
+            (#{student.name}, #{student.grade}, #{student.birthPlace})
+            </foreach>
+            </script>
+            """)
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    void insertStudents(List<Student> students);
+
+    /**
+     * 指定したidの学生の名前、学年、出身地を更新し、バージョンを1つ増やします。
+     * expectedVersionを指定した場合は、現在のバージョンが一致する場合のみ更新します(楽観的ロック)。
+     * 更新対象に一致した行数を返すため、0の場合は該当する学生がいないか、バージョンが一致しません。
      */
-    @Update("UPDATE students SET name = #{name}, grade = #{grade},birth_Place = #{birthPlace} WHERE id =#{id}")
-    void updateStudent(Student student);
+    @Update("""
+            <script>
+            UPDATE students SET name = #{student.name}, grade = #{student.grade},birth_Place = #{student.birthPlace},
+                version = version + 1, updated_at = CURRENT_TIMESTAMP(3)
+            WHERE id =#{student.id}
+            <if test="expectedVersion != null">AND version = #{expectedVersion}</if>
+            </script>
+            """)
+    int updateStudent(Student student, Integer expectedVersion);
 
     /**
-     * 全学生の学年を一斉に進級させます。
+     * idがfromIdより大きくtoId以下の範囲の学生の学年を、1つのUPDATE文で進級させます。
+     * 学年コードは進級順に並んでいるため、卒業生(4)以外の学年コードに1を足し、バージョンを1つ増やします。
+     * 主キーの範囲で更新するため、ロックするのは範囲内の行のみです。
      */
-    @Update("UPDATE students SET grade = #{newGrade} WHERE grade =#{grade} ")
-    void updateGrade(String newGrade, String grade);
+    @Update("UPDATE students SET grade = grade + 1, version = version + 1, updated_at = CURRENT_TIMESTAMP(3) WHERE id > #{fromId} AND id <= #{toId} AND grade < 4")
+    int updateGrade(int fromId, int toId);
 
     /**
      * 指定したidの学生のデータを削除します。
+     * 削除した行数を返すため、0の場合は該当する学生がいません。
      */
     @Delete(" DELETE FROM students WHERE id =#{id}")
-    void deleteStudent(Integer id);
+    int deleteStudent(Integer id);
 }
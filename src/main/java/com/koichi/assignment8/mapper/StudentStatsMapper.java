@@ -0,0 +1,66 @@
+package com.koichi.assignment8.mapper;
+
+import com.koichi.assignment8.entity.StudentStat;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 学年・出身地ごとの学生の人数を保存する集計テーブル(student_stats)と、人数の増減(student_stats_deltas)のマッパーです。
+ * 増減はstudentsのトリガーで追記するため、このマッパーは参照と、溜まった増減を集計テーブルにまとめる処理のみを行います。
+ */
+@Mapper
+public interface StudentStatsMapper {
+
+    /**
+     * 学生が1人以上いる学年と出身地の組み合わせごとの人数を、学年・出身地の順に取得します。
+     * studentsを走査せずに、組み合わせの数と、まだまとめていない増減の数だけの行を読み出します。
+     * 集計テーブルと増減を1つの文で読むため、増減をまとめる処理と同時に実行しても二重に数えません。
+     */
+    @Select("""
+            SELECT grade, birth_place, CAST(SUM(student_count) AS SIGNED) AS count FROM (
+             SELECT grade, birth_place, student_count FROM student_stats
+             UNION ALL
+             SELECT grade, birth_place, delta FROM student_stats_deltas
+            ) AS stats
+            GROUP BY grade, birth_place HAVING count > 0 ORDER BY grade, birth_place
+            """)
+    List<StudentStat> findStats();
+
+    /**
+     * まだまとめていない増減のidを、追記した順に最大limit件ロックして取得します。
+     * 他のトランザクションがロックしている行(コミット前の追記や、他の処理がまとめている増減)は待たずに読み飛ばします。
+     */
+    @Select("SELECT id FROM student_stats_deltas ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<Long> lockDeltaIds(int limit);
+
+    /**
+     * 指定したidの増減を学年・出身地ごとに合計し、1回の文で集計テーブルの人数に加えます。
+     */
+    @Insert("""
+            <script>
+            INSERT INTO student_stats (grade, birth_place, student_count)
+            SELECT * FROM (
+             SELECT grade, birth_place, SUM(delta) AS delta FROM student_stats_deltas WHERE id IN
+             <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+             GROUP BY grade, birth_place ORDER BY grade, birth_place
+            ) AS deltas
+            ON DUPLICATE KEY UPDATE student_count = student_count + deltas.delta
+            </script>
+            """)
+    int addDeltas(List<Long> ids);
+
+    /**
+     * 集計テーブルにまとめた増減を削除します。
+     */
+    @Delete("""
+            <script>
+            DELETE FROM student_stats_deltas WHERE id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int deleteDeltas(List<Long> ids);
+}
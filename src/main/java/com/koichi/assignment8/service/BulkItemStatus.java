@@ -0,0 +1,36 @@
+package com.koichi.assignment8.service;
+
+/**
+ * 学生の一括更新・一括削除での、リクエストの要素ごとの処理結果です。
+ */
+public enum BulkItemStatus {
+    UPDATED,
+    DELETED,
+    /**
+     * 指定したidの学生がいません。
+     */
+    NOT_FOUND,
+    /**
+     * 指定したバージョンが現在のバージョンと一致しません。
+     */
+    CONFLICT,
+    /**
+     * バリデーションエラーのため処理していません。
+     */
+    INVALID,
+    /**
+     * ALL_OR_NOTHINGで他の要素を処理できなかったため、取り消したか処理していません。
+     */
+    ABORTED,
+    /**
+     * BEST_EFFORTで同じチャンクの処理中にデータベースのエラーやタイムアウトが発生したため、チャンクごと取り消しました。
+     */
+    FAILED;
+
+    /**
+     * 要素そのものを処理できなかった場合はtrueを返します。
+     */
+    public boolean isFailure() {
+        return this == NOT_FOUND || this == CONFLICT || this == INVALID;
+    }
+}
@@ -0,0 +1,42 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.excption.MethodArgumentTypeMismatchException;
+
+/**
+ * 学生の一括更新・一括削除で、一部の要素を処理できなかった場合の扱いです。
+ */
+public enum BulkMode {
+    /**
+     * 全ての要素を1つのトランザクションで処理し、1件でも処理できない要素があれば全てを取り消します。
+     */
+    ALL_OR_NOTHING("allOrNothing"),
+    /**
+     * students.bulk.chunk-size件ごとに別々のトランザクションで処理し、処理できない要素のみを除いて確定します。
+     */
+    BEST_EFFORT("bestEffort");
+
+    private final String value;
+
+    BulkMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * modeで指定された値に対応する扱いを返します。指定がない場合はBEST_EFFORTです。
+     */
+    public static BulkMode from(String value) {
+        if (value == null) {
+            return BEST_EFFORT;
+        }
+        for (BulkMode mode : values()) {
+            if (mode.value.equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new MethodArgumentTypeMismatchException("modeはallOrNothing・bestEffortのいずれかを指定してください");
+    }
+}
@@ -0,0 +1,103 @@
+package com.koichi.assignment8.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 全学生の進級ジョブを、HTTPリクエストとは別のスレッドで実行します。
+ * idの範囲ごとにGradeAdvancementService.advanceChunkを呼び出し、失敗した場合は
+ * students.grade-advancement.max-retries回まで再試行してからジョブを中断します。
+ * アプリケーションの起動時には、実行中のまま停止したジョブを続きから再開します。
+ */
+@Component
+public class GradeAdvancementJobRunner {
+
+    private final GradeAdvancementService gradeAdvancementService;
+
+    /**
+     * このアプリケーションで実行しているジョブのidです。同じジョブを重ねて実行しないために使用します。
+     */
+    private final Set<Integer> runningJobIds = ConcurrentHashMap.newKeySet();
+
+    @Value("${students.grade-advancement.max-retries:3}")
+    private int maxRetries = 3;
+
+    @Value("${students.grade-advancement.retry-delay-millis:5000}")
+    private long retryDelayMillis = 5000;
+
+    private ThreadPoolTaskExecutor taskExecutor;
+
+    public GradeAdvancementJobRunner(GradeAdvancementService gradeAdvancementService) {
+        this.gradeAdvancementService = gradeAdvancementService;
+    }
+
+    @PostConstruct
+    public void start() {
+        taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(1);
+        taskExecutor.setMaxPoolSize(1);
+        taskExecutor.setThreadNamePrefix("grade-advancement-");
+        taskExecutor.initialize();
+    }
+
+    /**
+     * 停止時は実行中の範囲のトランザクションが終わった時点でジョブを止めます。
+     * 進捗はコミットした範囲まで保存されているため、次の起動時に続きから再開します。
+     */
+    @PreDestroy
+    public void stop() {
+        taskExecutor.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeRunningJob() {
+        gradeAdvancementService.findRunningJob().ifPresent(job -> submit(job.getId()));
+    }
+
+    /**
+     * 指定したジョブを別のスレッドで実行します。このアプリケーションで実行中のジョブの場合は何もしません。
+     */
+    public void submit(int jobId) {
+        if (!runningJobIds.add(jobId)) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                run(jobId);
+            } finally {
+                runningJobIds.remove(jobId);
+            }
+        });
+    }
+
+    private void run(int jobId) {
+        int failures = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (!gradeAdvancementService.advanceChunk(jobId)) {
+                    return;
+                }
+                failures = 0;
+            } catch (RuntimeException e) {
+                failures++;
+                if (failures > maxRetries) {
+                    gradeAdvancementService.failJob(jobId, e.getMessage());
+                    return;
+                }
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
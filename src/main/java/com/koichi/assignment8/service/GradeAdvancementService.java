@@ -0,0 +1,117 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.CacheConfig;
+import com.koichi.assignment8.entity.GradeAdvancementJob;
+import com.koichi.assignment8.entity.GradeAdvancementJobStatus;
+import com.koichi.assignment8.excption.GradeAdvancementJobNotFoundException;
+import com.koichi.assignment8.mapper.GradeAdvancementJobMapper;
+import com.koichi.assignment8.mapper.StudentChangeMapper;
+import com.koichi.assignment8.mapper.StudentMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * 全学生の進級をジョブとして管理します。
+ * 進級は開始時点の最大の学生IDまでを、students.grade-advancement.chunk-size件のidの範囲ごとに別々のトランザクションで行います。
+ * 範囲ごとの進級とジョブの進捗は同じトランザクションで確定するため、中断しても続きから再開できます。
+ */
+@Service
+public class GradeAdvancementService {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private final GradeAdvancementJobMapper gradeAdvancementJobMapper;
+
+    private final StudentMapper studentMapper;
+
+    private final StudentChangeMapper studentChangeMapper;
+
+    private final RecentStudentWrites recentStudentWrites;
+
+    @Value("${students.grade-advancement.chunk-size:1000}")
+    private int chunkSize = 1000;
+
+    public GradeAdvancementService(GradeAdvancementJobMapper gradeAdvancementJobMapper, StudentMapper studentMapper, StudentChangeMapper studentChangeMapper,
+                                   RecentStudentWrites recentStudentWrites) {
+        this.gradeAdvancementJobMapper = gradeAdvancementJobMapper;
+        this.studentMapper = studentMapper;
+        this.studentChangeMapper = studentChangeMapper;
+        this.recentStudentWrites = recentStudentWrites;
+    }
+
+    /**
+     * 全学生の進級ジョブを開始します。
+     * 同じ学生を2回進級させないよう、完了していないジョブがある場合は新しいジョブを登録せずにそのジョブを返します。
+     * そのジョブが中断している場合は、続きから再開できるように実行中に戻します。
+     */
+    @Transactional
+    public GradeAdvancementJob startJob() {
+        gradeAdvancementJobMapper.insertJobIfAbsent();
+        GradeAdvancementJob job = gradeAdvancementJobMapper.findActiveJobForUpdate()
+                .orElseThrow(() -> new IllegalStateException("active grade advancement job not found"));
+        if (job.getStatus() != GradeAdvancementJobStatus.FAILED) {
+            return job;
+        }
+        gradeAdvancementJobMapper.resumeJob(job.getId());
+        return findJob(job.getId());
+    }
+
+    /**
+     * 指定したidのジョブを取得します。
+     */
+    public GradeAdvancementJob findJob(int id) {
+        return gradeAdvancementJobMapper.findById(id)
+                .orElseThrow(() -> new GradeAdvancementJobNotFoundException("grade advancement job not found"));
+    }
+
+    /**
+     * 実行中のジョブを取得します。アプリケーションの起動時に、中断されたジョブを再開するために使用します。
+     */
+    public Optional<GradeAdvancementJob> findRunningJob() {
+        return gradeAdvancementJobMapper.findActiveJob()
+                .filter(job -> job.getStatus() == GradeAdvancementJobStatus.RUNNING);
+    }
+
+    /**
+     * 指定したジョブの、進級が完了した最後の学生IDの続きからchunk-size件のidの範囲を進級させます。
+     * ジョブの行をロックしてから進捗を読むため、同じジョブの範囲が同時に処理されることはありません。
+     * 続きの範囲がある場合はtrueを、ジョブが完了したか実行中でない場合はfalseを返します。
+     * 範囲内の多くの学生が変更されるため、学生のキャッシュはコミット後に全て破棄し、直後の参照は全てプライマリから読み出します。
+     */
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, allEntries = true)
+    @Transactional
+    public boolean advanceChunk(int jobId) {
+        Optional<GradeAdvancementJob> found = gradeAdvancementJobMapper.findByIdForUpdate(jobId);
+        if (found.isEmpty() || found.get().getStatus() != GradeAdvancementJobStatus.RUNNING) {
+            return false;
+        }
+        GradeAdvancementJob job = found.get();
+        int fromId = job.getLastId();
+        int toId = (int) Math.min((long) fromId + chunkSize, job.getMaxId());
+
+        // 進級した人数は、進級の前に記録した変更履歴から学年ごとに数えます。
+        long[] advanced = new long[3];
+        if (studentChangeMapper.insertGradeAdvancementChanges(fromId, toId) > 0) {
+            studentChangeMapper.countGradeAdvancementChanges(fromId, toId)
+                    .forEach(gradeCount -> advanced[gradeCount.getGrade().getCode() - 1] = gradeCount.getCount());
+            studentMapper.updateGrade(fromId, toId);
+        }
+        recentStudentWrites.recordAll();
+
+        boolean completed = toId >= job.getMaxId();
+        gradeAdvancementJobMapper.updateProgress(jobId, toId, advanced[0], advanced[1], advanced[2], completed);
+        return !completed;
+    }
+
+    /**
+     * 再試行しても進級できなかったジョブを中断し、原因を記録します。
+     */
+    public void failJob(int jobId, String error) {
+        String message = error == null ? "unknown error" : error;
+        gradeAdvancementJobMapper.failJob(jobId, message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+    }
+}
@@ -0,0 +1,81 @@
+package com.koichi.assignment8.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * このノードで直前に登録・更新・削除した学生を記録します。
+ * 学生のキャッシュにない学生は複製の遅延を検証したレプリカから読み出しますが、このノードで直前に変更した学生は
+ * レプリカにまだ複製されていない可能性があるため、プライマリから読み出してキャッシュします。
+ *
+ * <p>レプリカは遅延がstudents.datasource.replica-max-lag-secondsを超えると使用せず、遅延の検証は
+ * students.datasource.replica-health-check-interval-millisごとに最大replica-health-check-timeout-secondsかけて行います。
+ * そのため、コミットから遅延の上限・検証の間隔・検証のタイムアウトの合計が経過した変更は、使用中のレプリカに必ず複製されています。
+ * 変更はコミット後にその間だけ記録します。コミットからキャッシュの破棄までの間に読み出す学生もプライマリから読み出すよう、
+ * コミットの直前にも記録します。
+ */
+@Component
+public class RecentStudentWrites {
+
+    private final Cache<Integer, Boolean> recentIds;
+
+    private final long windowNanos;
+
+    private volatile long allRecentUntilNanos;
+
+    public RecentStudentWrites(@Value("${students.datasource.replica-max-lag-seconds:5}") long replicaMaxLagSeconds,
+                               @Value("${students.datasource.replica-health-check-interval-millis:5000}") long replicaHealthCheckIntervalMillis,
+                               @Value("${students.datasource.replica-health-check-timeout-seconds:1}") int replicaHealthCheckTimeoutSeconds) {
+        Duration window = Duration.ofSeconds(replicaMaxLagSeconds + replicaHealthCheckTimeoutSeconds)
+                .plusMillis(replicaHealthCheckIntervalMillis);
+        this.recentIds = Caffeine.newBuilder().expireAfterWrite(window).build();
+        this.windowNanos = window.toNanos();
+        this.allRecentUntilNanos = System.nanoTime();
+    }
+
+    /**
+     * 指定したidの学生を変更したことを記録します。トランザクション内で呼び出した場合は、コミットの直前と直後に記録します。
+     */
+    public void record(Collection<Integer> ids) {
+        onCommit(() -> ids.forEach(id -> recentIds.put(id, Boolean.TRUE)));
+    }
+
+    /**
+     * 進級のように多くの学生をまとめて変更したことを記録します。記録した間は、全ての学生を直前に変更した学生として扱います。
+     */
+    public void recordAll() {
+        onCommit(() -> allRecentUntilNanos = System.nanoTime() + windowNanos);
+    }
+
+    /**
+     * 指定したidの学生が、まだレプリカに複製されていない可能性がある場合にtrueを返します。
+     */
+    public boolean isRecent(int id) {
+        return System.nanoTime() - allRecentUntilNanos < 0 || recentIds.getIfPresent(id) != null;
+    }
+
+    private void onCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                action.run();
+            }
+
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
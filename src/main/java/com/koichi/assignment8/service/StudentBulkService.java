@@ -0,0 +1,227 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.CacheConfig;
+import com.koichi.assignment8.entity.StudentChangeType;
+import com.koichi.assignment8.mapper.StudentChangeMapper;
+import com.koichi.assignment8.mapper.StudentMapper;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 複数の学生の更新・削除を、JDBCのバッチでまとめて行います。
+ * students.bulk.chunk-size件ごとに更新・削除の文を1回のバッチで送信し、文ごとの更新件数から要素ごとの処理結果を判定します。
+ * トランザクションはBulkModeに応じて、全件で1つ(ALL_OR_NOTHING)またはチャンクごと(BEST_EFFORT)に分けます。
+ * BEST_EFFORTでチャンクの処理中にデータベースのエラーやタイムアウトが発生した場合は、そのチャンクのみを取り消して要素をFAILEDにし、次のチャンクに進みます。
+ *
+ * <p>学生のキャッシュはStudentServiceと同じキャッシュを使用し、キャッシュの破棄と変更履歴の記録はこのクラスで行います。
+ * 同じトランザクション内で通常のマッパーと混在させることはできないため、このクラスのトランザクションではバッチ用のマッパーのみを使用します。
+ */
+@Service
+public class StudentBulkService {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentBulkService.class);
+
+    private final StudentMapper batchStudentMapper;
+
+    private final StudentChangeMapper batchStudentChangeMapper;
+
+    private final SqlSessionTemplate batchSqlSessionTemplate;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final CacheManager cacheManager;
+
+    private final RecentStudentWrites recentStudentWrites;
+
+    @Value("${students.bulk.chunk-size:500}")
+    private int bulkChunkSize = 500;
+
+    @Value("${students.bulk.transaction-timeout-seconds:30}")
+    private int transactionTimeoutSeconds = 30;
+
+    public StudentBulkService(SqlSessionFactory sqlSessionFactory, PlatformTransactionManager transactionManager, CacheManager cacheManager,
+                              RecentStudentWrites recentStudentWrites) {
+        this.batchSqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.batchStudentMapper = batchSqlSessionTemplate.getMapper(StudentMapper.class);
+        this.batchStudentChangeMapper = batchSqlSessionTemplate.getMapper(StudentChangeMapper.class);
+        this.transactionManager = transactionManager;
+        this.cacheManager = cacheManager;
+        this.recentStudentWrites = recentStudentWrites;
+    }
+
+    /**
+     * 複数の学生の名前、学年、出身地をまとめて更新し、要素ごとの処理結果を指定した順に返します。
+     * 更新できた学生は、同じトランザクションで変更後のデータを変更履歴に記録します。
+     * ALL_OR_NOTHINGで更新できない要素があった場合は全てを取り消し、更新した要素はABORTEDになります。
+     * BEST_EFFORTでデータベースのエラーやタイムアウトにより取り消したチャンクの要素はFAILEDになります。
+     */
+    public List<BulkItemStatus> updateStudents(List<StudentBulkUpdate> updates, BulkMode mode) {
+        BulkItemStatus[] statuses = new BulkItemStatus[updates.size()];
+        execute(updates.size(), mode, statuses, (from, to) -> updateChunk(updates, from, to, statuses));
+        return List.of(statuses);
+    }
+
+    /**
+     * 複数の学生をまとめて削除し、要素ごとの処理結果を指定した順に返します。
+     * 削除できた学生は、同じトランザクションで削除したことを変更履歴に記録します。
+     * ALL_OR_NOTHINGで削除できない要素があった場合は全てを取り消し、削除した要素はABORTEDになります。
+     * BEST_EFFORTでデータベースのエラーやタイムアウトにより取り消したチャンクの要素はFAILEDになります。
+     */
+    public List<BulkItemStatus> deleteStudents(List<Integer> ids, BulkMode mode) {
+        BulkItemStatus[] statuses = new BulkItemStatus[ids.size()];
+        execute(ids.size(), mode, statuses, (from, to) -> deleteChunk(ids, from, to, statuses));
+        return List.of(statuses);
+    }
+
+    private void execute(int size, BulkMode mode, BulkItemStatus[] statuses, ChunkProcessor processor) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setTimeout(transactionTimeoutSeconds);
+        if (mode == BulkMode.BEST_EFFORT) {
+            for (int from = 0; from < size; from += bulkChunkSize) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(from + bulkChunkSize, size);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> processor.process(chunkFrom, chunkTo));
+                } catch (DataAccessException | TransactionException e) {
+                    // チャンクのトランザクションは取り消されているため、結果を判定済みの要素も含めてチャンク全体をFAILEDにします。
+                    log.warn("Bulk chunk [{}, {}) was rolled back", chunkFrom, chunkTo, e);
+                    Arrays.fill(statuses, chunkFrom, chunkTo, BulkItemStatus.FAILED);
+                }
+            }
+            return;
+        }
+
+        boolean committed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            for (int from = 0; from < size; from += bulkChunkSize) {
+                int to = Math.min(from + bulkChunkSize, size);
+                processor.process(from, to);
+                if (Arrays.stream(statuses, from, to).anyMatch(BulkItemStatus::isFailure)) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+            }
+            return true;
+        }));
+        if (!committed) {
+            for (int i = 0; i < statuses.length; i++) {
+                if (statuses[i] == null || !statuses[i].isFailure()) {
+                    statuses[i] = BulkItemStatus.ABORTED;
+                }
+            }
+        }
+    }
+
+    private void updateChunk(List<StudentBulkUpdate> updates, int from, int to, BulkItemStatus[] statuses) {
+        for (int i = from; i < to; i++) {
+            StudentBulkUpdate update = updates.get(i);
+            batchStudentMapper.updateStudent(update.getStudent(), update.getExpectedVersion());
+        }
+        int[] updateCounts = flush();
+
+        List<Integer> updatedIds = new ArrayList<>();
+        List<Integer> unmatchedIds = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Integer id = updates.get(i).getStudent().getId();
+            if (succeeded(updateCounts[i - from])) {
+                statuses[i] = BulkItemStatus.UPDATED;
+                updatedIds.add(id);
+            } else {
+                unmatchedIds.add(id);
+            }
+        }
+
+        if (!unmatchedIds.isEmpty()) {
+            // 更新できなかった場合のみ、学生がいないのかバージョンが一致しないのかを1回のクエリで確認します。
+            Set<Integer> existingIds = new HashSet<>();
+            batchStudentMapper.findByIds(unmatchedIds).forEach(student -> existingIds.add(student.getId()));
+            for (int i = from; i < to; i++) {
+                if (statuses[i] != null) {
+                    continue;
+                }
+                StudentBulkUpdate update = updates.get(i);
+                boolean conflicted = update.getExpectedVersion() != null && existingIds.contains(update.getStudent().getId());
+                statuses[i] = conflicted ? BulkItemStatus.CONFLICT : BulkItemStatus.NOT_FOUND;
+            }
+        }
+
+        if (!updatedIds.isEmpty()) {
+            batchStudentChangeMapper.insertChanges(updatedIds, StudentChangeType.UPDATED);
+            flush();
+            evict(updatedIds);
+        }
+    }
+
+    private void deleteChunk(List<Integer> ids, int from, int to, BulkItemStatus[] statuses) {
+        for (int i = from; i < to; i++) {
+            batchStudentMapper.deleteStudent(ids.get(i));
+        }
+        int[] deleteCounts = flush();
+
+        List<Integer> deletedIds = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (succeeded(deleteCounts[i - from])) {
+                statuses[i] = BulkItemStatus.DELETED;
+                deletedIds.add(ids.get(i));
+            } else {
+                statuses[i] = BulkItemStatus.NOT_FOUND;
+            }
+        }
+
+        if (!deletedIds.isEmpty()) {
+            batchStudentChangeMapper.insertDeletedChanges(deletedIds);
+            flush();
+            evict(deletedIds);
+        }
+    }
+
+    /**
+     * バッチに溜めた文を送信し、文ごとの更新件数を実行した順に返します。
+     */
+    private int[] flush() {
+        List<BatchResult> batchResults = batchSqlSessionTemplate.flushStatements();
+        return batchResults.stream()
+                .flatMapToInt(batchResult -> Arrays.stream(batchResult.getUpdateCounts()))
+                .toArray();
+    }
+
+    private boolean succeeded(int updateCount) {
+        // ドライバーが件数を返さない場合は、成功として扱います。
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * 更新・削除した学生のキャッシュを破棄し、直後の参照をプライマリから読み出すよう変更を記録します。
+     * キャッシュはトランザクションを認識するため、破棄はコミット後に行われ、取り消した場合は破棄しません。
+     */
+    private void evict(List<Integer> ids) {
+        recentStudentWrites.record(ids);
+        Cache cache = cacheManager.getCache(CacheConfig.STUDENTS_CACHE);
+        if (cache != null) {
+            ids.forEach(cache::evict);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkProcessor {
+        void process(int from, int to);
+    }
+}
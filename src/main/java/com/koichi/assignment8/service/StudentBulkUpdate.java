@@ -0,0 +1,26 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.Student;
+
+/**
+ * 学生の一括更新の1要素です。
+ * expectedVersionを指定した場合は、現在のバージョンが一致する場合のみ更新します。
+ */
+public class StudentBulkUpdate {
+    private final Student student;
+
+    private final Integer expectedVersion;
+
+    public StudentBulkUpdate(Student student, Integer expectedVersion) {
+        this.student = student;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public Student getStudent() {
+        return student;
+    }
+
+    public Integer getExpectedVersion() {
+        return expectedVersion;
+    }
+}
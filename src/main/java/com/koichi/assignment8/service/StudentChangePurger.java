@@ -0,0 +1,62 @@
+package com.koichi.assignment8.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * 保持期間(students.changes.retention-days)を過ぎた学生の変更履歴を、一定間隔で削除します。
+ * 変更履歴は変更のたびに増え続けるため、配信や一括出力の差分の取得に使わなくなった古い変更を消します。
+ * 削除した変更の続きからは配信できないため、保持期間より前の通し番号を指定して再接続したクライアントは、残っている最も古い変更から受け取ります。
+ */
+@Component
+public class StudentChangePurger {
+
+    private final StudentService studentService;
+
+    @Value("${students.changes.retention-days:7}")
+    private long retentionDays = 7;
+
+    @Value("${students.changes.purge-interval-millis:60000}")
+    private long purgeIntervalMillis = 60000;
+
+    @Value("${students.changes.purge-batch-size:5000}")
+    private int purgeBatchSize = 5000;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    public StudentChangePurger(StudentService studentService) {
+        this.studentService = studentService;
+    }
+
+    @PostConstruct
+    public void start() {
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("student-changes-purger-");
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::purge, Duration.ofMillis(purgeIntervalMillis));
+    }
+
+    @PreDestroy
+    public void stop() {
+        taskScheduler.destroy();
+    }
+
+    /**
+     * 保持期間を過ぎた変更がなくなるまで、students.changes.purge-batch-size件ずつ削除します。
+     * 1回の削除を小さく保ち、変更を記録するトランザクションを長く待たせないようにします。
+     */
+    void purge() {
+        Instant before = Instant.now().minus(Duration.ofDays(retentionDays));
+        int purged;
+        do {
+            purged = studentService.purgeChanges(before, purgeBatchSize);
+        } while (purged == purgeBatchSize);
+    }
+}
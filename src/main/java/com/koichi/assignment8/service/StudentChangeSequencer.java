@@ -0,0 +1,55 @@
+package com.koichi.assignment8.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * コミット済みの学生の変更に、一定間隔で通し番号を振ります(StudentService.sequenceChanges)。
+ * 通し番号を振るまで変更は配信されないため、変更の配信や送信の遅いクライアントに待たされないよう、専用のスレッドで実行します。
+ */
+@Component
+public class StudentChangeSequencer {
+
+    private final StudentService studentService;
+
+    @Value("${students.changes.poll-interval-millis:1000}")
+    private long sequenceIntervalMillis = 1000;
+
+    @Value("${students.changes.batch-size:500}")
+    private int batchSize = 500;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    public StudentChangeSequencer(StudentService studentService) {
+        this.studentService = studentService;
+    }
+
+    @PostConstruct
+    public void start() {
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("student-changes-sequencer-");
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::sequence, Duration.ofMillis(sequenceIntervalMillis));
+    }
+
+    @PreDestroy
+    public void stop() {
+        taskScheduler.destroy();
+    }
+
+    /**
+     * 通し番号を振っていない変更がなくなるまで、students.changes.batch-size件ずつ通し番号を振ります。
+     */
+    void sequence() {
+        int sequenced;
+        do {
+            sequenced = studentService.sequenceChanges(batchSize);
+        } while (sequenced == batchSize);
+    }
+}
@@ -0,0 +1,42 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.Student;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * idを指定してまとめて取得した学生のデータと、該当する学生がいなかったidです。
+ * どちらも指定したidの順に並び、重複したidは最初の1件のみを含みます。
+ */
+public class StudentLookup {
+    private final List<Student> students;
+
+    private final List<Integer> missingIds;
+
+    public StudentLookup(List<Student> students, List<Integer> missingIds) {
+        this.students = students;
+        this.missingIds = missingIds;
+    }
+
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    public List<Integer> getMissingIds() {
+        return missingIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentLookup that = (StudentLookup) o;
+        return Objects.equals(students, that.students) && Objects.equals(missingIds, that.missingIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(students, missingIds);
+    }
+}
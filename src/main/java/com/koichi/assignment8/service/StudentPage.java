@@ -0,0 +1,42 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.Student;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * id順に区切って取得した学生のデータと、次のページを取得するためのカーソルです。
+ * 次のページがない場合、nextCursorはnullになります。
+ */
+public class StudentPage {
+    private final List<Student> students;
+
+    private final Integer nextCursor;
+
+    public StudentPage(List<Student> students, Integer nextCursor) {
+        this.students = students;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Student> getStudents() {
+        return students;
+    }
+
+    public Integer getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentPage that = (StudentPage) o;
+        return Objects.equals(students, that.students) && Objects.equals(nextCursor, that.nextCursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(students, nextCursor);
+    }
+}
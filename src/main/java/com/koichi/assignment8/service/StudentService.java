@@ -1,121 +1,387 @@
 package com.koichi.assignment8.service;
 
+import com.koichi.assignment8.CacheConfig;
+import com.koichi.assignment8.entity.Grade;
 import com.koichi.assignment8.entity.Student;
-import com.koichi.assignment8.excption.MultipleMethodsException;
+import com.koichi.assignment8.entity.StudentChange;
+import com.koichi.assignment8.entity.StudentChangeType;
+import com.koichi.assignment8.entity.StudentField;
 import com.koichi.assignment8.excption.StudentNotFoundException;
+import com.koichi.assignment8.excption.StudentVersionConflictException;
+import com.koichi.assignment8.mapper.StudentChangeMapper;
 import com.koichi.assignment8.mapper.StudentMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class StudentService {
 
     private final StudentMapper studentMapper;
 
-    public StudentService(StudentMapper studentMapper) {
+    private final StudentChangeMapper studentChangeMapper;
+
+    private final CacheManager cacheManager;
+
+    private final TransactionTemplate replicaReadTemplate;
+
+    private final RecentStudentWrites recentStudentWrites;
+
+    @Value("${students.page.default-size:100}")
+    private int defaultPageSize = 100;
+
+    @Value("${students.page.max-size:1000}")
+    private int maxPageSize = 1000;
+
+    @Value("${students.bulk.chunk-size:500}")
+    private int bulkChunkSize = 500;
+
+    public StudentService(StudentMapper studentMapper, StudentChangeMapper studentChangeMapper, CacheManager cacheManager,
+                          PlatformTransactionManager transactionManager, RecentStudentWrites recentStudentWrites) {
         this.studentMapper = studentMapper;
+        this.studentChangeMapper = studentChangeMapper;
+        this.cacheManager = cacheManager;
+        // 他の参照と同じく、BEGIN・COMMITは送らずに読み取り専用であることだけを伝え、レプリカから読み出します。
+        this.replicaReadTemplate = new TransactionTemplate(transactionManager);
+        this.replicaReadTemplate.setReadOnly(true);
+        this.replicaReadTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_SUPPORTS);
+        this.recentStudentWrites = recentStudentWrites;
     }
 
     /**
-     * 指定したidの学生のデータを全て取得します。
+     * 指定したidの学生のデータを取得します。
+     * 1行の取得はキャッシュした全ての項目から絞り込むため、fieldsに関係なく同じキャッシュを使用します。
+     * fieldsがnullの場合は全ての項目を返します。
+     * キャッシュにない場合はデータベースから取得し、存在しないidもnullとしてキャッシュします。
+     * 読み出しのトランザクションのスコープを終えてからキャッシュに保存するため、保存はStudentNotFoundExceptionに関係なくすぐに行われます。
+     * 読み取り専用のトランザクションから呼び出された場合は、直前に変更した学生もレプリカから読み出すため、キャッシュしません。
      */
-    public Student findStudent(int id) {
-        Optional<Student> findById = this.studentMapper.findById(id);
-        if (findById.isPresent()) {
-            return findById.get();
+    public Student findStudent(int id, Set<StudentField> fields) {
+        Cache cache = cacheManager.getCache(CacheConfig.STUDENTS_CACHE);
+        Cache.ValueWrapper cached = cache == null ? null : cache.get(id);
+        Student student;
+        if (cached != null) {
+            student = (Student) cached.get();
         } else {
+            student = loadStudent(id);
+            if (cache != null && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                cache.put(id, student);
+            }
+        }
+        if (student == null) {
             throw new StudentNotFoundException("student not found");
         }
+        return student.select(fields);
     }
 
     /**
-     * 特定のカラムを指定して学生のデータを取得します。
-     * ただし、検索に使用できるカラムは一度に1つのみです。
-     * 指定するカラムがない場合は、全ての学生のデータを取得します。
+     * 指定した複数のidの学生のデータを、指定したidの順にまとめて取得します。
+     * findStudentと同じキャッシュを先に確認し、キャッシュにないidのみを1回のクエリで取得してキャッシュに保存します。
+     * 該当する学生がいないidもキャッシュし、missingIdsとして返します。重複したidは最初の1件のみを対象にします。
+     * キャッシュにないidはfindStudentと同じく、直前に変更した学生はプライマリから、それ以外はレプリカから読み出します。
      */
-    public List<Student> findStudents(Integer grade, String startsWith, String birthPlace) {
+    public StudentLookup lookupStudents(List<Integer> ids, Set<StudentField> fields) {
+        Cache cache = cacheManager.getCache(CacheConfig.STUDENTS_CACHE);
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        Map<Integer, Student> found = new HashMap<>();
+        List<Integer> uncachedIds = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            Cache.ValueWrapper cached = cache == null ? null : cache.get(id);
+            if (cached == null) {
+                uncachedIds.add(id);
+            } else if (cached.get() != null) {
+                found.put(id, (Student) cached.get());
+            }
+        }
 
-        Map<Integer, String> gradeConvertedToString = new HashMap<>();
-        gradeConvertedToString.put(1, "一年生");
-        gradeConvertedToString.put(2, "二年生");
-        gradeConvertedToString.put(3, "三年生");
-        gradeConvertedToString.put(4, "卒業生");
+        if (!uncachedIds.isEmpty()) {
+            found.putAll(loadStudents(uncachedIds));
+            // findStudentと同じく、存在しないidはnullとしてキャッシュし、読み取り専用のトランザクションから呼び出された場合はキャッシュしません。
+            if (cache != null && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                uncachedIds.forEach(id -> cache.put(id, found.get(id)));
+            }
+        }
+
+        List<Student> students = new ArrayList<>(found.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            Student student = found.get(id);
+            if (student == null) {
+                missingIds.add(id);
+            } else {
+                students.add(student.select(fields));
+            }
+        }
+        return new StudentLookup(students, missingIds);
+    }
+
+    /**
+     * キャッシュにない学生を読み出します。
+     * このノードで直前に変更した学生はレプリカにまだ複製されていない可能性があるため、プライマリから読み出します。
+     * それ以外の学生は、複製の遅延がstudents.datasource.replica-max-lag-seconds以内のレプリカから読み出します。
+     * レプリカにいない学生は他のノードで登録した直後の可能性があるため、存在しないidとしてキャッシュする前にプライマリで確認します。
+     */
+    private Student loadStudent(int id) {
+        if (!recentStudentWrites.isRecent(id)) {
+            Optional<Student> student = replicaReadTemplate.execute(status -> studentMapper.findById(id));
+            if (student != null && student.isPresent()) {
+                return student.get();
+            }
+        }
+        return studentMapper.findById(id).orElse(null);
+    }
 
-        List<Student> getAllStudent = this.studentMapper.findAllStudents();
-        List<Student> getByGrade = this.studentMapper.findByGrade(gradeConvertedToString.get(grade));
-        List<Student> getByStartWith = this.studentMapper.findByStartWith(startsWith);
-        List<Student> getByBirthPlace = this.studentMapper.findByBirthPlace(birthPlace);
+    /**
+     * キャッシュにない複数の学生を、loadStudentと同じ読み出し先からまとめて読み出します。
+     * レプリカとプライマリのそれぞれに、最大1回ずつ問い合わせます。
+     */
+    private Map<Integer, Student> loadStudents(List<Integer> ids) {
+        List<Integer> primaryIds = new ArrayList<>();
+        List<Integer> replicaIds = new ArrayList<>();
+        for (Integer id : ids) {
+            (recentStudentWrites.isRecent(id) ? primaryIds : replicaIds).add(id);
+        }
+        Map<Integer, Student> found = new HashMap<>();
+        if (!replicaIds.isEmpty()) {
+            List<Student> students = replicaReadTemplate.execute(status -> studentMapper.findByIds(replicaIds));
+            if (students != null) {
+                students.forEach(student -> found.put(student.getId(), student));
+            }
+            replicaIds.stream().filter(id -> !found.containsKey(id)).forEach(primaryIds::add);
+        }
+        if (!primaryIds.isEmpty()) {
+            studentMapper.findByIds(primaryIds).forEach(student -> found.put(student.getId(), student));
+        }
+        return found;
+    }
 
-        int count = 0;
+    /**
+     * 学年・名前の接頭辞・出身地を組み合わせて学生のデータを取得します。
+     * 指定した条件は全て満たす学生のみを1回のクエリで取得し、指定するカラムがない場合は全ての学生のデータを取得します。
+     * 結果はid順に、afterで指定したidより後ろから最大limit件ずつ返します。
+     * fieldsを指定した場合は、指定した項目とidのカラムのみを取得します。
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public StudentPage findStudents(Integer grade, String startsWith, String birthPlace, Integer after, Integer limit, Set<StudentField> fields) {
 
+        Grade searchGrade = null;
         if (grade != null) {
-            count++;
+            searchGrade = Grade.fromCode(grade);
+            if (searchGrade == null) {
+                // 存在しない学年に該当する学生はいないため、データベースに問い合わせません。
+                return new StudentPage(List.of(), null);
+            }
         }
 
-        if (startsWith != null) {
-            count++;
+        int afterId = after == null ? 0 : after;
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+        // 次のページの有無を判定するため、1件多く取得します。
+        int fetchSize = pageSize + 1;
+
+        List<Student> students = this.studentMapper.findStudents(StudentField.columns(fields), searchGrade, startsWith, birthPlace, afterId, fetchSize);
+
+        if (students.size() <= pageSize) {
+            return new StudentPage(students, null);
         }
+        List<Student> page = students.subList(0, pageSize);
+        return new StudentPage(page, page.get(pageSize - 1).getId());
+    }
 
-        if (birthPlace != null) {
-            count++;
+    /**
+     * 名前・出身地に指定した語を含む学生のデータを、全文検索インデックスを使用して関連度の高い順に取得します。
+     * 空白で区切った複数の語を指定した場合は、全ての語を含む学生のみを取得します。
+     * 結果はoffset件目からlimit件ずつ返し、続きがある場合は次のページのoffsetをカーソルとして返します。
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public StudentPage searchStudents(String keywords, Integer offset, Integer limit, Set<StudentField> fields) {
+        String query = toBooleanQuery(keywords);
+        if (query.isEmpty()) {
+            // 検索できる語がない場合は、データベースに問い合わせません。
+            return new StudentPage(List.of(), null);
         }
 
-        if (count >= 2) {
-            throw new MultipleMethodsException("カラムはgrade・startsWith・birthPlaceの一つを選んでください");
-        } else if (grade != null) {
-            return getByGrade;
-        } else if (startsWith != null) {
-            return getByStartWith;
-        } else if (birthPlace != null) {
-            return getByBirthPlace;
-        } else {
-            return getAllStudent;
+        int from = offset == null ? 0 : offset;
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+        // 次のページの有無を判定するため、1件多く取得します。
+        List<Student> students = this.studentMapper.searchStudents(StudentField.columns(fields), query, from, pageSize + 1);
+
+        if (students.size() <= pageSize) {
+            return new StudentPage(students, null);
+        }
+        return new StudentPage(students.subList(0, pageSize), from + pageSize);
+    }
+
+    /**
+     * 空白で区切った語を、全ての語を含む場合に一致するBOOLEAN MODEの検索式にします。
+     * 演算子として扱われる記号は取り除きます。
+     * ngramパーサーは語を2文字ずつの並びとして検索するため、2文字以上の語は名前・出身地の途中に含まれる場合も一致します。
+     * 2文字に満たない語はngramを作れないため、その文字から始まるngramへの前方一致で検索します。
+     */
+    static String toBooleanQuery(String keywords) {
+        if (keywords == null) {
+            return "";
+        }
+        StringBuilder query = new StringBuilder();
+        for (String keyword : keywords.replaceAll("[+\\-<>()~*\"@]", " ").trim().split("[\\s\u3000]+")) {
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            if (!query.isEmpty()) {
+                query.append(' ');
+            }
+            if (keyword.codePointCount(0, keyword.length()) < 2) {
+                query.append('+').append(keyword).append('*');
+            } else {
+                query.append("+\"").append(keyword).append('"');
+            }
+        }
+        return query.toString();
+    }
+
+    /**
+     * 全ての学生のデータをid順に1件ずつconsumerへ渡します。
+     * 全件をメモリに保持しないため、学生の数に関係なく一定のメモリで出力できます。
+     * 出力前に取得した通し番号以降の変更を取りこぼさないよう、レプリカではなくプライマリから読み出します。
+     */
+    @Transactional
+    public void exportStudents(Consumer<Student> consumer) {
+        try (Cursor<Student> cursor = studentMapper.streamAllStudents()) {
+            cursor.forEach(consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 指定した通し番号より後ろの学生の変更を、通し番号の順に最大limit件取得します。
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<StudentChange> findChanges(long after, int limit) {
+        return studentChangeMapper.findChanges(after, limit);
+    }
+
+    /**
+     * コミット済みで通し番号をまだ振っていない学生の変更に、記録した順に最大limit件まで通し番号を振り、振った件数を返します。
+     * 通し番号を振る処理はロックで同時に1つに限るため、通し番号はこの処理がコミットした順に見えるようになります。
+     * 変更を記録したトランザクションのコミットの順に関係なく、取得済みの通し番号より小さい変更が後から見えることはありません。
+     */
+    @Transactional
+    public int sequenceChanges(int limit) {
+        studentChangeMapper.lockSequencer();
+        List<Long> changeIds = studentChangeMapper.findUnsequencedChangeIds(limit);
+        if (changeIds.isEmpty()) {
+            return 0;
         }
+        return studentChangeMapper.assignSequences(studentChangeMapper.findLatestSequence(), changeIds);
+    }
+
+    /**
+     * 記録日時がbeforeより前の学生の変更を、古い順に最大limit件削除し、削除した件数を返します。
+     * 次の通し番号は最後に振った通し番号の続きになるため、最後に振った変更は保持期間を過ぎても残します。
+     */
+    @Transactional
+    public int purgeChanges(Instant before, int limit) {
+        return studentChangeMapper.deleteChangesBefore(before, studentChangeMapper.findLatestSequence(), limit);
+    }
+
+    /**
+     * 最後に振った学生の変更の通し番号を取得します。変更が1件もない場合は0を返します。
+     * 通し番号を振った変更はコミット済みのため、この後に開始した一括出力には全て含まれます。
+     * 一括出力と同じくプライマリから取得します。
+     */
+    public long findLatestChangeSequence() {
+        return studentChangeMapper.findLatestSequence();
     }
 
     /**
      * 新しい学生を登録します。
+     * 登録と同じトランザクションで変更履歴にも記録します。
+     * 登録前に存在しないidとしてキャッシュされている場合があるため、採番されたidのキャッシュをコミット後に破棄します。
      */
-    public Student insertStudent(String name, String grade, String birthPlace) {
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#result.id")
+    @Transactional
+    public Student insertStudent(String name, Grade grade, String birthPlace) {
         Student student = new Student(name, grade, birthPlace);
         studentMapper.insertStudent(student);
+        studentChangeMapper.insertChange(student.getId(), StudentChangeType.CREATED);
+        recentStudentWrites.record(List.of(student.getId()));
         return student;
     }
 
     /**
-     * 指定したidの学生の名前、学年、出身地を更新します。
+     * 複数の学生をまとめて登録します。
+     * students.bulk.chunk-size件ごとに1つのINSERT文で登録し、全件を1つのトランザクションで処理します。
+     * 変更履歴もチャンクごとに1つのINSERT文でまとめて記録します。
+     * 採番されるidは登録前に分からないため、キャッシュはコミット後に全て破棄します。
      */
-    public void updateStudent(int id, String name, String grade, String birthPlace) {
-        Optional<Student> optionalStudent = studentMapper.findById(id);
-
-        Student student = optionalStudent.orElseThrow(() -> new StudentNotFoundException("student not found"));
-        student.setName(name);
-        student.setGrade(grade);
-        student.setBirthPlace(birthPlace);
-        studentMapper.updateStudent(student);
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, allEntries = true)
+    @Transactional
+    public List<Student> insertStudents(List<Student> students) {
+        for (int from = 0; from < students.size(); from += bulkChunkSize) {
+            List<Student> chunk = students.subList(from, Math.min(from + bulkChunkSize, students.size()));
+            studentMapper.insertStudents(chunk);
+            List<Integer> studentIds = new ArrayList<>(chunk.size());
+            chunk.forEach(student -> studentIds.add(student.getId()));
+            studentChangeMapper.insertChanges(studentIds, StudentChangeType.CREATED);
+            recentStudentWrites.record(studentIds);
+        }
+        return students;
     }
 
     /**
-     * 全学生の学年を一斉に進級させます。
+     * 指定したidの学生の名前、学年、出身地を更新します。
+     * expectedVersionを指定した場合は、現在のバージョンが一致する場合のみ更新します。
+     * 一致しない場合は他の更新が先に行われているため、StudentVersionConflictExceptionになります。
+     * 更新できた場合は、同じトランザクションで変更後のデータを変更履歴に記録し、コミット後にキャッシュを破棄します。
      */
-    @Transactional()
-    public void updateGrade() {
-        studentMapper.updateGrade("卒業生", "三年生");
-        studentMapper.updateGrade("三年生", "二年生");
-        studentMapper.updateGrade("二年生", "一年生");
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#id")
+    @Transactional
+    public void updateStudent(int id, String name, Grade grade, String birthPlace, Integer expectedVersion) {
+        int updated = studentMapper.updateStudent(new Student(id, name, grade, birthPlace), expectedVersion);
+        if (updated == 0) {
+            // 更新できなかった場合のみ、学生がいないのかバージョンが一致しないのかを確認します。
+            if (expectedVersion == null || studentMapper.findVersionById(id).isEmpty()) {
+                throw new StudentNotFoundException("student not found");
+            }
+            throw new StudentVersionConflictException("student has been modified");
+        }
+        studentChangeMapper.insertChange(id, StudentChangeType.UPDATED);
+        recentStudentWrites.record(List.of(id));
     }
 
     /**
      * 指定したidの学生のデータを削除します。
+     * 削除と同じトランザクションで変更履歴にも記録し、コミット後にキャッシュを破棄します。
      */
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#id")
+    @Transactional
     public void deleteStudent(Integer id) {
-        Optional<Student> findById = this.studentMapper.findById(id);
-        Student deleteStudent = findById.orElseThrow(() -> new StudentNotFoundException("student not found"));
-        studentMapper.deleteStudent(id);
+        int deleted = studentMapper.deleteStudent(id);
+        if (deleted == 0) {
+            throw new StudentNotFoundException("student not found");
+        }
+        studentChangeMapper.insertDeletedChange(id);
+        recentStudentWrites.record(List.of(id));
     }
 }
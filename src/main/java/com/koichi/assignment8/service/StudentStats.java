@@ -0,0 +1,63 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.StudentStat;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 学生の人数の集計です。学年ごと・出身地ごと・学年と出身地の組み合わせごとの人数を持ちます。
+ */
+@Schema(description = "学生の人数の集計")
+public class StudentStats {
+    @Schema(description = "学生の総数")
+    private final long total;
+
+    @Schema(description = "学年ごとの学生の人数", example = "{\"一年生\": 120, \"二年生\": 118, \"三年生\": 121, \"卒業生\": 300}")
+    private final Map<String, Long> byGrade;
+
+    @Schema(description = "出身地ごとの学生の人数", example = "{\"大分県\": 210, \"福岡県\": 449}")
+    private final Map<String, Long> byBirthPlace;
+
+    @Schema(description = "学年と出身地の組み合わせごとの学生の人数")
+    private final List<StudentStat> byGradeAndBirthPlace;
+
+    public StudentStats(long total, Map<String, Long> byGrade, Map<String, Long> byBirthPlace, List<StudentStat> byGradeAndBirthPlace) {
+        this.total = total;
+        this.byGrade = byGrade;
+        this.byBirthPlace = byBirthPlace;
+        this.byGradeAndBirthPlace = byGradeAndBirthPlace;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<String, Long> getByGrade() {
+        return byGrade;
+    }
+
+    public Map<String, Long> getByBirthPlace() {
+        return byBirthPlace;
+    }
+
+    public List<StudentStat> getByGradeAndBirthPlace() {
+        return byGradeAndBirthPlace;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentStats that = (StudentStats) o;
+        return total == that.total && Objects.equals(byGrade, that.byGrade) && Objects.equals(byBirthPlace, that.byBirthPlace)
+                && Objects.equals(byGradeAndBirthPlace, that.byGradeAndBirthPlace);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(total, byGrade, byBirthPlace, byGradeAndBirthPlace);
+    }
+}
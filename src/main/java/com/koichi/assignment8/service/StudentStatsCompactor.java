@@ -0,0 +1,55 @@
+package com.koichi.assignment8.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 学生の変更でstudent_stats_deltasに追記された人数の増減を、一定間隔で集計テーブルにまとめます。
+ * 人数の取得は集計テーブルとまだまとめていない増減の合計を返すため、まとめる間隔は取得結果には影響せず、取得時に読む増減の行数のみに影響します。
+ */
+@Component
+public class StudentStatsCompactor {
+
+    private final StudentStatsService studentStatsService;
+
+    @Value("${students.stats.compaction-interval-millis:1000}")
+    private long compactionIntervalMillis = 1000;
+
+    @Value("${students.stats.compaction-batch-size:5000}")
+    private int compactionBatchSize = 5000;
+
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    public StudentStatsCompactor(StudentStatsService studentStatsService) {
+        this.studentStatsService = studentStatsService;
+    }
+
+    @PostConstruct
+    public void start() {
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.setPoolSize(1);
+        taskScheduler.setThreadNamePrefix("student-stats-");
+        taskScheduler.initialize();
+        taskScheduler.scheduleWithFixedDelay(this::compact, Duration.ofMillis(compactionIntervalMillis));
+    }
+
+    @PreDestroy
+    public void stop() {
+        taskScheduler.destroy();
+    }
+
+    /**
+     * まとめていない増減がなくなるまで、students.stats.compaction-batch-size件ずつ集計テーブルにまとめます。
+     */
+    void compact() {
+        int compacted;
+        do {
+            compacted = studentStatsService.compactStats(compactionBatchSize);
+        } while (compacted == compactionBatchSize);
+    }
+}
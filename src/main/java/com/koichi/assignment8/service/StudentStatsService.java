@@ -0,0 +1,65 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.StudentStat;
+import com.koichi.assignment8.mapper.StudentStatsMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 学生の人数の集計を取得します。
+ * 集計テーブルの組み合わせごとの人数から学年ごと・出身地ごとの人数を求めるため、処理量は学生の数ではなく組み合わせの数に比例します。
+ * 学生の変更で追記された人数の増減は、compactStatsで集計テーブルにまとめます。
+ */
+@Service
+public class StudentStatsService {
+
+    private final StudentStatsMapper studentStatsMapper;
+
+    public StudentStatsService(StudentStatsMapper studentStatsMapper) {
+        this.studentStatsMapper = studentStatsMapper;
+    }
+
+    /**
+     * 学年ごと・出身地ごと・学年と出身地の組み合わせごとの学生の人数を取得します。
+     * 学年ごとの人数は、学生がいない学年も0人として全ての学年を学年順に返します。
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public StudentStats findStats() {
+        List<StudentStat> stats = studentStatsMapper.findStats();
+
+        Map<String, Long> byGrade = new LinkedHashMap<>();
+        for (Grade grade : Grade.values()) {
+            byGrade.put(grade.getLabel(), 0L);
+        }
+        Map<String, Long> byBirthPlace = new TreeMap<>();
+        long total = 0;
+        for (StudentStat stat : stats) {
+            byGrade.merge(stat.getGrade().getLabel(), stat.getCount(), Long::sum);
+            byBirthPlace.merge(stat.getBirthPlace(), stat.getCount(), Long::sum);
+            total += stat.getCount();
+        }
+        return new StudentStats(total, byGrade, byBirthPlace, stats);
+    }
+
+    /**
+     * まだまとめていない人数の増減を追記した順に最大limit件、集計テーブルの人数に加えて削除し、まとめた件数を返します。
+     * READ COMMITTEDでギャップロックを取らないため、学生の変更で増減を追記するトランザクションを待たせません。
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int compactStats(int limit) {
+        List<Long> deltaIds = studentStatsMapper.lockDeltaIds(limit);
+        if (deltaIds.isEmpty()) {
+            return 0;
+        }
+        studentStatsMapper.addDeltas(deltaIds);
+        return studentStatsMapper.deleteDeltas(deltaIds);
+    }
+}
@@ -0,0 +1,19 @@
+-- seqをAUTO_INCREMENTで登録時に採番すると、同時に実行したトランザクションが採番と逆の順にコミットした場合に、
+-- 小さいseqの変更が後から見えるようになり、最後に受け取ったseqより後ろを取得する利用側が取りこぼします。
+-- 記録した順の番号(id)と配信に使う通し番号(seq)を分け、seqはコミット済みの変更にのみ、1つの処理が順に振ります。
+-- seqを振るまではNULLのため、seqで取得する利用側には見えません。
+ALTER TABLE student_changes RENAME COLUMN seq TO id;
+
+ALTER TABLE student_changes
+ ADD COLUMN seq BIGINT unsigned NULL AFTER id,
+ ADD UNIQUE KEY uk_student_changes_seq (seq);
+
+UPDATE student_changes SET seq = id;
+
+-- seqを振る処理を同時に1つに限るための、1行のみのロック用のテーブルです。
+CREATE TABLE IF NOT EXISTS student_change_sequencer (
+ id TINYINT unsigned NOT NULL,
+ PRIMARY KEY(id)
+);
+
+INSERT INTO student_change_sequencer (id) VALUES (1);
@@ -0,0 +1,32 @@
+-- V9のトリガーは学生の行ごとにstudent_statsの同じ学年・出身地の行を更新するため、同じ組み合わせの学生を変更するトランザクションは
+-- その行のロックを順に待ちます。一括更新のチャンクや進級ジョブのように複数の組み合わせを1つのトランザクションで更新すると、
+-- 行の順によってはトランザクション同士が互いのロックを待ち、デッドロックになります。
+-- トリガーではstudent_statsを更新せず、人数の増減(+1・-1)をstudent_stats_deltasに追記します。
+-- 追記はAUTO_INCREMENTの主キーの末尾に行を加えるのみで既存の行をロックしないため、同時に実行しても互いに待ちません。
+-- 人数はstudent_statsとstudent_stats_deltasの合計です。溜まった増減は、StudentStatsCompactorが1回の文でstudent_statsにまとめます。
+-- birth_placeはNOT NULLのため、V9のCOALESCEは除きました。
+CREATE TABLE IF NOT EXISTS student_stats_deltas (
+ id BIGINT unsigned AUTO_INCREMENT,
+ grade TINYINT unsigned NOT NULL,
+ birth_place VARCHAR(20) NOT NULL,
+ delta INT NOT NULL,
+ PRIMARY KEY(id)
+);
+
+DROP TRIGGER IF EXISTS trg_students_stats_insert;
+DROP TRIGGER IF EXISTS trg_students_stats_delete;
+DROP TRIGGER IF EXISTS trg_students_stats_update_new;
+DROP TRIGGER IF EXISTS trg_students_stats_update_old;
+
+CREATE TRIGGER trg_students_stats_insert AFTER INSERT ON students FOR EACH ROW
+ INSERT INTO student_stats_deltas (grade, birth_place, delta) VALUES (NEW.grade, NEW.birth_place, 1);
+
+CREATE TRIGGER trg_students_stats_delete AFTER DELETE ON students FOR EACH ROW
+ INSERT INTO student_stats_deltas (grade, birth_place, delta) VALUES (OLD.grade, OLD.birth_place, -1);
+
+-- 学年・出身地が変わった場合のみ、変更前の組み合わせから1人減らし、変更後の組み合わせに1人加えます。
+CREATE TRIGGER trg_students_stats_update AFTER UPDATE ON students FOR EACH ROW
+ INSERT INTO student_stats_deltas (grade, birth_place, delta)
+ SELECT OLD.grade, OLD.birth_place, -1 FROM DUAL WHERE OLD.grade <> NEW.grade OR OLD.birth_place <> NEW.birth_place
+ UNION ALL
+ SELECT NEW.grade, NEW.birth_place, 1 FROM DUAL WHERE OLD.grade <> NEW.grade OR OLD.birth_place <> NEW.birth_place;
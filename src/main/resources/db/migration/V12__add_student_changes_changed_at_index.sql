@@ -0,0 +1,3 @@
+-- 保持期間(students.changes.retention-days)を過ぎた変更履歴を、記録日時の古い順に少しずつ削除するためのインデックスです。
+-- インデックスがないと、削除する変更がない場合も全ての変更履歴を読みます。
+CREATE INDEX idx_student_changes_changed_at ON student_changes (changed_at);
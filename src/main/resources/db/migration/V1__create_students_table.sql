@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS students (
+ id int unsigned AUTO_INCREMENT,
+ name VARCHAR(20) NOT NULL,
+ grade VARCHAR(20) NOT NULL,
+ birth_place VARCHAR(20) NOT NULL,
+ PRIMARY KEY(id)
+);
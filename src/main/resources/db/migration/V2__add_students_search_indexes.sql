@@ -0,0 +1,5 @@
+-- findByGrade・findByBirthPlaceの等価検索と、findByStartWithの前方一致検索をインデックスの範囲検索にします。
+-- セカンダリインデックスは主キー(id)を含むため、id順のページ分割もインデックス順に読み出せます。
+CREATE INDEX idx_students_grade ON students (grade);
+CREATE INDEX idx_students_birth_place ON students (birth_place);
+CREATE INDEX idx_students_name ON students (name);
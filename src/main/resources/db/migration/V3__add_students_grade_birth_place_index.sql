@@ -0,0 +1,4 @@
+-- gradeとbirthPlaceを組み合わせた検索を、複合インデックスの等価検索にします。
+-- 等価検索の後ろは主キー(id)順に並ぶため、id順のページ分割もインデックス順に読み出せ、startsWithの条件は読み出した行に適用します。
+-- gradeのみの検索は複合インデックスではid順に並ばないため、idx_students_gradeは残します。
+CREATE INDEX idx_students_grade_birth_place ON students (grade, birth_place);
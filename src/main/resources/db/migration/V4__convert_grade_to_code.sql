@@ -0,0 +1,78 @@
+-- 学年を文字列(VARCHAR)から学年コード(TINYINT)に変更し、学年名はgradesテーブルで管理します。
+-- 学年コードは進級順に並んでいるため、進級はgrade + 1で行えます。
+--
+-- MySQLのDDLはトランザクションで取り消せないため、途中の文で失敗すると、それまでの変更は残ったままになります。
+-- 原因を取り除いてflyway repairの後に再実行した場合に続きから変換できるよう、各手順は現在のカラム・制約・インデックスを確かめ、
+-- 適用済みの手順は何もしない文(DO 0)に置き換えて実行します。
+CREATE TABLE IF NOT EXISTS grades (
+ code TINYINT unsigned NOT NULL,
+ name VARCHAR(20) NOT NULL,
+ PRIMARY KEY(code),
+ UNIQUE KEY uk_grades_name (name)
+);
+
+INSERT IGNORE INTO grades (code, name) VALUES (1, '一年生'), (2, '二年生'), (3, '三年生'), (4, '卒業生');
+
+SET @has_grade_code = (SELECT COUNT(*) FROM information_schema.COLUMNS
+ WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'students' AND COLUMN_NAME = 'grade_code');
+SET @has_grade_name = (SELECT COUNT(*) FROM information_schema.COLUMNS
+ WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'students' AND COLUMN_NAME = 'grade' AND DATA_TYPE = 'varchar');
+
+-- 元のgradeカラムが文字列のまま残っている場合のみ、学年コードのカラムを追加して変換します。
+SET @sql = IF(@has_grade_name = 1 AND @has_grade_code = 0,
+ 'ALTER TABLE students ADD COLUMN grade_code TINYINT unsigned NULL AFTER grade',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+SET @has_grade_code = IF(@has_grade_name = 1, 1, @has_grade_code);
+
+SET @sql = IF(@has_grade_name = 1,
+ 'UPDATE students INNER JOIN grades ON grades.name = students.grade SET students.grade_code = grades.code',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 元のgradeカラムを削除する前に、全ての行の学年コードを変換できたことを確かめます。
+-- gradesに存在しない学年の行があると学年コードがNULLのまま残り、NOT NULLへの変更か外部キーの追加でこの文が失敗します。
+-- sql_modeが厳密でない場合、NOT NULLへの変更はNULLを0に置き換えますが、0はgradesにないため外部キーの追加で失敗します。
+-- 失敗した場合もgradeカラムとそのデータは残ります。
+SET @sql = IF(@has_grade_code = 1 AND (SELECT COUNT(*) FROM information_schema.TABLE_CONSTRAINTS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'students' AND CONSTRAINT_NAME = 'fk_students_grade') = 0,
+ 'ALTER TABLE students MODIFY COLUMN grade_code TINYINT unsigned NOT NULL, ADD CONSTRAINT fk_students_grade FOREIGN KEY (grade_code) REFERENCES grades (code)',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- インデックスとカラムの削除は1つの文で行うため、MySQL 8では全て削除されるか、何も削除されないかのどちらかです。
+SET @sql = IF(@has_grade_name = 1,
+ 'ALTER TABLE students DROP INDEX idx_students_grade_birth_place, DROP INDEX idx_students_grade, DROP COLUMN grade',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF(@has_grade_code = 1,
+ 'ALTER TABLE students CHANGE COLUMN grade_code grade TINYINT unsigned NOT NULL',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'students' AND INDEX_NAME = 'idx_students_grade') = 0,
+ 'CREATE INDEX idx_students_grade ON students (grade)',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @sql = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'students' AND INDEX_NAME = 'idx_students_grade_birth_place') = 0,
+ 'CREATE INDEX idx_students_grade_birth_place ON students (grade, birth_place)',
+ 'DO 0');
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,5 @@
+-- 条件付きGET(ETag・Last-Modified)に使用する、行のバージョンと最終更新日時を追加します。
+-- 登録時はデフォルト値を使用し、更新時はStudentMapperの更新系のSQLでversionを1つ増やしupdated_atを更新します。
+ALTER TABLE students
+ ADD COLUMN version INT unsigned NOT NULL DEFAULT 1,
+ ADD COLUMN updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
@@ -0,0 +1,14 @@
+-- 学生の登録・更新・削除を、変更と同じトランザクションで記録する変更履歴(アウトボックス)のテーブルです。
+-- seqは記録した順に増えるため、利用側は最後に処理したseqより後ろの変更のみを取得すれば差分を追えます。
+-- 削除された学生の変更も残すため、studentsへの外部キーは設定しません。
+CREATE TABLE IF NOT EXISTS student_changes (
+ seq BIGINT unsigned AUTO_INCREMENT,
+ student_id INT unsigned NOT NULL,
+ type VARCHAR(10) NOT NULL,
+ name VARCHAR(20) NULL,
+ grade TINYINT unsigned NULL,
+ birth_place VARCHAR(20) NULL,
+ version INT unsigned NULL,
+ changed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+ PRIMARY KEY(seq)
+);
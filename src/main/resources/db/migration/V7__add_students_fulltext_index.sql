@@ -0,0 +1,4 @@
+-- 名前・出身地の部分一致検索(/students/_search)に使用する、ngramパーサーの全文検索インデックスを追加します。
+-- ngramパーサーは単語の区切りがない日本語を、ngram_token_size(既定値2)文字ずつに分割して索引を作成します。
+-- LIKE '%x%'と異なり、名前の途中に含まれる文字列もテーブル全体を走査せずに検索できます。
+ALTER TABLE students ADD FULLTEXT INDEX ftx_students_name_birth_place (name, birth_place) WITH PARSER ngram;
@@ -0,0 +1,20 @@
+-- 全学生の進級をバックグラウンドで実行するジョブと、その進捗を保存するテーブルです。
+-- 進級は開始時点の最大のid(max_id)までをidの範囲ごとに分けて行い、範囲ごとの進級とlast_idの更新を同じトランザクションで確定します。
+-- そのため再起動後はlast_idの続きから再開でき、同じ学生を2回進級させることはありません。
+-- activeは完了していないジョブのみ1になり、一意キーにより同時に実行できるジョブを1つに制限します。
+CREATE TABLE IF NOT EXISTS grade_advancement_jobs (
+ id INT unsigned AUTO_INCREMENT,
+ status VARCHAR(10) NOT NULL,
+ active TINYINT unsigned NULL DEFAULT 1,
+ max_id INT unsigned NOT NULL,
+ last_id INT unsigned NOT NULL DEFAULT 0,
+ advanced_first INT unsigned NOT NULL DEFAULT 0,
+ advanced_second INT unsigned NOT NULL DEFAULT 0,
+ advanced_third INT unsigned NOT NULL DEFAULT 0,
+ error VARCHAR(255) NULL,
+ created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+ updated_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+ completed_at TIMESTAMP(3) NULL,
+ PRIMARY KEY(id),
+ UNIQUE KEY uk_grade_advancement_jobs_active (active)
+);
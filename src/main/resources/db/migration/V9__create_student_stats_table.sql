@@ -0,0 +1,34 @@
+-- 学年・出身地ごとの学生の人数を保存する集計テーブルです。/students/_statsはこのテーブルのみを読むため、学生の数に関係なく組み合わせの数だけの行で集計を返します。
+-- 人数はstudentsのトリガーで、学生の登録・更新・削除と同じトランザクション内で増減します。
+-- 一括更新・進級・一括削除のどの経路で変更しても人数がずれないよう、アプリケーションではなくトリガーで更新します。
+-- バイナリログが有効なMySQLでSUPER権限のないユーザーがトリガーを作成するには、log_bin_trust_function_creatorsを有効にしてください(conf/mysql/my.cnf)。
+-- 主キーにNULLを含められないため、出身地がNULLの学生は空文字の出身地として数えます。
+CREATE TABLE IF NOT EXISTS student_stats (
+ grade TINYINT unsigned NOT NULL,
+ birth_place VARCHAR(20) NOT NULL,
+ student_count INT NOT NULL DEFAULT 0,
+ PRIMARY KEY(grade, birth_place)
+);
+
+CREATE TRIGGER trg_students_stats_insert AFTER INSERT ON students FOR EACH ROW
+ INSERT INTO student_stats (grade, birth_place, student_count) VALUES (NEW.grade, COALESCE(NEW.birth_place, ''), 1)
+ ON DUPLICATE KEY UPDATE student_count = student_count + 1;
+
+CREATE TRIGGER trg_students_stats_delete AFTER DELETE ON students FOR EACH ROW
+ UPDATE student_stats SET student_count = student_count - 1
+ WHERE grade = OLD.grade AND birth_place = COALESCE(OLD.birth_place, '');
+
+-- 学年・出身地が変わった場合のみ、変更前の組み合わせから1人減らし、変更後の組み合わせに1人加えます。
+CREATE TRIGGER trg_students_stats_update_old AFTER UPDATE ON students FOR EACH ROW
+ UPDATE student_stats SET student_count = student_count - 1
+ WHERE grade = OLD.grade AND birth_place = COALESCE(OLD.birth_place, '')
+ AND (OLD.grade <> NEW.grade OR NOT (OLD.birth_place <=> NEW.birth_place));
+
+CREATE TRIGGER trg_students_stats_update_new AFTER UPDATE ON students FOR EACH ROW FOLLOWS trg_students_stats_update_old
+ INSERT INTO student_stats (grade, birth_place, student_count)
+ SELECT NEW.grade, COALESCE(NEW.birth_place, ''), 1 FROM DUAL
+ WHERE OLD.grade <> NEW.grade OR NOT (OLD.birth_place <=> NEW.birth_place)
+ ON DUPLICATE KEY UPDATE student_count = student_count + 1;
+
+INSERT INTO student_stats (grade, birth_place, student_count)
+SELECT grade, COALESCE(birth_place, ''), COUNT(*) FROM students GROUP BY grade, COALESCE(birth_place, '');
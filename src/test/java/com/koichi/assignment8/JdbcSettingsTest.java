@@ -0,0 +1,126 @@
+package com.koichi.assignment8;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcSettingsTest {
+
+    private static HikariConfig config(String jdbcUrl) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername("user");
+        config.setPassword("password");
+        return config;
+    }
+
+    @Test
+    public void URLとdatasourcepropertiesのどちらにもない設定はConnectorJの既定値になること() {
+
+        HikariConfig config = config("jdbc:mysql://localhost:3307/students_database?rewriteBatchedStatements=true");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        JdbcSettings settings = new JdbcSettings(config);
+
+        assertThat(settings.getDriverProperty("rewriteBatchedStatements")).isEqualTo("true");
+        assertThat(settings.getDriverProperty("cachePrepStmts")).isEqualTo("true");
+        assertThat(settings.getDriverProperty("useServerPrepStmts")).isEqualTo("false");
+        assertThat(settings.getPreparedStatementCacheSize()).isEqualTo(25);
+        assertThat(settings.getMaximumPoolSize()).isEqualTo(10);
+        assertThat(settings.getMinimumIdle()).isEqualTo(10);
+        assertThat(settings.validate()).isEmpty();
+    }
+
+    @Test
+    public void productionプロファイルと同じ設定に誤りがないこと() {
+
+        HikariConfig config = config("jdbc:mysql://localhost:3307/students_database?rewriteBatchedStatements=true");
+        config.setMaximumPoolSize(20);
+        config.setMinimumIdle(20);
+        config.setConnectionTimeout(3000);
+        config.setValidationTimeout(1000);
+        config.setMaxLifetime(1740000);
+        config.setKeepaliveTime(300000);
+        config.setLeakDetectionThreshold(60000);
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        JdbcSettings settings = new JdbcSettings(config);
+
+        assertThat(settings.validate()).isEmpty();
+        assertThat(settings.isServerPreparedStatementCacheEnabled()).isTrue();
+        assertThat(settings.getPreparedStatementCacheSize()).isEqualTo(250);
+    }
+
+    @Test
+    public void HikariCPが黙って置き換えるプールの設定をエラーにすること() {
+
+        HikariConfig config = config("jdbc:mysql://localhost:3307/students_database");
+        config.setMaximumPoolSize(5);
+        config.setMinimumIdle(10);
+        config.setConnectionTimeout(1000);
+        config.setValidationTimeout(1000);
+        config.setMaxLifetime(20000);
+        config.setKeepaliveTime(10000);
+        JdbcSettings settings = new JdbcSettings(config);
+
+        assertThat(settings.validate()).containsExactly(
+                "minimum-idle must not exceed maximum-pool-size: 10 > 5",
+                "validation-timeout must be shorter than connection-timeout: 1000 >= 1000",
+                "max-lifetime must be 0 or at least 30000ms: 20000",
+                "idle-timeout must be 0 or between 10000ms and max-lifetime: 600000",
+                "keepalive-time must be 0 or between 30000ms and max-lifetime: 10000"
+        );
+    }
+
+    @Test
+    public void URLとdatasourcepropertiesで異なる値や不正な値を指定した場合はエラーにすること() {
+
+        HikariConfig config = config("jdbc:mysql://localhost:3307/students_database?rewriteBatchedStatements=true&prepStmtCacheSize=abc");
+        config.addDataSourceProperty("rewriteBatchedStatements", "false");
+        config.addDataSourceProperty("useServerPrepStmts", "yes");
+        JdbcSettings settings = new JdbcSettings(config);
+
+        assertThat(settings.validate()).containsExactly(
+                "prepStmtCacheSize must be a non-negative integer: abc",
+                "useServerPrepStmts must be true or false: yes",
+                "rewriteBatchedStatements is set to different values in the JDBC URL and data-source-properties: true / false"
+        );
+    }
+
+    @Test
+    public void キャッシュしないサーバー側のプリペアドステートメントとキャッシュの大きさのみの指定をエラーにすること() {
+
+        HikariConfig config = config("jdbc:mysql://localhost:3307/students_database");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        JdbcSettings settings = new JdbcSettings(config);
+
+        assertThat(settings.validate()).containsExactly(
+                "useServerPrepStmts requires cachePrepStmts=true",
+                "prepStmtCacheSize and prepStmtCacheSqlLimit have no effect without cachePrepStmts=true"
+        );
+    }
+
+    @Test
+    public void infoにプールとドライバーの設定を出力し認証情報を含めないこと() {
+
+        HikariConfig config = config("jdbc:mysql://localhost:3307/students_database?rewriteBatchedStatements=true");
+        config.setMaximumPoolSize(20);
+        Map<String, Object> info = new JdbcSettings(config).toInfo();
+
+        assertThat(info).containsOnlyKeys("pool", "driver");
+        assertThat(info.get("pool")).asInstanceOf(InstanceOfAssertFactories.MAP)
+                .containsEntry("maximumPoolSize", 20)
+                .containsEntry("minimumIdle", 20);
+        assertThat(info.get("driver")).asInstanceOf(InstanceOfAssertFactories.MAP)
+                .containsEntry("rewriteBatchedStatements", "true")
+                .containsEntry("cachePrepStmts", "false");
+        assertThat(info.toString()).doesNotContain("password");
+    }
+}
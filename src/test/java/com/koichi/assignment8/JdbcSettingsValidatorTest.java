@@ -0,0 +1,45 @@
+package com.koichi.assignment8;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JdbcSettingsValidatorTest {
+
+    private static JdbcSettings settings(long maxLifetime) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:mysql://localhost:3307/students_database");
+        config.setMaximumPoolSize(20);
+        config.setMaxLifetime(maxLifetime);
+        return new JdbcSettings(config);
+    }
+
+    @Test
+    public void maxlifetimeがwaittimeout以上の場合は起動を中止すること() {
+
+        List<String> warnings = new ArrayList<>();
+        assertThat(JdbcSettingsValidator.validateAgainstServer(settings(1800000), 1800000, 16382, 151, warnings))
+                .containsExactly("max-lifetime must be shorter than the server's wait_timeout: 1800000 >= 1800000");
+        assertThat(warnings).isEmpty();
+    }
+
+    @Test
+    public void maxlifetimeが0の場合はwaittimeoutが有限でも警告のみで起動すること() {
+
+        List<String> warnings = new ArrayList<>();
+        assertThat(JdbcSettingsValidator.validateAgainstServer(settings(0), 28800000, 16382, 151, warnings)).isEmpty();
+        assertThat(warnings).hasSize(1);
+    }
+
+    @Test
+    public void コネクション数がmaxconnectionsを超える場合は起動を中止すること() {
+
+        List<String> warnings = new ArrayList<>();
+        assertThat(JdbcSettingsValidator.validateAgainstServer(settings(1740000), 1800000, 16382, 10, warnings))
+                .containsExactly("maximum-pool-size exceeds the server's max_connections: 20 > 10");
+    }
+}
@@ -0,0 +1,179 @@
+package com.koichi.assignment8;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    DataSource primary;
+
+    @Mock
+    DataSource replica1;
+
+    @Mock
+    DataSource replica2;
+
+    @Mock
+    Connection primaryConnection;
+
+    @Mock
+    Connection replicaConnection1;
+
+    @Mock
+    Connection replicaConnection2;
+
+    ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica1);
+        replicas.put("replica-2", replica2);
+        replicaRoutingDataSource = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(5), 1, 5);
+    }
+
+    /**
+     * SHOW REPLICA STATUSで、指定した複製の遅延を返すようにします。nullの場合は複製が止まっていることを表します。
+     */
+    private void replicating(Connection connection, Long lagSeconds) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        doReturn(statement).when(connection).createStatement();
+        doReturn(resultSet).when(statement).executeQuery("SHOW REPLICA STATUS");
+        doReturn(true, false).when(resultSet).next();
+        doReturn(lagSeconds == null ? 0L : lagSeconds).when(resultSet).getLong("Seconds_Behind_Source");
+        doReturn(lagSeconds == null).when(resultSet).wasNull();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void 読み取り専用でない場合はプライマリからコネクションを取得すること() throws SQLException {
+
+        doReturn(primaryConnection).when(primary).getConnection();
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(primaryConnection);
+        verifyNoInteractions(replica1, replica2);
+    }
+
+    @Test
+    public void 最初の検証が終わるまでは読み取り専用でもプライマリからコネクションを取得すること() throws SQLException {
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        doReturn(primaryConnection).when(primary).getConnection();
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(primaryConnection);
+        verifyNoInteractions(replica1, replica2);
+    }
+
+    @Test
+    public void 読み取り専用の場合は正常なレプリカから順番にコネクションを取得すること() throws SQLException {
+
+        doReturn(replicaConnection1).when(replica1).getConnection();
+        doReturn(replicaConnection2).when(replica2).getConnection();
+        doReturn(true).when(replicaConnection1).isValid(1);
+        doReturn(true).when(replicaConnection2).isValid(1);
+        replicating(replicaConnection1, 0L);
+        replicating(replicaConnection2, 5L);
+        replicaRoutingDataSource.checkReplicas();
+        assertThat(replicaRoutingDataSource.getHealthyReplicas()).containsExactly("replica-1", "replica-2");
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(replicaConnection1);
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(replicaConnection2);
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(replicaConnection1);
+    }
+
+    @Test
+    public void 検証に失敗したレプリカを除外して正常なレプリカのみを使用すること() throws SQLException {
+
+        doThrow(new SQLTransientConnectionException("connection refused")).when(replica1).getConnection();
+        doReturn(replicaConnection2).when(replica2).getConnection();
+        doReturn(true).when(replicaConnection2).isValid(1);
+        replicating(replicaConnection2, 0L);
+        replicaRoutingDataSource.checkReplicas();
+        assertThat(replicaRoutingDataSource.getHealthyReplicas()).containsExactly("replica-2");
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(replicaConnection2);
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(replicaConnection2);
+    }
+
+    @Test
+    public void レプリカからコネクションを取得できない場合はプライマリから取得しそのレプリカを除外すること() throws SQLException {
+
+        doReturn(replicaConnection1).when(replica1).getConnection();
+        doReturn(replicaConnection2).when(replica2).getConnection();
+        doReturn(true).when(replicaConnection1).isValid(1);
+        doReturn(false).when(replicaConnection2).isValid(1);
+        replicating(replicaConnection1, 0L);
+        replicaRoutingDataSource.checkReplicas();
+        assertThat(replicaRoutingDataSource.getHealthyReplicas()).containsExactly("replica-1");
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        doThrow(new SQLTransientConnectionException("connection refused")).when(replica1).getConnection();
+        doReturn(primaryConnection).when(primary).getConnection();
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(primaryConnection);
+        assertThat(replicaRoutingDataSource.getHealthyReplicas()).isEqualTo(List.of());
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    public void 複製の遅延が上限を超えたレプリカと複製が止まっているレプリカを除外すること() throws SQLException {
+
+        doReturn(replicaConnection1).when(replica1).getConnection();
+        doReturn(replicaConnection2).when(replica2).getConnection();
+        doReturn(true).when(replicaConnection1).isValid(1);
+        doReturn(true).when(replicaConnection2).isValid(1);
+        replicating(replicaConnection1, 6L);
+        replicating(replicaConnection2, null);
+        replicaRoutingDataSource.checkReplicas();
+        assertThat(replicaRoutingDataSource.getHealthyReplicas()).isEqualTo(List.of());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        doReturn(primaryConnection).when(primary).getConnection();
+        assertThat(replicaRoutingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    public void 複製を設定していないデータベースをレプリカとして使用しないこと() throws SQLException {
+
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        doReturn(replicaConnection1).when(replica1).getConnection();
+        doReturn(replicaConnection2).when(replica2).getConnection();
+        doReturn(true).when(replicaConnection1).isValid(1);
+        doReturn(true).when(replicaConnection2).isValid(1);
+        doReturn(statement).when(replicaConnection1).createStatement();
+        doReturn(resultSet).when(statement).executeQuery("SHOW REPLICA STATUS");
+        doReturn(false).when(resultSet).next();
+        replicating(replicaConnection2, 0L);
+        replicaRoutingDataSource.checkReplicas();
+        assertThat(replicaRoutingDataSource.getHealthyReplicas()).containsExactly("replica-2");
+    }
+}
@@ -0,0 +1,24 @@
+package com.koichi.assignment8;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VirtualThreadsValidatorTest {
+
+    @Test
+    public void Java21未満で仮想スレッドを指定した場合は起動を中止すること() {
+
+        assertThatThrownBy(() -> VirtualThreadsValidator.validate(17))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("spring.threads.virtual.enabled=true (virtual profile) requires Java 21 or later, but the application is running on Java 17");
+    }
+
+    @Test
+    public void Java21以上では仮想スレッドで起動できること() {
+
+        assertThatCode(() -> VirtualThreadsValidator.validate(21)).doesNotThrowAnyException();
+        assertThatCode(() -> VirtualThreadsValidator.validate(22)).doesNotThrowAnyException();
+    }
+}
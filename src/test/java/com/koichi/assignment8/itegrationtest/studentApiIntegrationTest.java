@@ -3,6 +3,10 @@ package com.koichi.assignment8.itegrationtest;
 import com.github.database.rider.core.api.dataset.DataSet;
 import com.github.database.rider.core.api.dataset.ExpectedDataSet;
 import com.github.database.rider.spring.api.DBRider;
+import com.jayway.jsonpath.JsonPath;
+import com.koichi.assignment8.controller.StudentController;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -12,16 +16,25 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 
-@SpringBootTest
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+
+// データセットの変更履歴は記録日時が古いため、テスト中に保持期間を過ぎた変更として削除しないようにします。
+@SpringBootTest(properties = "students.changes.retention-days=36500")
 @AutoConfigureMockMvc
 @DBRider
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -30,6 +43,9 @@ public class studentApiIntegrationTest {
     @Autowired
     MockMvc mockMvc;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @Transactional
@@ -46,6 +62,106 @@ public class studentApiIntegrationTest {
                         """));
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void IDに該当する学生が変更されていない場合はETagの一致で304を返すこと() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/students/1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-1\""))
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/students/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "name":"城野健一",
+                                    "grade":"二年生",
+                                    "birthPlace":"福岡県"
+                                }
+                                """))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, result.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void fieldsで絞り込んだ学生のETagは返す項目ごとに異なりIfMatchには使用できること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/1?fields=birthPlace,name"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-1;id,name,birthPlace\""));
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/1?fields=name,grade,birthPlace"))
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-1\""));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/1?fields=name")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-1\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, "\"1-1;id,name\""));
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/1?fields=name")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1-1;id,name\""))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/students/1")
+                        .header(HttpHeaders.IF_MATCH, "\"1-1;id,name\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "name":"城野健一",
+                                    "grade":"二年生",
+                                    "birthPlace":"福岡県"
+                                }
+                                """))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 一覧のETagは返す項目ごとに異なること() throws Exception {
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=1&fields=name")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 一覧が変更されていない場合はETagの一致で304を返すこと() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=1")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/students/2"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=1")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
     @ParameterizedTest(name = "{2}")
     @CsvSource({
             "'/students/999','{\"error\":\"Not Found\",\"timestamp\":\"2024/01/01 T00:00:00+0900［Asia/Tokyo］\",\"message\":\"student not found\",\"status\":\"404\",\"path\":\"/students/999\"}',存在しない学生を取得する際にhandleUserNotFoundExceptionを返す",
@@ -115,6 +231,259 @@ public class studentApiIntegrationTest {
                          """));
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 学生を取得した際にMapperの実行時間が記録されること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        Timer timer = meterRegistry.get("mybatis.mapper")
+                .tag("statement", "com.koichi.assignment8.mapper.StudentMapper.findStudents")
+                .tag("outcome", "SUCCESS")
+                .timer();
+        assertThat(timer.count()).isPositive();
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 指定した件数ごとに学生を取得し次のページのカーソルを返すこと() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?after=2&limit=2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string("X-Next-Cursor", "4"))
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        [
+                            {
+                                "id": 3,
+                                "name": "岡崎徹",
+                                "grade": "二年生",
+                                "birthPlace": "大分県"
+                            },
+                            {
+                                "id": 4,
+                                "name": "溝口光一",
+                                "grade": "二年生",
+                                "birthPlace": "熊本県"
+                            }
+                        ]
+                         """, true));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 最後のページを取得した場合は次のページのカーソルを返さないこと() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?after=4&limit=2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().doesNotExist("X-Next-Cursor"))
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        [
+                            {
+                                "id": 5,
+                                "name": "溝谷望",
+                                "grade": "三年生",
+                                "birthPlace": "熊本県"
+                            },
+                            {
+                                "id": 6,
+                                "name": "安藤孝弘",
+                                "grade": "三年生",
+                                "birthPlace": "福岡県"
+                            }
+                        ]
+                         """, true));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    void 全ての学生をCSVで一括出力すること() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/students/_export?format=csv"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(MockMvcResultMatchers.header().exists(StudentController.CHANGE_SEQUENCE_HEADER));
+        assertThat(mvcResult.getResponse().getContentAsString(StandardCharsets.UTF_8)).isEqualTo("""
+                id,name,grade,birthPlace
+                1,清⽔圭吾,一年生,大分県
+                2,田中圭,一年生,福岡県
+                3,岡崎徹,二年生,大分県
+                4,溝口光一,二年生,熊本県
+                5,溝谷望,三年生,熊本県
+                6,安藤孝弘,三年生,福岡県
+                """);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    void 全ての学生をNDJSONで一括出力すること() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/students/_export"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson;charset=UTF-8"));
+        assertThat(mvcResult.getResponse().getContentAsString(StandardCharsets.UTF_8).lines())
+                .hasSize(6)
+                .first()
+                .isEqualTo("{\"id\":1,\"name\":\"清⽔圭吾\",\"grade\":\"一年生\",\"birthPlace\":\"大分県\"}");
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/studentChanges.yml"})
+    void LastEventIDより後ろの学生の変更をServerSentEventsで配信すること() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/students/_changes?after=0")
+                        .header(StudentController.LAST_EVENT_ID_HEADER, "1"))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        try {
+            String content = "";
+            for (int i = 0; i < 50 && !content.contains("id:3"); i++) {
+                Thread.sleep(100);
+                content = mvcResult.getResponse().getContentAsString(StandardCharsets.UTF_8);
+            }
+            assertThat(mvcResult.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+            assertThat(content)
+                    .doesNotContain("id:1\n")
+                    .contains("id:2\nevent:UPDATED\ndata:{\"sequence\":2,\"studentId\":1,\"type\":\"UPDATED\",\"name\":\"清⽔圭吾\",\"grade\":\"二年生\",\"birthPlace\":\"大分県\",\"version\":2,")
+                    .contains("id:3\nevent:DELETED\ndata:{\"sequence\":3,\"studentId\":1,\"type\":\"DELETED\",\"changedAt\":");
+            assertThat(content.indexOf("id:2")).isLessThan(content.indexOf("id:3"));
+        } finally {
+            // 購読を終了し、変更履歴の取得を止めます。
+            mvcResult.getRequest().getAsyncContext().complete();
+        }
+    }
+
+    /**
+     * 全文検索インデックスはコミット時に更新されるため、トランザクションを使用せずにデータセットをコミットします。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    void 名前の途中に含まれる文字列で学生を全文検索できること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/_search?q=口光"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        [
+                            {
+                                "id": 4,
+                                "name": "溝口光一",
+                                "grade": "二年生",
+                                "birthPlace": "熊本県"
+                            }
+                        ]
+                         """, true));
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/_search?q=大分&limit=1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(StudentController.NEXT_CURSOR_HEADER, "1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value(1));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 学年ごとと出身地ごとの学生の人数を取得すること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/_stats"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        {
+                            "total": 6,
+                            "byGrade": {
+                                "一年生": 2,
+                                "二年生": 2,
+                                "三年生": 2,
+                                "卒業生": 0
+                            },
+                            "byBirthPlace": {
+                                "大分県": 2,
+                                "熊本県": 2,
+                                "福岡県": 2
+                            },
+                            "byGradeAndBirthPlace": [
+                                {
+                                    "grade": "一年生",
+                                    "birthPlace": "大分県",
+                                    "count": 1
+                                },
+                                {
+                                    "grade": "一年生",
+                                    "birthPlace": "福岡県",
+                                    "count": 1
+                                },
+                                {
+                                    "grade": "二年生",
+                                    "birthPlace": "大分県",
+                                    "count": 1
+                                },
+                                {
+                                    "grade": "二年生",
+                                    "birthPlace": "熊本県",
+                                    "count": 1
+                                },
+                                {
+                                    "grade": "三年生",
+                                    "birthPlace": "熊本県",
+                                    "count": 1
+                                },
+                                {
+                                    "grade": "三年生",
+                                    "birthPlace": "福岡県",
+                                    "count": 1
+                                }
+                            ]
+                        }
+                         """, true));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 指定した複数のIDの学生を指定した順にまとめて取得すること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/students/_lookup?fields=name")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[4, 999, 1, 4]"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        {
+                            "students": [
+                                {
+                                    "id": 4,
+                                    "name": "溝口光一"
+                                },
+                                {
+                                    "id": 1,
+                                    "name": "清⽔圭吾"
+                                }
+                            ],
+                            "missingIds": [999]
+                        }
+                         """, true));
+    }
+
+    @ParameterizedTest(name = "{2}")
+    @CsvSource({
+            "'[]','{\"path\": \"/students/_lookup\", \"status\": \"400\", \"message\": \"学生のIDを数字の配列で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',IDを1件も指定しない場合handleMethodArgumentTypeMismatchExceptionを返す",
+            "'[1, null]','{\"path\": \"/students/_lookup\", \"status\": \"400\", \"message\": \"学生のIDを数字の配列で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',IDにnullを含む場合handleMethodArgumentTypeMismatchExceptionを返す"
+    })
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 複数のIDの学生をまとめて取得する際の例外処理のレスポンスを返却すること(String requestBody, String response, String testName) throws Exception {
+
+        final ZonedDateTime fixedClock = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneId.of("Asia/Tokyo"));
+
+        try (MockedStatic<ZonedDateTime> mockClock = Mockito.mockStatic(ZonedDateTime.class)) {
+            mockClock.when(ZonedDateTime::now).thenReturn(fixedClock);
+            mockMvc.perform(MockMvcRequestBuilders.post("/students/_lookup")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(requestBody))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                    .andExpect(MockMvcResultMatchers.content().json(response));
+        }
+    }
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @Transactional
@@ -237,10 +606,15 @@ public class studentApiIntegrationTest {
 
     @ParameterizedTest(name = "{2}")
     @CsvSource({
-            "/students?grade=1&birthPlace=大分県,'{\"message\": \"カラムはgrade・startsWith・birthPlaceの一つを選んでください\",\"status\": \"400\", \"path\": \"/students\", \"error\": \"Bad Request\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\"}',複数のカラムで検索した場合handleMultipleMethodsExceptionを返す",
             "/students?grade=一年生,'{\"path\": \"/students\", \"status\": \"400\", \"message\": \"学年は半角数字で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',学年での検索時に文字列を入力した場合handleMethodArgumentTypeMismatchExceptionを返す",
             "/students?startsWith=阿,[],実際にいない人名の頭文字でクエリパラメータの検索をしたらEmptyを返す",
-            "/students?birthPlace=大阪府,[],実際にいない出身地でクエリパラメータの検索を使用したらEmptyを返す"
+            "/students?fields=name,age,'{\"path\": \"/students\", \"status\": \"400\", \"message\": \"fieldsはid・name・grade・birthPlaceをカンマ区切りで指定してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',存在しない項目をfieldsに指定した場合handleMethodArgumentTypeMismatchExceptionを返す",
+            "/students?limit=0,'{\"path\": \"/students\", \"status\": \"400\", \"message\": \"limitは1以上の半角数字で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',取得件数に0を指定した場合handleMethodArgumentTypeMismatchExceptionを返す",
+            "/students?after=あ,'{\"path\": \"/students\", \"status\": \"400\", \"message\": \"afterは半角数字で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',カーソルに文字列を指定した場合handleMethodArgumentTypeMismatchExceptionを返す",
+            "/students?birthPlace=大阪府,[],実際にいない出身地でクエリパラメータの検索を使用したらEmptyを返す",
+            "/students/_changes?after=あ,'{\"path\": \"/students/_changes\", \"status\": \"400\", \"message\": \"afterとLast-Event-IDは0以上の半角数字で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',変更配信の通し番号に文字列を指定した場合handleMethodArgumentTypeMismatchExceptionを返す",
+            "/students/_search,'{\"path\": \"/students/_search\", \"status\": \"400\", \"message\": \"qに検索する語を入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',全文検索で検索する語を指定しない場合handleMethodArgumentTypeMismatchExceptionを返す",
+            "/students/_search?q=溝&offset=-1,'{\"path\": \"/students/_search\", \"status\": \"400\", \"message\": \"offsetは0以上の半角数字で入力してください\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Bad Request\"}',全文検索のoffsetに負の数を指定した場合handleMethodArgumentTypeMismatchExceptionを返す"
     })
     @DataSet(value = "datasets/students.yml")
     @Transactional
@@ -255,6 +629,54 @@ public class studentApiIntegrationTest {
         }
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void fieldsで指定した項目とidのみを返却すること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=1&fields=name"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        [
+                            {
+                                "id": 1,
+                                "name": "清⽔圭吾"
+                            },
+                            {
+                                "id": 2,
+                                "name": "田中圭"
+                            }
+                        ]
+                         """, true));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students/3?fields=grade,birthPlace"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        {
+                            "id": 3,
+                            "grade": "二年生",
+                            "birthPlace": "大分県"
+                        }
+                         """, true));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    void 複数のカラムを指定して全ての条件を満たす学生を取得すること() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?grade=2&startsWith=溝&birthPlace=熊本県"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        [
+                            {
+                                "id": 4,
+                                "name": "溝口光一",
+                                "grade": "二年生",
+                                "birthPlace": "熊本県"
+                            }
+                        ]
+                         """, true));
+    }
+
 
     @Test
     @DataSet(value = "datasets/students.yml")
@@ -280,6 +702,45 @@ public class studentApiIntegrationTest {
 
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/studentsToBulkRegister.yml", ignoreCols = "id")
+    @Transactional
+    void 複数の学生をまとめて登録しバリデーションエラーの要素はエラーを返すこと() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/students/_bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                    {
+                                        "name":"中田健太",
+                                        "grade":"一年生",
+                                        "birthPlace":"福岡県"
+                                    },
+                                    {
+                                        "name":"",
+                                        "grade":"一年生",
+                                        "birthPlace":"福岡県"
+                                    },
+                                    {
+                                        "name":"森本翔",
+                                        "grade":"二年生",
+                                        "birthPlace":"熊本県"
+                                    }
+                                ]
+                                """))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].index").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[0].id").isNumber())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[1].index").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[1].id").doesNotExist())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[1].errors[0].field").value("name"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[1].errors[0].message").value("nameを入力してください"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[2].index").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.results[2].id").isNumber());
+    }
+
     @ParameterizedTest(name = "{3}")
     @CsvSource({
             "/students,'{\"name\":\"\" ,\"grade\":\"一年生\",\"birthPlace\":\"福岡県\"}','{ \"status\": \"400\", \"message\": \"validation error\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"errors\": [{\"field\": \"name\", \"message\": \"nameを入力してください\"}]}',学生を登録する際に名前が空白の場合、handleMethodArgumentNotValidExceptionを返す",
@@ -328,6 +789,54 @@ public class studentApiIntegrationTest {
                         """));
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/studentsToRenewing.yml", ignoreCols = "id")
+    @Transactional
+    void IfMatchのバージョンが一致する場合は学生のデータを更新出来ること() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/students/1")
+                        .header(HttpHeaders.IF_MATCH, "\"1-1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "name":"城野健一",
+                                    "grade":"二年生",
+                                    "birthPlace":"福岡県"
+                                }
+                                """))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @ParameterizedTest(name = "{2}")
+    @CsvSource({
+            "'\"1-2\"','{ \"path\": \"/students/1\", \"status\": \"412\", \"message\": \"student has been modified\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Precondition Failed\"}',IfMatchのバージョンが一致しない場合handleStudentVersionConflictExceptionを返す",
+            "'\"2-1\"','{ \"path\": \"/students/1\", \"status\": \"412\", \"message\": \"student has been modified\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Precondition Failed\"}',IfMatchに他の学生のETagを指定した場合handleStudentVersionConflictExceptionを返す",
+            "'W/\"1-1\"','{ \"path\": \"/students/1\", \"status\": \"412\", \"message\": \"student has been modified\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Precondition Failed\"}',IfMatchに弱いETagを指定した場合handleStudentVersionConflictExceptionを返す"
+    })
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/students.yml")
+    @Transactional
+    void IfMatchのバージョンが一致しない場合は更新せずに412を返すこと(String ifMatch, String response, String testName) throws Exception {
+        final ZonedDateTime fixedClock = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneId.of("Asia/Tokyo"));
+
+        try (MockedStatic<ZonedDateTime> mockClock = Mockito.mockStatic(ZonedDateTime.class)) {
+            mockClock.when(ZonedDateTime::now).thenReturn(fixedClock);
+            mockMvc.perform(MockMvcRequestBuilders.patch("/students/1")
+                            .header(HttpHeaders.IF_MATCH, ifMatch)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    {
+                                        "name":"城野健一",
+                                        "grade":"二年生",
+                                        "birthPlace":"福岡県"
+                                    }
+                                    """))
+                    .andExpect(MockMvcResultMatchers.status().isPreconditionFailed())
+                    .andExpect(MockMvcResultMatchers.content().json(response));
+        }
+    }
+
     @ParameterizedTest(name = "{3}")
     @CsvSource({
             "/students/0,'{\"name\":\"城野健一\",\"grade\":\"二年生\", \"birthPlace\":\"福岡県\"}','{ \"path\": \"/students/0\", \"status\": \"404\", \"message\": \"student not found\", \"timestamp\": \"2024/01/01 T00:00:00+0900［Asia/Tokyo］\", \"error\": \"Not Found\"}',指定したIDの学生がいない場合に、handleUserNotFoundExceptionを返す",
@@ -359,19 +868,172 @@ public class studentApiIntegrationTest {
 
     @Test
     @DataSet(value = "datasets/students.yml")
-    @ExpectedDataSet(value = "datasets/gradeAdvancement.yml", ignoreCols = "id")
+    @ExpectedDataSet(value = "datasets/studentsToRenewing.yml", ignoreCols = "id")
     @Transactional
-    void 学生の学年を進級させること() throws Exception {
+    void 複数の学生のうち更新できる学生のみをまとめて更新し要素ごとの結果を返すこと() throws Exception {
 
-        mockMvc.perform(MockMvcRequestBuilders.patch("/students/grade/_batchUpdate"))
+        mockMvc.perform(MockMvcRequestBuilders.patch("/students/_bulkUpdate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                    {"id": 1, "name": "城野健一", "grade": "二年生", "birthPlace": "福岡県", "version": 1},
+                                    {"id": 999, "name": "中田健太", "grade": "一年生", "birthPlace": "福岡県"},
+                                    {"id": 2, "name": "田中圭", "grade": "二年生", "birthPlace": "福岡県", "version": 5},
+                                    {"id": 3, "name": "", "grade": "一年生", "birthPlace": "大分県"}
+                                ]
+                                """))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().json("""
                         {
-                             "message": "Grade updated"
+                            "mode": "bestEffort",
+                            "succeeded": 1,
+                            "results": [
+                                {"index": 0, "id": 1, "status": "UPDATED"},
+                                {"index": 1, "id": 999, "status": "NOT_FOUND"},
+                                {"index": 2, "id": 2, "status": "CONFLICT"},
+                                {"index": 3, "id": 3, "status": "INVALID", "errors": [{"field": "name", "message": "nameを入力してください"}]}
+                            ]
+                        }
+                        """, true));
+    }
+
+    /**
+     * 取り消した更新がデータベースに残っていないことを確認するため、トランザクションを使用せずにデータセットをコミットします。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/students.yml")
+    void allOrNothingで更新できない学生がいる場合は全ての更新を取り消して409を返すこと() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/students/_bulkUpdate?mode=allOrNothing")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                    {"id": 1, "name": "城野健一", "grade": "二年生", "birthPlace": "福岡県"},
+                                    {"id": 999, "name": "中田健太", "grade": "一年生", "birthPlace": "福岡県"}
+                                ]
+                                """))
+                .andExpect(MockMvcResultMatchers.status().isConflict())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        {
+                            "mode": "allOrNothing",
+                            "succeeded": 0,
+                            "results": [
+                                {"index": 0, "id": 1, "status": "ABORTED"},
+                                {"index": 1, "id": 999, "status": "NOT_FOUND"}
+                            ]
+                        }
+                        """, true));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/studentsToRemoved.yml")
+    @Transactional
+    void 複数の学生をまとめて削除し要素ごとの結果を返すこと() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/students/_bulkDelete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 999, null]"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        {
+                            "mode": "bestEffort",
+                            "succeeded": 1,
+                            "results": [
+                                {"index": 0, "id": 1, "status": "DELETED"},
+                                {"index": 1, "id": 999, "status": "NOT_FOUND"},
+                                {"index": 2, "status": "INVALID", "errors": [{"field": "", "message": "リクエストの要素を入力してください"}]}
+                            ]
+                        }
+                        """, true));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/students.yml")
+    @Transactional
+    void 一括削除の際に存在しないmodeを指定した場合handleMethodArgumentTypeMismatchExceptionを返すこと() throws Exception {
+
+        final ZonedDateTime fixedClock = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneId.of("Asia/Tokyo"));
+
+        try (MockedStatic<ZonedDateTime> mockClock = Mockito.mockStatic(ZonedDateTime.class)) {
+            mockClock.when(ZonedDateTime::now).thenReturn(fixedClock);
+            mockMvc.perform(MockMvcRequestBuilders.post("/students/_bulkDelete?mode=all")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[1]"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                    .andExpect(MockMvcResultMatchers.content().json("""
+                            {
+                                "path": "/students/_bulkDelete",
+                                "status": "400",
+                                "message": "modeはallOrNothing・bestEffortのいずれかを指定してください",
+                                "timestamp": "2024/01/01 T00:00:00+0900［Asia/Tokyo］",
+                                "error": "Bad Request"
+                            }
+                            """));
+        }
+    }
+
+    /**
+     * 進級は別のスレッドでコミットしながら行うため、テストのデータもコミットしてからジョブの完了を待ちます。
+     */
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/gradeAdvancementJobs.yml"})
+    @ExpectedDataSet(value = "datasets/gradeAdvancement.yml", ignoreCols = "id")
+    void 学生の学年を進級させるジョブを開始し完了まで実行すること() throws Exception {
+
+        MvcResult accepted = mockMvc.perform(MockMvcRequestBuilders.patch("/students/grade/_batchUpdate"))
+                .andExpect(MockMvcResultMatchers.status().isAccepted())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.LOCATION, containsString("/students/grade/_batchUpdate/")))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.maxId").value(6))
+                .andReturn();
+        String location = URI.create(accepted.getResponse().getHeader(HttpHeaders.LOCATION)).getPath();
+
+        String status = null;
+        for (int i = 0; i < 100 && !"COMPLETED".equals(status); i++) {
+            Thread.sleep(100);
+            String content = mockMvc.perform(MockMvcRequestBuilders.get(location))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+            status = JsonPath.read(content, "$.status");
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get(location))
+                .andExpect(MockMvcResultMatchers.content().json("""
+                        {
+                             "status": "COMPLETED",
+                             "maxId": 6,
+                             "lastId": 6,
+                             "advanced": {
+                                 "一年生": 2,
+                                 "二年生": 2,
+                                 "三年生": 2
+                             }
                         }
                         """));
     }
 
+    @ParameterizedTest(name = "{2}")
+    @CsvSource({
+            "'/students/grade/_batchUpdate/999','{\"error\":\"Not Found\",\"timestamp\":\"2024/01/01 T00:00:00+0900［Asia/Tokyo］\",\"message\":\"grade advancement job not found\",\"status\":\"404\",\"path\":\"/students/grade/_batchUpdate/999\"}',存在しない進級ジョブを取得する際にhandleGradeAdvancementJobNotFoundExceptionを返す",
+            "'/students/grade/_batchUpdate/あ','{\"error\":\"Bad Request\",\"timestamp\":\"2024/01/01 T00:00:00+0900［Asia/Tokyo］\",\"message\":\"ジョブIDは数字で入力してください\",\"status\":\"400\",\"path\":\"/students/grade/_batchUpdate/%E3%81%82\"}',進級ジョブのIDが文字列の場合にhandleMethodArgumentTypeMismatchExceptionを返す"
+    })
+    @DataSet(value = "datasets/gradeAdvancementJobs.yml")
+    @Transactional
+    void 進級ジョブを取得する際の例外処理のレスポンスを返すこと(String requestPath, String response, String testName) throws Exception {
+
+        final ZonedDateTime fixedClock = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneId.of("Asia/Tokyo"));
+
+        try (MockedStatic<ZonedDateTime> mockClock = Mockito.mockStatic(ZonedDateTime.class)) {
+
+            mockClock.when(ZonedDateTime::now).thenReturn(fixedClock);
+
+            mockMvc.perform(MockMvcRequestBuilders.get(requestPath))
+                    .andExpect(MockMvcResultMatchers.content().json(response));
+        }
+    }
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @ExpectedDataSet(value = "datasets/studentsToRemoved.yml")
@@ -0,0 +1,87 @@
+package com.koichi.assignment8.mapper;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.spring.api.DBRider;
+import com.koichi.assignment8.entity.GradeAdvancementJob;
+import com.koichi.assignment8.entity.GradeAdvancementJobStatus;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DBRider
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class GradeAdvancementJobMapperTest {
+
+    @Autowired
+    GradeAdvancementJobMapper gradeAdvancementJobMapper;
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/gradeAdvancementJobs.yml"})
+    @Transactional
+    public void 完了していないジョブがない場合のみ現在の最大の学生IDまでを対象とするジョブを登録すること() {
+
+        gradeAdvancementJobMapper.insertJobIfAbsent();
+        Optional<GradeAdvancementJob> active = gradeAdvancementJobMapper.findActiveJobForUpdate();
+        assertThat(active).map(GradeAdvancementJob::getStatus).contains(GradeAdvancementJobStatus.RUNNING);
+        assertThat(active).map(GradeAdvancementJob::getMaxId).contains(6);
+        assertThat(active).map(GradeAdvancementJob::getLastId).contains(0);
+
+        gradeAdvancementJobMapper.insertJobIfAbsent();
+        assertThat(gradeAdvancementJobMapper.findActiveJob()).isEqualTo(active);
+        assertThat(gradeAdvancementJobMapper.findById(1)).map(GradeAdvancementJob::getStatus).contains(GradeAdvancementJobStatus.COMPLETED);
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/gradeAdvancementJobs.yml"})
+    @Transactional
+    public void 進捗を加えて最後の範囲でジョブを完了すること() {
+
+        gradeAdvancementJobMapper.insertJobIfAbsent();
+        int id = gradeAdvancementJobMapper.findActiveJob().orElseThrow().getId();
+
+        gradeAdvancementJobMapper.updateProgress(id, 3, 2L, 1L, 0L, false);
+        GradeAdvancementJob running = gradeAdvancementJobMapper.findByIdForUpdate(id).orElseThrow();
+        assertThat(running.getStatus()).isEqualTo(GradeAdvancementJobStatus.RUNNING);
+        assertThat(running.getLastId()).isEqualTo(3);
+        assertThat(running.getCompletedAt()).isNull();
+
+        gradeAdvancementJobMapper.updateProgress(id, 6, 0L, 1L, 2L, true);
+        GradeAdvancementJob completed = gradeAdvancementJobMapper.findById(id).orElseThrow();
+        assertThat(completed.getStatus()).isEqualTo(GradeAdvancementJobStatus.COMPLETED);
+        assertThat(completed.getLastId()).isEqualTo(6);
+        assertThat(completed.getAdvancedFirst()).isEqualTo(2L);
+        assertThat(completed.getAdvancedSecond()).isEqualTo(2L);
+        assertThat(completed.getAdvancedThird()).isEqualTo(2L);
+        assertThat(completed.getCompletedAt()).isNotNull();
+        assertThat(gradeAdvancementJobMapper.findActiveJob()).isEmpty();
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/gradeAdvancementJobs.yml"})
+    @Transactional
+    public void 実行中のジョブを中断し再開できること() {
+
+        gradeAdvancementJobMapper.insertJobIfAbsent();
+        int id = gradeAdvancementJobMapper.findActiveJob().orElseThrow().getId();
+
+        assertThat(gradeAdvancementJobMapper.failJob(id, "connection reset")).isEqualTo(1);
+        GradeAdvancementJob failed = gradeAdvancementJobMapper.findById(id).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(GradeAdvancementJobStatus.FAILED);
+        assertThat(failed.getError()).isEqualTo("connection reset");
+        assertThat(gradeAdvancementJobMapper.findActiveJob()).map(GradeAdvancementJob::getId).contains(id);
+
+        assertThat(gradeAdvancementJobMapper.resumeJob(id)).isEqualTo(1);
+        GradeAdvancementJob resumed = gradeAdvancementJobMapper.findById(id).orElseThrow();
+        assertThat(resumed.getStatus()).isEqualTo(GradeAdvancementJobStatus.RUNNING);
+        assertThat(resumed.getError()).isNull();
+        assertThat(gradeAdvancementJobMapper.resumeJob(id)).isZero();
+        assertThat(gradeAdvancementJobMapper.failJob(1, "connection reset")).isZero();
+    }
+}
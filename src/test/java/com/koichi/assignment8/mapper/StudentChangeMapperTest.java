@@ -0,0 +1,184 @@
+package com.koichi.assignment8.mapper;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.spring.api.DBRider;
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.GradeCount;
+import com.koichi.assignment8.entity.StudentChange;
+import com.koichi.assignment8.entity.StudentChangeType;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DBRider
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class StudentChangeMapperTest {
+
+    @Autowired
+    StudentChangeMapper studentChangeMapper;
+
+    @Autowired
+    StudentMapper studentMapper;
+
+    /**
+     * StudentService.sequenceChangesと同じ手順で、記録した変更に通し番号を振ります。
+     */
+    private void sequenceChanges() {
+        studentChangeMapper.lockSequencer();
+        studentChangeMapper.assignSequences(studentChangeMapper.findLatestSequence(), studentChangeMapper.findUnsequencedChangeIds(100));
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/studentChanges.yml"})
+    @Transactional
+    public void 指定した通し番号より後ろの変更を記録した順に指定した件数だけ取得すること() {
+
+        List<StudentChange> changes = studentChangeMapper.findChanges(1, 1);
+        assertThat(changes).extracting(StudentChange::getSequence, StudentChange::getStudentId, StudentChange::getType, StudentChange::getGrade, StudentChange::getVersion)
+                .containsExactly(tuple(2L, 1, StudentChangeType.UPDATED, Grade.SECOND, 2));
+        assertThat(studentChangeMapper.findChanges(2, 10)).extracting(StudentChange::getSequence, StudentChange::getType, StudentChange::getName)
+                .containsExactly(tuple(3L, StudentChangeType.DELETED, null));
+        assertThat(studentChangeMapper.findChanges(3, 10)).isEmpty();
+        assertThat(studentChangeMapper.findLatestSequence()).isEqualTo(3L);
+    }
+
+    /**
+     * 変更を記録した順(id)と通し番号を振った順が異なる場合も、通し番号の順に取得します。
+     */
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/studentChanges.yml"})
+    @Transactional
+    public void 通し番号を振るまで記録した変更を取得せず振った順に取得すること() {
+
+        studentChangeMapper.insertChange(2, StudentChangeType.CREATED);
+        studentChangeMapper.insertChange(3, StudentChangeType.CREATED);
+        assertThat(studentChangeMapper.findChanges(3, 10)).isEmpty();
+        assertThat(studentChangeMapper.findLatestSequence()).isEqualTo(3L);
+
+        assertThat(studentChangeMapper.lockSequencer()).isEqualTo(1);
+        List<Long> changeIds = studentChangeMapper.findUnsequencedChangeIds(10);
+        assertThat(changeIds).hasSize(2);
+        assertThat(studentChangeMapper.assignSequences(3, List.of(changeIds.get(1), changeIds.get(0)))).isEqualTo(2);
+
+        assertThat(studentChangeMapper.findUnsequencedChangeIds(10)).isEmpty();
+        assertThat(studentChangeMapper.findChanges(3, 10)).extracting(StudentChange::getSequence, StudentChange::getStudentId)
+                .containsExactly(tuple(4L, 3), tuple(5L, 2));
+        assertThat(studentChangeMapper.findLatestSequence()).isEqualTo(5L);
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/studentChanges.yml"})
+    @Transactional
+    public void 指定した日時より前の変更を削除し指定した通し番号の変更は残すこと() {
+
+        assertThat(studentChangeMapper.deleteChangesBefore(Instant.parse("2024-01-02T12:00:00Z"), 3, 1)).isEqualTo(1);
+        assertThat(studentChangeMapper.findChanges(0, 10)).extracting(StudentChange::getSequence).containsExactly(2L, 3L);
+
+        assertThat(studentChangeMapper.deleteChangesBefore(Instant.parse("2024-01-04T00:00:00Z"), 3, 10)).isEqualTo(1);
+        assertThat(studentChangeMapper.findChanges(0, 10)).extracting(StudentChange::getSequence).containsExactly(3L);
+        assertThat(studentChangeMapper.findLatestSequence()).isEqualTo(3L);
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/emptyStudentChanges.yml"})
+    @Transactional
+    public void 学生の現在のデータを変更履歴に記録すること() {
+
+        long latest = studentChangeMapper.findLatestSequence();
+        assertThat(studentChangeMapper.insertChange(1, StudentChangeType.CREATED)).isEqualTo(1);
+        assertThat(studentChangeMapper.insertChange(999, StudentChangeType.UPDATED)).isZero();
+        assertThat(studentChangeMapper.insertChanges(List.of(3, 2), StudentChangeType.UPDATED)).isEqualTo(2);
+        sequenceChanges();
+
+        assertThat(studentChangeMapper.findChanges(latest, 10))
+                .extracting(StudentChange::getStudentId, StudentChange::getType, StudentChange::getName, StudentChange::getGrade, StudentChange::getBirthPlace, StudentChange::getVersion)
+                .containsExactly(
+                        tuple(1, StudentChangeType.CREATED, "清⽔圭吾", Grade.FIRST, "大分県", 1),
+                        tuple(2, StudentChangeType.UPDATED, "田中圭", Grade.FIRST, "福岡県", 1),
+                        tuple(3, StudentChangeType.UPDATED, "岡崎徹", Grade.SECOND, "大分県", 1));
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/emptyStudentChanges.yml"})
+    @Transactional
+    public void 削除した複数の学生を指定した順に変更履歴へまとめて記録すること() {
+
+        long latest = studentChangeMapper.findLatestSequence();
+        assertThat(studentChangeMapper.insertDeletedChanges(List.of(3, 1))).isEqualTo(2);
+        sequenceChanges();
+
+        assertThat(studentChangeMapper.findChanges(latest, 10))
+                .extracting(StudentChange::getStudentId, StudentChange::getType, StudentChange::getName, StudentChange::getVersion)
+                .containsExactly(
+                        tuple(3, StudentChangeType.DELETED, null, null),
+                        tuple(1, StudentChangeType.DELETED, null, null));
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/emptyStudentChanges.yml"})
+    @Transactional
+    public void 進級させる学生の進級後の学年とバージョンを変更履歴に記録すること() {
+
+        long latest = studentChangeMapper.findLatestSequence();
+        assertThat(studentChangeMapper.insertGradeAdvancementChanges(0, 6)).isEqualTo(6);
+        studentMapper.updateGrade(0, 6);
+        sequenceChanges();
+
+        List<StudentChange> changes = studentChangeMapper.findChanges(latest, 10);
+        assertThat(changes).extracting(StudentChange::getStudentId, StudentChange::getType, StudentChange::getGrade, StudentChange::getVersion)
+                .containsExactly(
+                        tuple(1, StudentChangeType.UPDATED, Grade.SECOND, 2),
+                        tuple(2, StudentChangeType.UPDATED, Grade.SECOND, 2),
+                        tuple(3, StudentChangeType.UPDATED, Grade.THIRD, 2),
+                        tuple(4, StudentChangeType.UPDATED, Grade.THIRD, 2),
+                        tuple(5, StudentChangeType.UPDATED, Grade.GRADUATE, 2),
+                        tuple(6, StudentChangeType.UPDATED, Grade.GRADUATE, 2));
+        for (StudentChange change : changes) {
+            assertThat(studentMapper.findVersionById(change.getStudentId()))
+                    .hasValueSatisfying(version -> assertThat(version.getVersion()).isEqualTo(change.getVersion()));
+        }
+    }
+
+    /**
+     * 進級の前に記録した別の変更は、学生の現在のバージョンで記録されているため数えません。
+     */
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/emptyStudentChanges.yml"})
+    @Transactional
+    public void 進級させる学生として記録した変更を進級前の学年ごとに数えること() {
+
+        studentChangeMapper.insertChange(1, StudentChangeType.UPDATED);
+        assertThat(studentChangeMapper.insertGradeAdvancementChanges(0, 6)).isEqualTo(6);
+        assertThat(studentChangeMapper.countGradeAdvancementChanges(0, 6)).containsExactlyInAnyOrder(
+                new GradeCount(Grade.FIRST, 2L),
+                new GradeCount(Grade.SECOND, 2L),
+                new GradeCount(Grade.THIRD, 2L)
+        );
+        assertThat(studentChangeMapper.countGradeAdvancementChanges(2, 4)).containsExactlyInAnyOrder(
+                new GradeCount(Grade.SECOND, 2L)
+        );
+    }
+
+    @Test
+    @DataSet(value = {"datasets/students.yml", "datasets/emptyStudentChanges.yml"})
+    @Transactional
+    public void 削除した学生はidのみを変更履歴に記録すること() {
+
+        long latest = studentChangeMapper.findLatestSequence();
+        studentChangeMapper.insertDeletedChange(1);
+        sequenceChanges();
+
+        assertThat(studentChangeMapper.findChanges(latest, 10))
+                .extracting(StudentChange::getStudentId, StudentChange::getType, StudentChange::getName, StudentChange::getGrade, StudentChange::getVersion)
+                .containsExactly(tuple(1, StudentChangeType.DELETED, null, null, null));
+    }
+}
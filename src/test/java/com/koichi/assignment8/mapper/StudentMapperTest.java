@@ -3,14 +3,25 @@ package com.koichi.assignment8.mapper;
 import com.github.database.rider.core.api.dataset.DataSet;
 import com.github.database.rider.core.api.dataset.ExpectedDataSet;
 import com.github.database.rider.spring.api.DBRider;
+import com.koichi.assignment8.entity.Grade;
 import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.entity.StudentVersion;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -20,9 +31,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 class StudentMapperTest {
 
+    private static final String ALL_COLUMNS = "id, name, grade, birth_place, version, updated_at";
+
     @Autowired
     StudentMapper studentMapper;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    SqlSessionFactory sqlSessionFactory;
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @Transactional
@@ -30,7 +49,7 @@ class StudentMapperTest {
 
         Optional<Student> findById = studentMapper.findById(1);
         assertThat(findById).contains(
-                new Student(1, "清⽔圭吾", "一年生", "大分県")
+                new Student(1, "清⽔圭吾", Grade.FIRST, "大分県")
         );
     }
 
@@ -43,31 +62,73 @@ class StudentMapperTest {
         assertThat(findById).isEmpty();
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 指定した複数のIDに該当する学生を一度に取得すること() {
+
+        List<Student> students = studentMapper.findByIds(List.of(5, 1, 999));
+        assertThat(students).containsExactlyInAnyOrder(
+                new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"),
+                new Student(5, "溝谷望", Grade.THIRD, "熊本県")
+        );
+        assertThat(students).allSatisfy(student -> assertThat(student.getVersion()).isEqualTo(1));
+    }
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @Transactional
     public void 全ての学生を取得すること() {
 
-        List<Student> findAllStudents = studentMapper.findAllStudents();
+        List<Student> findAllStudents = studentMapper.findStudents(ALL_COLUMNS, null, null, null, 0, 100);
         assertThat(findAllStudents).contains(
-                new Student(1, "清⽔圭吾", "一年生", "大分県"),
-                new Student(2, "田中圭", "一年生", "福岡県"),
-                new Student(3, "岡崎徹", "二年生", "大分県"),
-                new Student(4, "溝口光一", "二年生", "熊本県"),
-                new Student(5, "溝谷望", "三年生", "熊本県"),
-                new Student(6, "安藤孝弘", "三年生", "福岡県")
+                new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"),
+                new Student(2, "田中圭", Grade.FIRST, "福岡県"),
+                new Student(3, "岡崎徹", Grade.SECOND, "大分県"),
+                new Student(4, "溝口光一", Grade.SECOND, "熊本県"),
+                new Student(5, "溝谷望", Grade.THIRD, "熊本県"),
+                new Student(6, "安藤孝弘", Grade.THIRD, "福岡県")
         );
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 指定したidより後ろの学生をid順に指定した件数だけ取得すること() {
+
+        List<Student> findAllStudents = studentMapper.findStudents(ALL_COLUMNS, null, null, null, 2, 2);
+        assertThat(findAllStudents).containsExactly(
+                new Student(3, "岡崎徹", Grade.SECOND, "大分県"),
+                new Student(4, "溝口光一", Grade.SECOND, "熊本県")
+        );
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 全ての学生をカーソルでid順に1件ずつ取得すること() throws Exception {
+
+        try (Cursor<Student> cursor = studentMapper.streamAllStudents()) {
+            assertThat(cursor).containsExactly(
+                    new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"),
+                    new Student(2, "田中圭", Grade.FIRST, "福岡県"),
+                    new Student(3, "岡崎徹", Grade.SECOND, "大分県"),
+                    new Student(4, "溝口光一", Grade.SECOND, "熊本県"),
+                    new Student(5, "溝谷望", Grade.THIRD, "熊本県"),
+                    new Student(6, "安藤孝弘", Grade.THIRD, "福岡県")
+            );
+        }
+    }
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @Transactional
     public void 一年生の学生をクエリパラメータの検索を使用して取得すること() {
 
-        List<Student> findByGrade = studentMapper.findByGrade("一年生");
+        List<Student> findByGrade = studentMapper.findStudents(ALL_COLUMNS, Grade.FIRST, null, null, 0, 100);
         assertThat(findByGrade).contains(
-                new Student(1, "清⽔圭吾", "一年生", "大分県"),
-                new Student(2, "田中圭", "一年生", "福岡県")
+                new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"),
+                new Student(2, "田中圭", Grade.FIRST, "福岡県")
         );
     }
 
@@ -76,10 +137,10 @@ class StudentMapperTest {
     @Transactional
     public void 人名の頭文字が溝である学生をクエリパラメータの検索を使用して複数取得すること() {
 
-        List<Student> getByStartWith = studentMapper.findByStartWith("溝");
+        List<Student> getByStartWith = studentMapper.findStudents(ALL_COLUMNS, null, "溝", null, 0, 100);
         assertThat(getByStartWith).contains(
-                new Student(4, "溝口光一", "二年生", "熊本県"),
-                new Student(5, "溝谷望", "三年生", "熊本県")
+                new Student(4, "溝口光一", Grade.SECOND, "熊本県"),
+                new Student(5, "溝谷望", Grade.THIRD, "熊本県")
         );
     }
 
@@ -88,11 +149,124 @@ class StudentMapperTest {
     @Transactional
     public void 大分県出身の学生をクエリパラメータの検索を使用して取得すること() {
 
-        List<Student> findByBirthPlace = studentMapper.findByBirthPlace("大分県");
+        List<Student> findByBirthPlace = studentMapper.findStudents(ALL_COLUMNS, null, null, "大分県", 0, 100);
         assertThat(findByBirthPlace).contains(
-                new Student(1, "清⽔圭吾", "一年生", "大分県"),
-                new Student(3, "岡崎徹", "二年生", "大分県")
+                new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"),
+                new Student(3, "岡崎徹", Grade.SECOND, "大分県")
+        );
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 複数のカラムを指定した場合は全ての条件を満たす学生のみ取得すること() {
+
+        assertThat(studentMapper.findStudents(ALL_COLUMNS, Grade.SECOND, "溝", "熊本県", 0, 100)).containsExactly(
+                new Student(4, "溝口光一", Grade.SECOND, "熊本県")
         );
+        assertThat(studentMapper.findStudents(ALL_COLUMNS, Grade.FIRST, null, "大分県", 0, 100)).containsExactly(
+                new Student(1, "清⽔圭吾", Grade.FIRST, "大分県")
+        );
+        assertThat(studentMapper.findStudents(ALL_COLUMNS, null, "溝", "熊本県", 4, 100)).containsExactly(
+                new Student(5, "溝谷望", Grade.THIRD, "熊本県")
+        );
+        assertThat(studentMapper.findStudents(ALL_COLUMNS, Grade.THIRD, null, "大分県", 0, 100)).isEmpty();
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 指定したカラムのみを取得すること() {
+
+        assertThat(studentMapper.findStudents("id, name", Grade.FIRST, null, null, 0, 100)).containsExactly(
+                new Student(1, "清⽔圭吾", null, null),
+                new Student(2, "田中圭", null, null)
+        );
+        assertThat(studentMapper.findStudents("id, birth_place", null, "溝", null, 0, 100)).containsExactly(
+                new Student(4, null, null, "熊本県"),
+                new Student(5, null, null, "熊本県")
+        );
+    }
+
+    /**
+     * Mapperが指定したパラメータで実際に発行するSQLの実行計画を取得します。
+     */
+    private Map<String, Object> explain(String statementId, Map<String, Object> parameters) {
+        BoundSql boundSql = sqlSessionFactory.getConfiguration()
+                .getMappedStatement(StudentMapper.class.getName() + "." + statementId)
+                .getBoundSql(parameters);
+        Object[] args = boundSql.getParameterMappings().stream()
+                .map(mapping -> parameters.get(mapping.getProperty()))
+                .map(value -> value instanceof Grade ? ((Grade) value).getCode() : value)
+                .toArray();
+        return jdbcTemplate.queryForMap("EXPLAIN " + boundSql.getSql(), args);
+    }
+
+    /**
+     * 件数の少ないデータセットではオプティマイザがインデックスを使わずに全件を読む場合があるため、検索条件に一致しない学生を追加し、
+     * ANALYZE TABLEで統計情報を更新します。ANALYZE TABLEは暗黙にコミットするため、テストのトランザクションは使用せず、追加した学生は最後に削除します。
+     */
+    private void seedUnmatchedStudents() {
+        jdbcTemplate.update("""
+                INSERT INTO students (name, grade, birth_place)
+                WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < 1000)
+                SELECT CONCAT('山田', n), 4, '東京都' FROM seq
+                """);
+        jdbcTemplate.queryForList("ANALYZE TABLE students");
+    }
+
+    @ParameterizedTest(name = "{4}")
+    @CsvSource({
+            "FIRST,,,idx_students_grade,学年での検索に学年のインデックスを使用すること",
+            ",溝,,idx_students_name,人名の頭文字での検索に名前のインデックスを使用すること",
+            ",,大分県,idx_students_birth_place,出身地での検索に出身地のインデックスを使用すること",
+            "FIRST,,大分県,idx_students_grade_birth_place,学年と出身地を組み合わせた検索に複合インデックスを使用すること"
+    })
+    @DataSet(value = "datasets/students.yml")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void クエリパラメータの検索でインデックスを使用すること(Grade grade, String startsWith, String birthPlace, String indexName, String testName) {
+
+        seedUnmatchedStudents();
+        try {
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("columns", ALL_COLUMNS);
+            parameters.put("grade", grade);
+            parameters.put("startsWith", startsWith);
+            parameters.put("birthPlace", birthPlace);
+            parameters.put("after", 0);
+            parameters.put("limit", 101);
+            Map<String, Object> explain = explain("findStudents", parameters);
+            assertThat(explain.get("key")).isEqualTo(indexName);
+            assertThat(explain.get("type")).isIn("ref", "range");
+        } finally {
+            jdbcTemplate.update("DELETE FROM students WHERE birth_place = '東京都'");
+        }
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 名前と出身地の全文検索に全文検索インデックスを使用すること() {
+
+        Map<String, Object> explain = explain("searchStudents", Map.of("columns", ALL_COLUMNS, "query", "+溝*", "offset", 0, "limit", 101));
+        assertThat(explain.get("key")).isEqualTo("ftx_students_name_birth_place");
+        assertThat(explain.get("type")).isEqualTo("fulltext");
+    }
+
+    /**
+     * 全文検索インデックスはコミット時に更新されるため、データセットをコミットしてから検索します。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 名前と出身地に指定した語を含む学生を全文検索で取得すること() {
+
+        assertThat(studentMapper.searchStudents(ALL_COLUMNS, "+\"口光\"", 0, 100)).extracting(Student::getId).containsExactly(4);
+        assertThat(studentMapper.searchStudents(ALL_COLUMNS, "+溝*", 0, 100)).extracting(Student::getId).containsExactlyInAnyOrder(4, 5);
+        assertThat(studentMapper.searchStudents(ALL_COLUMNS, "+\"大分\"", 0, 100)).extracting(Student::getId).containsExactly(1, 3);
+        assertThat(studentMapper.searchStudents(ALL_COLUMNS, "+\"大分\" +\"岡崎\"", 0, 100)).extracting(Student::getId).containsExactly(3);
+        assertThat(studentMapper.searchStudents(ALL_COLUMNS, "+\"大分\"", 1, 1)).extracting(Student::getId).containsExactly(3);
+        assertThat(studentMapper.searchStudents(ALL_COLUMNS, "+\"大阪\"", 0, 100)).isEmpty();
     }
 
     @Test
@@ -101,18 +275,60 @@ class StudentMapperTest {
     @Transactional
     public void 新しい学生を登録すること() {
 
-        Student insertStudent = new Student("中田健太", "一年生", "福岡県");
+        Student insertStudent = new Student("中田健太", Grade.FIRST, "福岡県");
         studentMapper.insertStudent(insertStudent);
     }
 
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/studentsToBulkRegister.yml", ignoreCols = "id")
+    @Transactional
+    public void 複数の学生をまとめて登録し採番されたidが設定されること() {
+
+        List<Student> insertStudents = List.of(
+                new Student("中田健太", Grade.FIRST, "福岡県"),
+                new Student("森本翔", Grade.SECOND, "熊本県"));
+        studentMapper.insertStudents(insertStudents);
+        assertThat(insertStudents).extracting(Student::getId).doesNotContainNull().doesNotHaveDuplicates();
+    }
+
     @Test
     @DataSet(value = "datasets/students.yml")
     @ExpectedDataSet(value = "datasets/studentsToRenewing.yml")
     @Transactional
     public void IDに該当する学生のデータを更新出来ること() {
 
-        Student renewingStudent = new Student(1, "城野健一", "二年生", "福岡県");
-        studentMapper.updateStudent(renewingStudent);
+        Student renewingStudent = new Student(1, "城野健一", Grade.SECOND, "福岡県");
+        int updated = studentMapper.updateStudent(renewingStudent, null);
+        assertThat(updated).isEqualTo(1);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 指定したバージョンが一致する場合のみ学生のデータを更新すること() {
+
+        assertThat(studentMapper.updateStudent(new Student(1, "城野健一", Grade.SECOND, "福岡県"), 2)).isZero();
+        assertThat(studentMapper.updateStudent(new Student(1, "城野健一", Grade.SECOND, "福岡県"), 1)).isEqualTo(1);
+        assertThat(studentMapper.updateStudent(new Student(1, "城野健一", Grade.SECOND, "福岡県"), 1)).isZero();
+        assertThat(studentMapper.findVersionById(1)).map(StudentVersion::getVersion).contains(2);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 学生のデータを更新するとバージョンが1つ増えること() {
+
+        Optional<StudentVersion> before = studentMapper.findVersionById(1);
+        assertThat(before).map(StudentVersion::getVersion).contains(1);
+        assertThat(before).map(StudentVersion::getUpdatedAt).isPresent();
+
+        studentMapper.updateStudent(new Student(1, "城野健一", Grade.SECOND, "福岡県"), null);
+        assertThat(studentMapper.findVersionById(1)).map(StudentVersion::getVersion).contains(2);
+
+        studentMapper.updateGrade(0, 1);
+        assertThat(studentMapper.findVersionById(1)).map(StudentVersion::getVersion).contains(3);
+        assertThat(studentMapper.findVersionById(999)).isEmpty();
     }
 
     @Test
@@ -121,9 +337,21 @@ class StudentMapperTest {
     @Transactional
     public void 学生の学年を進級させること() {
 
-        studentMapper.updateGrade("卒業生", "三年生");
-        studentMapper.updateGrade("三年生", "二年生");
-        studentMapper.updateGrade("二年生", "一年生");
+        int updated = studentMapper.updateGrade(0, 6);
+        assertThat(updated).isEqualTo(6);
+    }
+
+    @Test
+    @Transactional
+    public void gradesテーブルの学年コードと学年名がGradeと一致すること() {
+
+        List<Map<String, Object>> grades = jdbcTemplate.queryForList("SELECT code, name FROM grades ORDER BY code");
+        assertThat(grades).hasSize(Grade.values().length);
+        for (Map<String, Object> grade : grades) {
+            Grade expected = Grade.fromCode(((Number) grade.get("code")).intValue());
+            assertThat(expected).isNotNull();
+            assertThat(grade.get("name")).isEqualTo(expected.getLabel());
+        }
     }
 
     @Test
@@ -132,6 +360,17 @@ class StudentMapperTest {
     @Transactional
     public void IDに該当する学生のデータを削除出来ること() {
 
-        studentMapper.deleteStudent(1);
+        int deleted = studentMapper.deleteStudent(1);
+        assertThat(deleted).isEqualTo(1);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @ExpectedDataSet(value = "datasets/students.yml")
+    @Transactional
+    public void IDに該当する学生がいない場合は更新も削除もせず0件を返すこと() {
+
+        assertThat(studentMapper.updateStudent(new Student(999, "城野健一", Grade.SECOND, "福岡県"), null)).isZero();
+        assertThat(studentMapper.deleteStudent(999)).isZero();
     }
 }
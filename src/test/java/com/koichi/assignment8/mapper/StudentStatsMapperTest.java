@@ -0,0 +1,109 @@
+package com.koichi.assignment8.mapper;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.spring.api.DBRider;
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.entity.StudentStat;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DBRider
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class StudentStatsMapperTest {
+
+    @Autowired
+    StudentStatsMapper studentStatsMapper;
+
+    @Autowired
+    StudentMapper studentMapper;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 学年と出身地の組み合わせごとの学生の人数を学年と出身地の順に取得すること() {
+
+        assertThat(studentStatsMapper.findStats()).containsExactly(
+                new StudentStat(Grade.FIRST, "大分県", 1L),
+                new StudentStat(Grade.FIRST, "福岡県", 1L),
+                new StudentStat(Grade.SECOND, "大分県", 1L),
+                new StudentStat(Grade.SECOND, "熊本県", 1L),
+                new StudentStat(Grade.THIRD, "熊本県", 1L),
+                new StudentStat(Grade.THIRD, "福岡県", 1L)
+        );
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 学生の登録と更新と削除に合わせて人数が増減すること() {
+
+        studentMapper.insertStudent(new Student("佐藤花子", Grade.FIRST, "大分県"));
+        studentMapper.updateStudent(new Student(2, "田中圭", Grade.GRADUATE, "福岡県"), null);
+        studentMapper.deleteStudent(5);
+
+        List<StudentStat> stats = studentStatsMapper.findStats();
+        assertThat(stats).containsExactly(
+                new StudentStat(Grade.FIRST, "大分県", 2L),
+                new StudentStat(Grade.SECOND, "大分県", 1L),
+                new StudentStat(Grade.SECOND, "熊本県", 1L),
+                new StudentStat(Grade.THIRD, "福岡県", 1L),
+                new StudentStat(Grade.GRADUATE, "福岡県", 1L)
+        );
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional
+    public void 人数の増減を集計テーブルにまとめても人数が変わらないこと() {
+
+        studentMapper.insertStudent(new Student("佐藤花子", Grade.FIRST, "大分県"));
+        studentMapper.deleteStudent(5);
+        List<StudentStat> stats = studentStatsMapper.findStats();
+
+        List<Long> deltaIds;
+        while (!(deltaIds = studentStatsMapper.lockDeltaIds(1000)).isEmpty()) {
+            studentStatsMapper.addDeltas(deltaIds);
+            assertThat(studentStatsMapper.deleteDeltas(deltaIds)).isEqualTo(deltaIds.size());
+        }
+
+        assertThat(studentStatsMapper.findStats()).isEqualTo(stats).contains(new StudentStat(Grade.FIRST, "大分県", 2L));
+    }
+
+    /**
+     * 集計行を更新するトリガーでは、後から登録するトランザクションが先のトランザクションのコミットまで集計行のロックを待ちます。
+     * 先のトランザクションの中で別のトランザクションの登録を待つため、ロックを待つ場合はタイムアウトで失敗します。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 同じ学年と出身地の学生を登録するトランザクション同士が互いを待たないこと() {
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            studentMapper.insertStudent(new Student("佐藤花子", Grade.FIRST, "大分県"));
+            CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                            concurrentStatus -> studentMapper.insertStudent(new Student("中田健太", Grade.FIRST, "大分県"))))
+                    .orTimeout(10, TimeUnit.SECONDS)
+                    .join();
+        });
+
+        assertThat(studentStatsMapper.findStats()).contains(new StudentStat(Grade.FIRST, "大分県", 3L));
+    }
+}
@@ -0,0 +1,136 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.GradeAdvancementJob;
+import com.koichi.assignment8.entity.GradeAdvancementJobStatus;
+import com.koichi.assignment8.entity.GradeCount;
+import com.koichi.assignment8.excption.GradeAdvancementJobNotFoundException;
+import com.koichi.assignment8.mapper.GradeAdvancementJobMapper;
+import com.koichi.assignment8.mapper.StudentChangeMapper;
+import com.koichi.assignment8.mapper.StudentMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class GradeAdvancementServiceTest {
+
+    private static final Instant CREATED_AT = Instant.parse("2024-04-01T00:00:00Z");
+
+    @InjectMocks
+    GradeAdvancementService gradeAdvancementService;
+
+    @Mock
+    GradeAdvancementJobMapper gradeAdvancementJobMapper;
+
+    @Mock
+    StudentMapper studentMapper;
+
+    @Mock
+    StudentChangeMapper studentChangeMapper;
+
+    @Mock
+    RecentStudentWrites recentStudentWrites;
+
+    private static GradeAdvancementJob job(GradeAdvancementJobStatus status, int maxId, int lastId) {
+        return new GradeAdvancementJob(1, status, maxId, lastId, 0L, 0L, 0L, null, CREATED_AT, CREATED_AT, null);
+    }
+
+    @Test
+    public void 完了していないジョブがない場合は新しいジョブを開始すること() {
+
+        GradeAdvancementJob running = job(GradeAdvancementJobStatus.RUNNING, 2500, 0);
+        doReturn(1).when(gradeAdvancementJobMapper).insertJobIfAbsent();
+        doReturn(Optional.of(running)).when(gradeAdvancementJobMapper).findActiveJobForUpdate();
+        assertThat(gradeAdvancementService.startJob()).isEqualTo(running);
+        verify(gradeAdvancementJobMapper, never()).resumeJob(1);
+    }
+
+    @Test
+    public void 中断したジョブがある場合はそのジョブを再開すること() {
+
+        doReturn(0).when(gradeAdvancementJobMapper).insertJobIfAbsent();
+        doReturn(Optional.of(job(GradeAdvancementJobStatus.FAILED, 2500, 1000))).when(gradeAdvancementJobMapper).findActiveJobForUpdate();
+        doReturn(1).when(gradeAdvancementJobMapper).resumeJob(1);
+        GradeAdvancementJob resumed = job(GradeAdvancementJobStatus.RUNNING, 2500, 1000);
+        doReturn(Optional.of(resumed)).when(gradeAdvancementJobMapper).findById(1);
+        assertThat(gradeAdvancementService.startJob()).isEqualTo(resumed);
+    }
+
+    @Test
+    public void 進級が完了した最後の学生IDの続きからchunksize件の範囲を進級させること() {
+
+        doReturn(Optional.of(job(GradeAdvancementJobStatus.RUNNING, 2500, 1000))).when(gradeAdvancementJobMapper).findByIdForUpdate(1);
+        doReturn(3).when(studentChangeMapper).insertGradeAdvancementChanges(1000, 2000);
+        doReturn(List.of(new GradeCount(Grade.FIRST, 2L), new GradeCount(Grade.THIRD, 1L))).when(studentChangeMapper).countGradeAdvancementChanges(1000, 2000);
+        assertThat(gradeAdvancementService.advanceChunk(1)).isTrue();
+        InOrder inOrder = inOrder(studentChangeMapper, studentMapper, gradeAdvancementJobMapper);
+        inOrder.verify(studentChangeMapper, times(1)).insertGradeAdvancementChanges(1000, 2000);
+        inOrder.verify(studentChangeMapper, times(1)).countGradeAdvancementChanges(1000, 2000);
+        inOrder.verify(studentMapper, times(1)).updateGrade(1000, 2000);
+        inOrder.verify(gradeAdvancementJobMapper, times(1)).updateProgress(1, 2000, 2L, 0L, 1L, false);
+        verify(recentStudentWrites, times(1)).recordAll();
+    }
+
+    @Test
+    public void 開始時点の最大の学生IDまで進級させた場合はジョブを完了すること() {
+
+        doReturn(Optional.of(job(GradeAdvancementJobStatus.RUNNING, 2500, 2000))).when(gradeAdvancementJobMapper).findByIdForUpdate(1);
+        doReturn(3).when(studentChangeMapper).insertGradeAdvancementChanges(2000, 2500);
+        doReturn(List.of(new GradeCount(Grade.SECOND, 3L))).when(studentChangeMapper).countGradeAdvancementChanges(2000, 2500);
+        assertThat(gradeAdvancementService.advanceChunk(1)).isFalse();
+        verify(studentMapper, times(1)).updateGrade(2000, 2500);
+        verify(gradeAdvancementJobMapper, times(1)).updateProgress(1, 2500, 0L, 3L, 0L, true);
+    }
+
+    @Test
+    public void 範囲内に進級対象の学生がいない場合は人数を数えずに進捗のみを記録すること() {
+
+        doReturn(Optional.of(job(GradeAdvancementJobStatus.RUNNING, 2500, 2000))).when(gradeAdvancementJobMapper).findByIdForUpdate(1);
+        doReturn(0).when(studentChangeMapper).insertGradeAdvancementChanges(2000, 2500);
+        assertThat(gradeAdvancementService.advanceChunk(1)).isFalse();
+        verify(studentChangeMapper, never()).countGradeAdvancementChanges(2000, 2500);
+        verify(studentMapper, never()).updateGrade(2000, 2500);
+        verify(gradeAdvancementJobMapper, times(1)).updateProgress(1, 2500, 0L, 0L, 0L, true);
+    }
+
+    @Test
+    public void 実行中でないジョブの場合は学生を進級させないこと() {
+
+        doReturn(Optional.of(job(GradeAdvancementJobStatus.FAILED, 2500, 1000))).when(gradeAdvancementJobMapper).findByIdForUpdate(1);
+        assertThat(gradeAdvancementService.advanceChunk(1)).isFalse();
+        verifyNoInteractions(studentMapper, studentChangeMapper, recentStudentWrites);
+    }
+
+    @Test
+    public void 中断したジョブの原因を255文字までに切り詰めて記録すること() {
+
+        gradeAdvancementService.failJob(1, "x".repeat(300));
+        verify(gradeAdvancementJobMapper, times(1)).failJob(1, "x".repeat(255));
+    }
+
+    @Test
+    public void IDに該当するジョブがない時にgradeadvancementjobnotfoundというメッセージが返却されること() {
+
+        doReturn(Optional.empty()).when(gradeAdvancementJobMapper).findById(999);
+        assertThatThrownBy(() -> gradeAdvancementService.findJob(999))
+                .isInstanceOf(GradeAdvancementJobNotFoundException.class)
+                .hasMessage("grade advancement job not found");
+    }
+}
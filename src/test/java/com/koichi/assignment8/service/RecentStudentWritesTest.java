@@ -0,0 +1,62 @@
+package com.koichi.assignment8.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentStudentWritesTest {
+
+    RecentStudentWrites recentStudentWrites = new RecentStudentWrites(5, 5000, 1);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void 記録した学生のみを直前に変更した学生として扱うこと() {
+        recentStudentWrites.record(List.of(1, 2));
+        assertThat(recentStudentWrites.isRecent(1)).isTrue();
+        assertThat(recentStudentWrites.isRecent(2)).isTrue();
+        assertThat(recentStudentWrites.isRecent(3)).isFalse();
+    }
+
+    @Test
+    public void 全ての学生を記録した場合は全ての学生を直前に変更した学生として扱うこと() {
+        assertThat(recentStudentWrites.isRecent(3)).isFalse();
+        recentStudentWrites.recordAll();
+        assertThat(recentStudentWrites.isRecent(3)).isTrue();
+    }
+
+    @Test
+    public void 遅延の上限と検証の間隔が経過した変更は記録から外れること() throws InterruptedException {
+        RecentStudentWrites shortWindow = new RecentStudentWrites(0, 50, 0);
+        shortWindow.record(List.of(1));
+        shortWindow.recordAll();
+        assertThat(shortWindow.isRecent(1)).isTrue();
+        Thread.sleep(200);
+        assertThat(shortWindow.isRecent(1)).isFalse();
+        assertThat(shortWindow.isRecent(2)).isFalse();
+    }
+
+    @Test
+    public void トランザクション内の変更はコミットの直前から記録し取り消した場合は記録しないこと() {
+        TransactionSynchronizationManager.initSynchronization();
+        recentStudentWrites.record(List.of(1));
+        assertThat(recentStudentWrites.isRecent(1)).isFalse();
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.beforeCommit(false));
+        assertThat(recentStudentWrites.isRecent(1)).isTrue();
+
+        recentStudentWrites.record(List.of(2));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertThat(recentStudentWrites.isRecent(2)).isFalse();
+    }
+}
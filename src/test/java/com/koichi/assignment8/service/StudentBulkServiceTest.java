@@ -0,0 +1,61 @@
+package com.koichi.assignment8.service;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.spring.api.DBRider;
+import com.koichi.assignment8.CacheConfig;
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.mapper.StudentMapper;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * StudentBulkServiceのチャンクごとのトランザクションを、実際のデータベースで確認します。
+ * チャンクごとのコミット・取り消しを確認するため、テストのトランザクションは使用しません。
+ */
+@DBRider
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CacheConfig.class, StudentBulkService.class, RecentStudentWrites.class})
+@TestPropertySource(properties = "students.bulk.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StudentBulkServiceTest {
+
+    @Autowired
+    StudentBulkService studentBulkService;
+
+    @Autowired
+    StudentMapper studentMapper;
+
+    /**
+     * 名前がカラムの長さを超える要素で、2つ目のチャンクのバッチがデータベースのエラーになります。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void bestEffortでデータベースのエラーが発生したチャンクのみを取り消し他のチャンクは確定すること() {
+
+        List<StudentBulkUpdate> updates = List.of(
+                new StudentBulkUpdate(new Student(1, "清水圭吾", Grade.SECOND, "大分県"), null),
+                new StudentBulkUpdate(new Student(2, "田中圭", Grade.SECOND, "福岡県"), null),
+                new StudentBulkUpdate(new Student(3, "岡崎徹", Grade.THIRD, "大分県"), null),
+                new StudentBulkUpdate(new Student(4, "溝口光一".repeat(6), Grade.THIRD, "熊本県"), null));
+
+        assertThat(studentBulkService.updateStudents(updates, BulkMode.BEST_EFFORT))
+                .containsExactly(BulkItemStatus.UPDATED, BulkItemStatus.UPDATED, BulkItemStatus.FAILED, BulkItemStatus.FAILED);
+        assertThat(studentMapper.findByIds(List.of(1, 2, 3, 4))).containsExactlyInAnyOrder(
+                new Student(1, "清水圭吾", Grade.SECOND, "大分県"),
+                new Student(2, "田中圭", Grade.SECOND, "福岡県"),
+                new Student(3, "岡崎徹", Grade.SECOND, "大分県"),
+                new Student(4, "溝口光一", Grade.SECOND, "熊本県"));
+    }
+}
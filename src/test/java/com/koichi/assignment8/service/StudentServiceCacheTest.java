@@ -0,0 +1,234 @@
+package com.koichi.assignment8.service;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.spring.api.DBRider;
+import com.koichi.assignment8.CacheConfig;
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.Student;
+import com.koichi.assignment8.excption.StudentNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * StudentService・StudentBulkServiceの学生のキャッシュとCacheConfigの組み合わせを、実際のデータベースで確認します。
+ * キャッシュの破棄はコミット後に行われるため、テストのトランザクションは使用せず、TransactionTemplateでコミット・取り消しを行います。
+ * データベースに問い合わせたかどうかは、キャッシュを経由せずにJdbcTemplateで行を書き換え、取得結果に反映されるかで判定します。
+ */
+@DBRider
+@MybatisTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CacheConfig.class, StudentService.class, StudentBulkService.class, RecentStudentWrites.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StudentServiceCacheTest {
+
+    @Autowired
+    StudentService studentService;
+
+    @Autowired
+    StudentBulkService studentBulkService;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        cache().clear();
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheConfig.STUDENTS_CACHE);
+    }
+
+    private void renameBehindCache(int id, String name) {
+        jdbcTemplate.update("UPDATE students SET name = ? WHERE id = ?", name, id);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 同じIDの学生を二回取得した場合二回目はデータベースに問い合わせないこと() {
+
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"));
+        renameBehindCache(1, "清水圭吾");
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"));
+    }
+
+    /**
+     * 存在しないidはStudentNotFoundExceptionになりますが、トランザクションを取り消さないためキャッシュへの保存は行われます。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 存在しないIDもキャッシュし二回目はデータベースに問い合わせないこと() {
+
+        assertThatThrownBy(() -> studentService.findStudent(999, null)).isInstanceOf(StudentNotFoundException.class);
+        assertThat(cache().get(999)).isNotNull();
+        assertThat(cache().get(999).get()).isNull();
+
+        jdbcTemplate.update("INSERT INTO students (id, name, grade, birth_place) VALUES (999, '中田健太', 1, '福岡県')");
+        assertThatThrownBy(() -> studentService.findStudent(999, null)).isInstanceOf(StudentNotFoundException.class);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 一括参照と一件の参照は同じキャッシュを使用すること() {
+
+        assertThat(studentService.lookupStudents(List.of(1, 999), null))
+                .isEqualTo(new StudentLookup(List.of(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県")), List.of(999)));
+        renameBehindCache(1, "清水圭吾");
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"));
+        assertThatThrownBy(() -> studentService.findStudent(999, null)).isInstanceOf(StudentNotFoundException.class);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 更新した学生のキャッシュはコミット後に破棄されること() {
+
+        studentService.findStudent(1, null);
+        transactionTemplate.executeWithoutResult(status -> {
+            studentService.updateStudent(1, "清水圭吾", Grade.SECOND, "大分県", null);
+            assertThat(cache().get(1)).isNotNull();
+        });
+        assertThat(cache().get(1)).isNull();
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清水圭吾", Grade.SECOND, "大分県"));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 削除した学生のキャッシュはコミット後に破棄されること() {
+
+        studentService.findStudent(1, null);
+        transactionTemplate.executeWithoutResult(status -> {
+            studentService.deleteStudent(1);
+            assertThat(cache().get(1)).isNotNull();
+        });
+        assertThat(cache().get(1)).isNull();
+        assertThatThrownBy(() -> studentService.findStudent(1, null)).isInstanceOf(StudentNotFoundException.class);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 取り消した更新と削除ではキャッシュを破棄しないこと() {
+
+        studentService.findStudent(1, null);
+        studentService.findStudent(2, null);
+        transactionTemplate.executeWithoutResult(status -> {
+            studentService.updateStudent(1, "清水圭吾", Grade.SECOND, "大分県", null);
+            studentService.deleteStudent(2);
+            status.setRollbackOnly();
+        });
+        assertThat(cache().get(1)).isNotNull();
+        assertThat(cache().get(2)).isNotNull();
+
+        renameBehindCache(1, "清水圭吾");
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"));
+    }
+
+    /**
+     * 読み取り専用のトランザクションはレプリカから読み出すため、複製の遅れた結果や存在しないidをキャッシュしないことを確認します。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 読み取り専用のトランザクションで取得した学生はキャッシュしないこと() {
+
+        TransactionTemplate readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+        readOnlyTransactionTemplate.executeWithoutResult(status -> {
+            assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"));
+            assertThat(studentService.lookupStudents(List.of(2, 999), null).getMissingIds()).containsExactly(999);
+        });
+        assertThat(cache().get(1)).isNull();
+        assertThat(cache().get(2)).isNull();
+        assertThat(cache().get(999)).isNull();
+    }
+
+    /**
+     * 登録のコミット前に別のスレッドから取得すると、まだ見えない学生が存在しないidとしてキャッシュされます。
+     * 登録のコミット後にそのキャッシュが破棄され、登録した学生を取得できることを確認します。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 存在しないIDとしてキャッシュした学生は登録のコミット後に取得できること() {
+
+        Student student = transactionTemplate.execute(status -> {
+            Student inserted = studentService.insertStudent("中田健太", Grade.FIRST, "福岡県");
+            assertThatThrownBy(() -> CompletableFuture.runAsync(() -> studentService.findStudent(inserted.getId(), null)).join())
+                    .isInstanceOf(CompletionException.class)
+                    .hasCauseInstanceOf(StudentNotFoundException.class);
+            assertThat(cache().get(inserted.getId())).isNotNull();
+            return inserted;
+        });
+        assertThat(cache().get(student.getId())).isNull();
+        assertThat(studentService.findStudent(student.getId(), null)).isEqualTo(new Student(student.getId(), "中田健太", Grade.FIRST, "福岡県"));
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void まとめて登録した場合はコミット後にキャッシュを全て破棄すること() {
+
+        studentService.findStudent(1, null);
+        studentService.insertStudents(List.of(new Student("中田健太", Grade.FIRST, "福岡県")));
+        assertThat(cache().get(1)).isNull();
+    }
+
+    /**
+     * 一括更新・一括削除はバッチ用のマッパーを使用し、StudentServiceを経由しないため、StudentBulkServiceが破棄したキャッシュを確認します。
+     */
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 一括更新と一括削除でもコミット後にキャッシュを破棄すること() {
+
+        studentService.findStudent(1, null);
+        studentService.findStudent(2, null);
+        assertThat(studentBulkService.updateStudents(List.of(new StudentBulkUpdate(new Student(1, "清水圭吾", Grade.SECOND, "大分県"), null)), BulkMode.BEST_EFFORT))
+                .containsExactly(BulkItemStatus.UPDATED);
+        assertThat(studentBulkService.deleteStudents(List.of(2), BulkMode.BEST_EFFORT))
+                .containsExactly(BulkItemStatus.DELETED);
+
+        assertThat(cache().get(1)).isNull();
+        assertThat(cache().get(2)).isNull();
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清水圭吾", Grade.SECOND, "大分県"));
+        assertThatThrownBy(() -> studentService.findStudent(2, null)).isInstanceOf(StudentNotFoundException.class);
+    }
+
+    @Test
+    @DataSet(value = "datasets/students.yml")
+    public void 取り消した一括更新ではキャッシュを破棄しないこと() {
+
+        studentService.findStudent(1, null);
+        List<StudentBulkUpdate> updates = List.of(
+                new StudentBulkUpdate(new Student(1, "清水圭吾", Grade.SECOND, "大分県"), null),
+                new StudentBulkUpdate(new Student(999, "中田健太", Grade.FIRST, "福岡県"), null));
+        assertThat(studentBulkService.updateStudents(updates, BulkMode.ALL_OR_NOTHING))
+                .containsExactly(BulkItemStatus.ABORTED, BulkItemStatus.NOT_FOUND);
+
+        assertThat(cache().get(1)).isNotNull();
+        renameBehindCache(1, "清水圭吾");
+        assertThat(studentService.findStudent(1, null)).isEqualTo(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"));
+    }
+}
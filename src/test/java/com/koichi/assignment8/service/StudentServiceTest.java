@@ -1,153 +1,437 @@
 package com.koichi.assignment8.service;
 
+import com.koichi.assignment8.entity.Grade;
 import com.koichi.assignment8.entity.Student;
-import com.koichi.assignment8.excption.MultipleMethodsException;
+import com.koichi.assignment8.entity.StudentChange;
+import com.koichi.assignment8.entity.StudentChangeType;
+import com.koichi.assignment8.entity.StudentField;
+import com.koichi.assignment8.entity.StudentVersion;
 import com.koichi.assignment8.excption.StudentNotFoundException;
+import com.koichi.assignment8.excption.StudentVersionConflictException;
+import com.koichi.assignment8.mapper.StudentChangeMapper;
 import com.koichi.assignment8.mapper.StudentMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 @ExtendWith(MockitoExtension.class)
 class StudentServiceTest {
 
+    private static final String ALL_COLUMNS = "id, name, grade, birth_place, version, updated_at";
+
     @InjectMocks
     StudentService studentService;
 
     @Mock
     StudentMapper studentMapper;
 
+    @Mock
+    StudentChangeMapper studentChangeMapper;
+
+    @Mock
+    CacheManager cacheManager;
+
+    @Mock
+    Cache cache;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    @Mock
+    RecentStudentWrites recentStudentWrites;
+
     @Test
     public void IDに該当する学生が一件取得できること() {
-        doReturn(Optional.of(new Student(1, "溝口光一", "一年生", "大分県"))).when(studentMapper).findById(1);
-        Student actual = studentService.findStudent(1);
-        assertThat(actual).isEqualTo(new Student(1, "溝口光一", "一年生", "大分県"));
+        doReturn(Optional.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"))).when(studentMapper).findById(1);
+        Student actual = studentService.findStudent(1, null);
+        assertThat(actual).isEqualTo(new Student(1, "溝口光一", Grade.FIRST, "大分県"));
     }
 
     @Test
     public void IDに該当する学生がいない時にstudentnotfoundというメッセージが返却されること() {
         doReturn(Optional.empty()).when(studentMapper).findById(1);
-        assertThatThrownBy(() -> studentService.findStudent(1))
+        assertThatThrownBy(() -> studentService.findStudent(1, null))
                 .isInstanceOf(StudentNotFoundException.class)
                 .hasMessage("student not found");
     }
 
+    @Test
+    public void IDに該当する学生のデータをfieldsで指定した項目とidのみに絞り込むこと() {
+        doReturn(Optional.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"))).when(studentMapper).findById(1);
+        Student actual = studentService.findStudent(1, EnumSet.of(StudentField.NAME));
+        assertThat(actual).isEqualTo(new Student(1, "溝口光一", null, null));
+    }
+
+    @Test
+    public void キャッシュにない学生はデータベースから取得してキャッシュに保存すること() {
+        Student student = new Student(1, "溝口光一", Grade.FIRST, "大分県");
+        doReturn(cache).when(cacheManager).getCache("students");
+        doReturn(Optional.of(student)).when(studentMapper).findById(1);
+        doReturn(Optional.empty()).when(studentMapper).findById(999);
+        assertThat(studentService.findStudent(1, null)).isEqualTo(student);
+        assertThatThrownBy(() -> studentService.findStudent(999, null)).isInstanceOf(StudentNotFoundException.class);
+        verify(cache, times(1)).put(1, student);
+        verify(cache, times(1)).put(999, null);
+    }
+
+    @Test
+    public void キャッシュにある学生はデータベースに問い合わせずに返すこと() {
+        doReturn(cache).when(cacheManager).getCache("students");
+        doReturn(new SimpleValueWrapper(new Student(1, "溝口光一", Grade.FIRST, "大分県"))).when(cache).get(1);
+        doReturn(new SimpleValueWrapper(null)).when(cache).get(999);
+        assertThat(studentService.findStudent(1, EnumSet.of(StudentField.NAME))).isEqualTo(new Student(1, "溝口光一", null, null));
+        assertThatThrownBy(() -> studentService.findStudent(999, null))
+                .isInstanceOf(StudentNotFoundException.class)
+                .hasMessage("student not found");
+        verifyNoInteractions(studentMapper);
+    }
+
+    @Test
+    public void このノードで直前に変更した学生はレプリカを使わずプライマリから取得すること() {
+        Student student = new Student(1, "溝口光一", Grade.FIRST, "大分県");
+        doReturn(true).when(recentStudentWrites).isRecent(1);
+        doReturn(Optional.of(student)).when(studentMapper).findById(1);
+        assertThat(studentService.findStudent(1, null)).isEqualTo(student);
+        verify(studentMapper, times(1)).findById(1);
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    public void レプリカにいない学生はプライマリで確認すること() {
+        Student student = new Student(1, "溝口光一", Grade.FIRST, "大分県");
+        doReturn(Optional.empty(), Optional.of(student)).when(studentMapper).findById(1);
+        assertThat(studentService.findStudent(1, null)).isEqualTo(student);
+        verify(transactionManager, times(1)).getTransaction(any());
+        verify(studentMapper, times(2)).findById(1);
+    }
+
+    @Test
+    public void まとめて取得する場合は直前に変更した学生とレプリカにいない学生のみをプライマリから取得すること() {
+        Student student1 = new Student(1, "清⽔圭吾", Grade.FIRST, "大分県");
+        Student student2 = new Student(2, "田中圭", Grade.FIRST, "福岡県");
+        doReturn(true).when(recentStudentWrites).isRecent(1);
+        doReturn(List.of(student2)).when(studentMapper).findByIds(List.of(2, 999));
+        doReturn(List.of(student1)).when(studentMapper).findByIds(List.of(1, 999));
+        StudentLookup actual = studentService.lookupStudents(List.of(1, 2, 999), null);
+        assertThat(actual).isEqualTo(new StudentLookup(List.of(student1, student2), List.of(999)));
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    public void 指定したIDの学生のうちキャッシュにない学生のみをまとめて取得し指定した順に返すこと() {
+        Student cached = new Student(3, "岡崎徹", Grade.SECOND, "大分県");
+        Student student = new Student(1, "清⽔圭吾", Grade.FIRST, "大分県");
+        doReturn(cache).when(cacheManager).getCache("students");
+        doReturn(new SimpleValueWrapper(cached)).when(cache).get(3);
+        doReturn(List.of(student)).when(studentMapper).findByIds(List.of(1, 999));
+        doReturn(List.of()).when(studentMapper).findByIds(List.of(999));
+        StudentLookup actual = studentService.lookupStudents(List.of(3, 1, 999, 3), null);
+        assertThat(actual).isEqualTo(new StudentLookup(List.of(cached, student), List.of(999)));
+        verify(cache, times(1)).put(1, student);
+        verify(cache, times(1)).put(999, null);
+    }
+
+    @Test
+    public void 読み取り専用のトランザクションから呼び出された場合は取得した学生をキャッシュしないこと() {
+        Student student = new Student(1, "清⽔圭吾", Grade.FIRST, "大分県");
+        doReturn(cache).when(cacheManager).getCache("students");
+        doReturn(List.of(student)).when(studentMapper).findByIds(List.of(1, 999));
+        doReturn(List.of()).when(studentMapper).findByIds(List.of(999));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            StudentLookup actual = studentService.lookupStudents(List.of(1, 999), null);
+            assertThat(actual).isEqualTo(new StudentLookup(List.of(student), List.of(999)));
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        verify(cache, never()).put(any(), any());
+    }
+
+    @Test
+    public void 存在しないことがキャッシュされているIDはデータベースに問い合わせずにmissingIdsで返すこと() {
+        doReturn(cache).when(cacheManager).getCache("students");
+        doReturn(new SimpleValueWrapper(null)).when(cache).get(999);
+        doReturn(new SimpleValueWrapper(new Student(1, "清⽔圭吾", Grade.FIRST, "大分県"))).when(cache).get(1);
+        StudentLookup actual = studentService.lookupStudents(List.of(999, 1), EnumSet.of(StudentField.NAME));
+        assertThat(actual).isEqualTo(new StudentLookup(List.of(new Student(1, "清⽔圭吾", null, null)), List.of(999)));
+        verifyNoInteractions(studentMapper);
+    }
+
     @Test
     public void 全ての学生を取得すること() {
-        List<Student> findAllStudents = List.of(new Student(1, "溝口光一", "一年生", "大分県"),
-                new Student(2, "中野乃蒼", "二年生", "福岡県"),
-                new Student(3, "安藤健", "三年生", "熊本県"));
-        doReturn(findAllStudents).when(studentMapper).findAllStudents();
-        List<Student> actualList = studentService.findStudents(null, null, null);
-        assertThat(actualList).isEqualTo(findAllStudents);
+        List<Student> findAllStudents = List.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"),
+                new Student(2, "中野乃蒼", Grade.SECOND, "福岡県"),
+                new Student(3, "安藤健", Grade.THIRD, "熊本県"));
+        doReturn(findAllStudents).when(studentMapper).findStudents(ALL_COLUMNS, null, null, null, 0, 101);
+        StudentPage actual = studentService.findStudents(null, null, null, null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(findAllStudents, null));
     }
 
     @Test
     public void 一年生の学生をクエリパラメータの検索を使用して取得すること() {
-        List<Student> getByGrade = List.of(new Student(1, "溝口光一", "一年生", "大分県"));
-        doReturn(getByGrade).when(studentMapper).findByGrade("一年生");
-        List<Student> actualList = studentService.findStudents(1, null, null);
-        assertThat(actualList).isEqualTo(getByGrade);
+        List<Student> getByGrade = List.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"));
+        doReturn(getByGrade).when(studentMapper).findStudents(ALL_COLUMNS, Grade.FIRST, null, null, 0, 101);
+        StudentPage actual = studentService.findStudents(1, null, null, null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(getByGrade, null));
     }
 
     @Test
     public void 人名の頭文字が溝である学生をクエリパラメータの検索を使用して複数取得すること() {
-        List<Student> getByStartWith = studentMapper.findByStartWith("溝");
-        doReturn(getByStartWith).when(studentMapper).findByStartWith("溝");
-        List<Student> actualList = studentService.findStudents(null, "溝", null);
-        assertThat(actualList).isEqualTo(getByStartWith);
+        List<Student> getByStartWith = List.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"),
+                new Student(4, "溝谷望", Grade.THIRD, "熊本県"));
+        doReturn(getByStartWith).when(studentMapper).findStudents(ALL_COLUMNS, null, "溝", null, 0, 101);
+        StudentPage actual = studentService.findStudents(null, "溝", null, null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(getByStartWith, null));
     }
 
     @Test
     public void 大分県出身の学生をクエリパラメータの検索を使用して取得すること() {
-        List<Student> getByBirthPlace = List.of(new Student(1, "溝口光一", "一年生", "大分県"));
-        doReturn(getByBirthPlace).when(studentMapper).findByBirthPlace("大分県");
-        List<Student> actualList = studentService.findStudents(null, null, "大分県");
-        assertThat(actualList).isEqualTo(getByBirthPlace);
+        List<Student> getByBirthPlace = List.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"));
+        doReturn(getByBirthPlace).when(studentMapper).findStudents(ALL_COLUMNS, null, null, "大分県", 0, 101);
+        StudentPage actual = studentService.findStudents(null, null, "大分県", null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(getByBirthPlace, null));
+    }
+
+    @Test
+    public void クエリパラメータで複数のカラムを指定した場合は全ての条件を1回のクエリで検索すること() {
+        List<Student> getByConditions = List.of(new Student(1, "溝口光一", Grade.FIRST, "大分県"));
+        doReturn(getByConditions).when(studentMapper).findStudents(ALL_COLUMNS, Grade.FIRST, "溝", "大分県", 0, 101);
+        StudentPage actual = studentService.findStudents(1, "溝", "大分県", null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(getByConditions, null));
+        verify(studentMapper, times(1)).findStudents(ALL_COLUMNS, Grade.FIRST, "溝", "大分県", 0, 101);
+        verifyNoMoreInteractions(studentMapper);
+    }
+
+    @Test
+    public void 存在しない学年を指定した場合はデータベースに問い合わせず空のページを返すこと() {
+        StudentPage actual = studentService.findStudents(5, null, "大分県", null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(List.of(), null));
+        verifyNoInteractions(studentMapper);
+    }
+
+    @Test
+    public void fieldsを指定した場合は指定した項目とidのカラムのみをデータベースから取得すること() {
+        List<Student> getNames = List.of(new Student(1, "溝口光一", null, null));
+        doReturn(getNames).when(studentMapper).findStudents("id, name, version, updated_at", null, null, null, 0, 101);
+        StudentPage actual = studentService.findStudents(null, null, null, null, null, EnumSet.of(StudentField.NAME));
+        assertThat(actual).isEqualTo(new StudentPage(getNames, null));
     }
 
     @Test
-    public void クエリパラメータで複数のカラムを検索する時にカラムはgradestartsWithbirthPlaceの一つを選んでくださいというメッセージを返却すること() {
-        List<Student> findAllStudents = List.of(new Student(1, "溝口光一", "一年生", "大分県"));
-        doReturn(findAllStudents).when(studentMapper).findAllStudents();
-        assertThatThrownBy(() -> studentService.findStudents(null, "溝", "大分県"))
-                .isInstanceOf(MultipleMethodsException.class)
-                .hasMessage("カラムはgrade・startsWith・birthPlaceの一つを選んでください");
+    public void 指定した件数より多くの学生がいる場合は次のページのカーソルを返すこと() {
+        List<Student> findAllStudents = List.of(new Student(3, "溝口光一", Grade.FIRST, "大分県"),
+                new Student(4, "中野乃蒼", Grade.SECOND, "福岡県"),
+                new Student(5, "安藤健", Grade.THIRD, "熊本県"));
+        doReturn(findAllStudents).when(studentMapper).findStudents(ALL_COLUMNS, null, null, null, 2, 3);
+        StudentPage actual = studentService.findStudents(null, null, null, 2, 2, null);
+        assertThat(actual).isEqualTo(new StudentPage(List.of(new Student(3, "溝口光一", Grade.FIRST, "大分県"),
+                new Student(4, "中野乃蒼", Grade.SECOND, "福岡県")), 4));
+    }
+
+    @Test
+    public void 取得件数の上限を超えるlimitを指定した場合は上限の件数で取得すること() {
+        doReturn(List.of()).when(studentMapper).findStudents(ALL_COLUMNS, null, null, null, 0, 1001);
+        StudentPage actual = studentService.findStudents(null, null, null, null, 100000, null);
+        assertThat(actual).isEqualTo(new StudentPage(List.of(), null));
+    }
+
+    @Test
+    public void 空白で区切った語を全て含む場合に一致する検索式にすること() {
+        assertThat(StudentService.toBooleanQuery("口光")).isEqualTo("+\"口光\"");
+        assertThat(StudentService.toBooleanQuery(" 溝口 大分\u3000光 ")).isEqualTo("+\"溝口\" +\"大分\" +光*");
+        assertThat(StudentService.toBooleanQuery("+溝口* -\"大分\"")).isEqualTo("+\"溝口\" +\"大分\"");
+        assertThat(StudentService.toBooleanQuery("+-*")).isEmpty();
+    }
+
+    @Test
+    public void 指定した語を含む学生を関連度順に取得し次のページのoffsetを返すこと() {
+        List<Student> students = List.of(
+                new Student(4, "溝口光一", Grade.SECOND, "熊本県"),
+                new Student(5, "溝谷望", Grade.THIRD, "熊本県"),
+                new Student(6, "溝田翔", Grade.FIRST, "熊本県"));
+        doReturn(students).when(studentMapper).searchStudents(ALL_COLUMNS, "+溝*", 10, 3);
+        StudentPage actual = studentService.searchStudents("溝", 10, 2, null);
+        assertThat(actual).isEqualTo(new StudentPage(students.subList(0, 2), 12));
+    }
+
+    @Test
+    public void 検索できる語がない場合はデータベースに問い合わせず空のページを返すこと() {
+        StudentPage actual = studentService.searchStudents("***", null, null, null);
+        assertThat(actual).isEqualTo(new StudentPage(List.of(), null));
+        verifyNoInteractions(studentMapper);
+    }
+
+    @Test
+    public void 指定した通し番号より後ろの変更を取得すること() {
+        List<StudentChange> changes = List.of(
+                new StudentChange(2L, 1, StudentChangeType.DELETED, null, null, null, null, Instant.parse("2024-01-01T00:00:00Z")));
+        doReturn(changes).when(studentChangeMapper).findChanges(1, 100);
+        assertThat(studentService.findChanges(1, 100)).isEqualTo(changes);
+    }
+
+    @Test
+    public void 通し番号を振っていない変更に最後の通し番号の続きを振ること() {
+        doReturn(List.of(5L, 4L)).when(studentChangeMapper).findUnsequencedChangeIds(100);
+        doReturn(3L).when(studentChangeMapper).findLatestSequence();
+        doReturn(2).when(studentChangeMapper).assignSequences(3L, List.of(5L, 4L));
+        assertThat(studentService.sequenceChanges(100)).isEqualTo(2);
+        verify(studentChangeMapper, times(1)).lockSequencer();
+    }
+
+    @Test
+    public void 通し番号を振っていない変更がない場合は何も更新しないこと() {
+        doReturn(List.of()).when(studentChangeMapper).findUnsequencedChangeIds(100);
+        assertThat(studentService.sequenceChanges(100)).isZero();
+        verify(studentChangeMapper, never()).assignSequences(anyLong(), anyList());
+    }
+
+    @Test
+    public void 最後に振った通し番号の変更を残して指定した日時より前の変更を削除すること() {
+        Instant before = Instant.parse("2024-01-02T00:00:00Z");
+        doReturn(3L).when(studentChangeMapper).findLatestSequence();
+        doReturn(2).when(studentChangeMapper).deleteChangesBefore(before, 3L, 100);
+        assertThat(studentService.purgeChanges(before, 100)).isEqualTo(2);
+    }
+
+    @Test
+    public void 最後に記録した変更の通し番号を取得すること() {
+        doReturn(3L).when(studentChangeMapper).findLatestSequence();
+        assertThat(studentService.findLatestChangeSequence()).isEqualTo(3L);
     }
 
     @Test
     public void 新しい学生を登録すること() {
-        Student newStudent = new Student("溝口光一", "一年生", "大分県");
-        studentService.insertStudent("溝口光一", "一年生", "大分県");
+        Student newStudent = new Student("溝口光一", Grade.FIRST, "大分県");
+        Student actual = studentService.insertStudent("溝口光一", Grade.FIRST, "大分県");
         verify(studentMapper, times(1)).insertStudent(newStudent);
+        verify(studentChangeMapper, times(1)).insertChange(actual.getId(), StudentChangeType.CREATED);
+    }
+
+    @Test
+    public void 複数の学生をまとめて登録する際は指定した件数ごとに分けて登録すること() {
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            students.add(new Student("溝口光一" + i, Grade.FIRST, "大分県"));
+        }
+        List<Student> actual = studentService.insertStudents(students);
+        assertThat(actual).isEqualTo(students);
+        verify(studentMapper, times(1)).insertStudents(students.subList(0, 500));
+        verify(studentMapper, times(1)).insertStudents(students.subList(500, 1000));
+        verify(studentMapper, times(1)).insertStudents(students.subList(1000, 1001));
+        verify(studentChangeMapper, times(2)).insertChanges(argThat(studentIds -> studentIds.size() == 500), eq(StudentChangeType.CREATED));
+        verify(studentChangeMapper, times(1)).insertChanges(argThat(studentIds -> studentIds.size() == 1), eq(StudentChangeType.CREATED));
+    }
+
+    @Test
+    public void 登録する学生がいない場合はデータベースに問い合わせないこと() {
+        studentService.insertStudents(List.of());
+        verifyNoInteractions(studentMapper, studentChangeMapper);
     }
 
     @Test
     public void IDに該当する学生のデータを更新出来ること() {
 
         String name = "溝上航";
-        String grade = "一年生";
+        Grade grade = Grade.FIRST;
         String birthPlace = "大分県";
 
-        Student expectedStudents = new Student(1, "内藤友美", "一年生", "福岡県");
-        doReturn(Optional.of(expectedStudents)).when(studentMapper).findById(1);
-        studentService.updateStudent(1, name, grade, birthPlace);
+        doReturn(1).when(studentMapper).updateStudent(new Student(1, name, grade, birthPlace), null);
+        studentService.updateStudent(1, name, grade, birthPlace, null);
 
-        assertThat(expectedStudents.getName()).isEqualTo(name);
-        assertThat(expectedStudents.getGrade()).isEqualTo(grade);
-        assertThat(expectedStudents.getBirthPlace()).isEqualTo(birthPlace);
-        verify(studentMapper, times(1)).updateStudent(expectedStudents);
+        verify(studentMapper, times(1)).updateStudent(new Student(1, name, grade, birthPlace), null);
+        verify(studentChangeMapper, times(1)).insertChange(1, StudentChangeType.UPDATED);
+        verifyNoMoreInteractions(studentMapper);
     }
 
     @Test
     public void 学生のデータを更新する際にIDに該当する学生がいない場合studentnotfoundというメッセージが返却されること() {
 
-        String name = "溝上航";
-        String grade = "一年生";
-        String birthPlace = "大分県";
-
-        doReturn(Optional.empty()).when(studentMapper).findById(999);
-        assertThatThrownBy(() -> studentService.updateStudent(999, "溝上航", "一年生", "福岡県"))
+        doReturn(0).when(studentMapper).updateStudent(new Student(999, "溝上航", Grade.FIRST, "福岡県"), null);
+        assertThatThrownBy(() -> studentService.updateStudent(999, "溝上航", Grade.FIRST, "福岡県", null))
                 .isInstanceOf(StudentNotFoundException.class)
                 .hasMessage("student not found");
+        verifyNoMoreInteractions(studentMapper);
+        verifyNoInteractions(studentChangeMapper);
     }
 
     @Test
-    public void 学生の学年を進級させること() {
+    public void 指定したバージョンが一致する場合は学生のデータを更新出来ること() {
 
-        studentService.updateGrade();
-        verify(studentMapper, times(1)).updateGrade("卒業生", "三年生");
-        verify(studentMapper, times(1)).updateGrade("三年生", "二年生");
-        verify(studentMapper, times(1)).updateGrade("二年生", "一年生");
+        doReturn(1).when(studentMapper).updateStudent(new Student(1, "溝上航", Grade.FIRST, "大分県"), 2);
+        studentService.updateStudent(1, "溝上航", Grade.FIRST, "大分県", 2);
+
+        verify(studentMapper, times(1)).updateStudent(new Student(1, "溝上航", Grade.FIRST, "大分県"), 2);
+        verify(recentStudentWrites, times(1)).record(List.of(1));
+        verifyNoMoreInteractions(studentMapper);
+    }
+
+    @Test
+    public void 指定したバージョンが一致しない場合はstudenthasbeenmodifiedというメッセージが返却されること() {
+
+        doReturn(0).when(studentMapper).updateStudent(new Student(1, "溝上航", Grade.FIRST, "大分県"), 2);
+        doReturn(Optional.of(new StudentVersion(1, 3, Instant.parse("2024-01-01T00:00:00Z")))).when(studentMapper).findVersionById(1);
+        assertThatThrownBy(() -> studentService.updateStudent(1, "溝上航", Grade.FIRST, "大分県", 2))
+                .isInstanceOf(StudentVersionConflictException.class)
+                .hasMessage("student has been modified");
+        verifyNoInteractions(studentChangeMapper);
+    }
+
+    @Test
+    public void バージョンを指定した更新でIDに該当する学生がいない場合studentnotfoundというメッセージが返却されること() {
+
+        doReturn(0).when(studentMapper).updateStudent(new Student(999, "溝上航", Grade.FIRST, "大分県"), 2);
+        doReturn(Optional.empty()).when(studentMapper).findVersionById(999);
+        assertThatThrownBy(() -> studentService.updateStudent(999, "溝上航", Grade.FIRST, "大分県", 2))
+                .isInstanceOf(StudentNotFoundException.class)
+                .hasMessage("student not found");
     }
 
     @Test
     public void IDに該当する学生のデータを削除出来ること() {
 
-        Student expectedStudents = new Student(1, "内藤友美", "一年生", "福岡県");
-        doReturn(Optional.of(expectedStudents)).when(studentMapper).findById(1);
+        doReturn(1).when(studentMapper).deleteStudent(1);
         studentService.deleteStudent(1);
         verify(studentMapper, times(1)).deleteStudent(1);
+        verify(studentChangeMapper, times(1)).insertDeletedChange(1);
+        verify(recentStudentWrites, times(1)).record(List.of(1));
+        verifyNoMoreInteractions(studentMapper);
     }
 
     @Test
     public void 学生のデータを削除する際にIDに該当する学生がいない場合studentnotfoundというメッセージが返却されること() {
 
-        doReturn(Optional.empty()).when(studentMapper).findById(999);
+        doReturn(0).when(studentMapper).deleteStudent(999);
         assertThatThrownBy(() -> studentService.deleteStudent(999))
                 .isInstanceOf(StudentNotFoundException.class)
                 .hasMessage("student not found");
+        verifyNoInteractions(studentChangeMapper);
 
     }
 }
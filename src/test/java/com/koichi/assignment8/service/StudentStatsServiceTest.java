@@ -0,0 +1,81 @@
+package com.koichi.assignment8.service;
+
+import com.koichi.assignment8.entity.Grade;
+import com.koichi.assignment8.entity.StudentStat;
+import com.koichi.assignment8.mapper.StudentStatsMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class StudentStatsServiceTest {
+
+    @InjectMocks
+    StudentStatsService studentStatsService;
+
+    @Mock
+    StudentStatsMapper studentStatsMapper;
+
+    @Test
+    public void 組み合わせごとの人数から学年ごとと出身地ごとの人数を集計すること() {
+
+        List<StudentStat> stats = List.of(
+                new StudentStat(Grade.FIRST, "大分県", 2L),
+                new StudentStat(Grade.FIRST, "福岡県", 1L),
+                new StudentStat(Grade.THIRD, "大分県", 3L)
+        );
+        doReturn(stats).when(studentStatsMapper).findStats();
+
+        StudentStats actual = studentStatsService.findStats();
+        assertThat(actual.getTotal()).isEqualTo(6L);
+        assertThat(actual.getByGrade()).containsExactly(
+                Map.entry("一年生", 3L),
+                Map.entry("二年生", 0L),
+                Map.entry("三年生", 3L),
+                Map.entry("卒業生", 0L)
+        );
+        assertThat(actual.getByBirthPlace()).containsExactly(
+                Map.entry("大分県", 5L),
+                Map.entry("福岡県", 1L)
+        );
+        assertThat(actual.getByGradeAndBirthPlace()).isEqualTo(stats);
+    }
+
+    @Test
+    public void 学生がいない場合は全ての学年を0人として返すこと() {
+
+        doReturn(List.of()).when(studentStatsMapper).findStats();
+
+        StudentStats actual = studentStatsService.findStats();
+        assertThat(actual.getTotal()).isZero();
+        assertThat(actual.getByGrade()).containsOnlyKeys("一年生", "二年生", "三年生", "卒業生").allSatisfy((grade, count) -> assertThat(count).isZero());
+        assertThat(actual.getByBirthPlace()).isEmpty();
+    }
+
+    @Test
+    public void ロックした人数の増減を集計テーブルにまとめて削除すること() {
+        doReturn(List.of(1L, 2L)).when(studentStatsMapper).lockDeltaIds(100);
+        doReturn(2).when(studentStatsMapper).deleteDeltas(List.of(1L, 2L));
+        assertThat(studentStatsService.compactStats(100)).isEqualTo(2);
+        verify(studentStatsMapper).addDeltas(List.of(1L, 2L));
+    }
+
+    @Test
+    public void まとめる人数の増減がない場合は何も更新しないこと() {
+        doReturn(List.of()).when(studentStatsMapper).lockDeltaIds(100);
+        assertThat(studentStatsService.compactStats(100)).isZero();
+        verify(studentStatsMapper, never()).addDeltas(anyList());
+        verify(studentStatsMapper, never()).deleteDeltas(anyList());
+    }
+}